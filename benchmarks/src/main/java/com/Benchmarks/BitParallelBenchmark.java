@@ -0,0 +1,86 @@
+package com.Benchmarks;
+
+import com.Physics.BitParallelSimulator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the simulation of 64 vectors at once, interpreted or compiled into a generated class
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BitParallelBenchmark {
+
+    @Param({"adder", "multiplier", "random"})
+    public String circuit;
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int gates;
+
+    @Param({"false", "true"})
+    public boolean compiled;
+
+    private BitParallelSimulator simulator;
+    private int[] inputNets;
+    private long vector;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        simulator = new BitParallelSimulator(Circuits.build(circuit, gates));
+        inputNets = simulator.getNetlist().getInputNets();
+        if (compiled) {
+            BitParallelSimulator interpreted = simulator.copy();
+            if (!simulator.compile()) {
+                throw new IllegalStateException("The circuit is too large to be compiled");
+            }
+            check(interpreted);
+        }
+    }
+
+    /**
+     * Checks that the compiled circuit computes every net like the interpreter, on a few random vectors
+     * @param interpreted a simulator of the same netlist which isn't compiled
+     * @throws IllegalStateException if a net differs
+     */
+    private void check(BitParallelSimulator interpreted) {
+        long[] expected = interpreted.getValues();
+        long[] values = simulator.getValues();
+        for (int run = 0; run < 16; run++) {
+            for (int net : inputNets) {
+                vector = vector * 6364136223846793005L + 1442695040888963407L;
+                expected[net] = vector;
+                values[net] = vector;
+            }
+            interpreted.run();
+            simulator.run();
+            for (int n = 0; n < values.length; n++) {
+                if (values[n] != expected[n]) {
+                    throw new IllegalStateException("The compiled circuit differs from the interpreter on the net " + n);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public long run() {
+        long[] values = simulator.getValues();
+        for (int net : inputNets) {
+            vector = vector * 6364136223846793005L + 1442695040888963407L;
+            values[net] = vector;
+        }
+        simulator.run();
+        return values[values.length - 1];
+    }
+}
@@ -0,0 +1,38 @@
+package com.Benchmarks;
+
+import com.Application.FileManger.CircuitGenerator;
+import com.Application.FileManger.ComponentData;
+import com.Application.FileManger.PhysicSheetBuilder;
+import com.Physics.Sheet;
+
+/**
+ * Builds the physic sheets used by the benchmarks from the families of CircuitGenerator, flattened down to the
+ * built-in gates. Each circuit takes a number of gates and picks the size closest to it.
+ */
+public class Circuits {
+
+    /**
+     * Builds a circuit
+     * @param circuit "adder" for a ripple-carry adder, a full adder being 11 gates, "multiplier" for an array
+     * multiplier, about 12 n² gates for n bits, else a random layered circuit of √gates inputs and layers
+     * @param gates the approximate number of gates
+     * @return the sheet, only made of built-in gates
+     */
+    public static Sheet build(String circuit, int gates) {
+        CircuitGenerator generator = new CircuitGenerator(42);
+        ComponentData data;
+        switch (circuit) {
+            case "adder":
+                data = generator.adder(Math.max(1, gates / 11));
+                break;
+            case "multiplier":
+                data = generator.multiplier(Math.max(2, (int) Math.sqrt(gates / 12.0)));
+                break;
+            default:
+                int side = Math.max(2, (int) Math.sqrt(gates));
+                data = generator.randomDag(side, gates, side, 2, 4);
+                break;
+        }
+        return new PhysicSheetBuilder(generator.getLibrary(), true, 0).build(data);
+    }
+}
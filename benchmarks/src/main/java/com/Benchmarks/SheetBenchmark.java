@@ -0,0 +1,92 @@
+package com.Benchmarks;
+
+import com.Physics.Component;
+import com.Physics.Sheet;
+import com.Physics.Wire;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+
+/**
+ * Benchmarks of the scalar simulation of a whole sheet, on circuits of increasing size
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SheetBenchmark {
+
+    @Param({"adder", "multiplier", "random"})
+    public String circuit;
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int gates;
+
+    private Sheet sheet;
+    private List<Wire> inputs;
+    private Component[] components;
+    private Wire[] wires;
+    private int vector;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        sheet = Circuits.build(circuit, gates);
+        inputs = sheet.getWireInputs();
+        components = sheet.getComponents().toArray(new Component[0]);
+        wires = sheet.getWires().toArray(new Wire[0]);
+        // Compile la netlist hors de la mesure
+        sheet.refresh();
+    }
+
+    /**
+     * Changes the inputs, so that each refresh simulates a new vector
+     */
+    private void nextVector() {
+        vector = vector * 1103515245 + 12345;
+        for (int i = 0; i < inputs.size(); i++) {
+            inputs.get(i).setState((vector >>> (i & 31) & 1) != 0);
+        }
+    }
+
+    @Benchmark
+    public void refresh(Blackhole blackhole) {
+        nextVector();
+        sheet.refresh();
+        blackhole.consume(sheet.getOutputs().get(0).getState());
+    }
+
+    /**
+     * Refreshes every wire one by one in level order, the way the sheet was simulated before the netlist
+     */
+    @Benchmark
+    public void wireRefresh(Blackhole blackhole) {
+        nextVector();
+        for (Wire wire : wires) {
+            wire.refresh();
+        }
+        blackhole.consume(wires[wires.length - 1].getState());
+    }
+
+    @Benchmark
+    public int canBeRefresh() {
+        int ready = 0;
+        for (Component component : components) {
+            if (component.canBeRefresh()) {
+                ready++;
+            }
+        }
+        return ready;
+    }
+}
@@ -0,0 +1,70 @@
+package com.Benchmarks;
+
+import com.Physics.TruthTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+
+/**
+ * Benchmarks of the lookup of a packed truth table, on random rows
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TruthTableBenchmark {
+
+    private static final int LOOKUPS = 1024;
+
+    @Param({"2", "8", "16", "20"})
+    public int inputs;
+
+    @Param({"1", "8"})
+    public int outputs;
+
+    private TruthTable table;
+    private int[] rows;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        table = new TruthTable(inputs, outputs);
+        for (int row = 0; row < table.getRows(); row++) {
+            for (int output = 0; output < outputs; output++) {
+                table.set(row, output, random.nextBoolean());
+            }
+        }
+        rows = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            rows[i] = random.nextInt((int) table.getRows());
+        }
+    }
+
+    /**
+     * Reads every output of 1024 random rows
+     * @return the number of true cells, so that the lookups aren't removed
+     */
+    @Benchmark
+    public int lookup() {
+        int count = 0;
+        for (int row : rows) {
+            for (int output = 0; output < outputs; output++) {
+                if (table.get(row, output)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+}
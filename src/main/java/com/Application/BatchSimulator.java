@@ -0,0 +1,325 @@
+package com.Application;
+
+import com.Application.FileManger.ComponentData;
+import com.Application.FileManger.ComponentNotFoundException;
+import com.Application.FileManger.PhysicSheetBuilder;
+import com.Application.FileManger.SaveLoadSheet;
+import com.Physics.Aig;
+import com.Physics.BitParallelSimulator;
+import com.Physics.Netlist;
+import com.Physics.NetlistOptimizer;
+import com.Physics.Sheet;
+import com.Physics.ToggleCounter;
+import com.Physics.Wire;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Headless simulation of a component of the library on a stream of input vectors, without JavaFX.
+ * Each line of the input holds one '0' or '1' per input of the component (spaces are ignored, empty lines and
+ * lines starting with '#' are skipped), and the matching line of the output one '0' or '1' per output.
+ * The vectors are read by chunks, simulated 64 at a time on a pool of workers, and written in the order of the input,
+ * so that the vector file never has to fit in memory.
+ *
+ * With --optimize, the constants are folded and the dead logic removed before the simulation.
+ * With --aig, the netlist is rebuilt from its And-Inverter Graph, so that the duplicated logic is evaluated once.
+ * With --toggles, the transitions of every wire from a vector to the next one are counted, and the toggle coverage of
+ * the wires of the component is written on the error output. The transitions between two chunks of vectors aren't
+ * counted, since they are simulated on different threads.
+ *
+ * Usage : BatchSimulator [--flatten] [--optimize] [--aig] [--toggles] [--threads n] library-directory component [vector-file]
+ */
+public class BatchSimulator {
+
+    /**
+     * The number of vectors simulated by a single task, a multiple of 64
+     */
+    private static final int CHUNK_VECTORS = 64 * 64;
+
+    private final Netlist netlist;
+    private final ThreadLocal<BitParallelSimulator> simulators;
+    private final int threads;
+    /**
+     * The physic wire of each wire of the component, and the transitions counted on them, null when they aren't counted
+     */
+    private final Wire[] wires;
+    private ToggleCounter toggles;
+
+    /**
+     * Prepares the simulation of a component
+     * @param library the components that can be used, indexed by id
+     * @param data the component to simulate
+     * @param flatten whether the user components should be inlined instead of evaluated through their truth table
+     * @param optimize whether the netlist should be simplified before the simulation
+     * @param aig whether the identical subexpressions should be merged before the simulation
+     * @param threads the number of workers
+     */
+    public BatchSimulator(ComponentData[] library, ComponentData data, boolean flatten, boolean optimize, boolean aig,
+                          int threads) {
+        PhysicSheetBuilder builder = new PhysicSheetBuilder(library, flatten, SaveLoadSheet.blackBoxMaxInputs);
+        Sheet sheet = builder.build(data);
+        wires = optimize || aig ? null : builder.getWires();
+        if (optimize) {
+            sheet = new NetlistOptimizer(sheet).optimize();
+        }
+        if (aig) {
+            sheet = Aig.fromNetlist(sheet.getNetlist()).toSheet();
+        }
+        netlist = sheet.getNetlist();
+        BitParallelSimulator simulator = new BitParallelSimulator(netlist);
+        simulators = ThreadLocal.withInitial(simulator::copy);
+        this.threads = threads;
+    }
+
+    /**
+     * Counts the transitions of the wires during the next runs
+     * @throws IllegalStateException if the netlist was optimized or rebuilt, its nets not being the wires of the
+     * component anymore
+     */
+    public void countToggles() {
+        if (wires == null) {
+            throw new IllegalStateException("The toggles can't be counted on an optimized netlist");
+        }
+        toggles = new ToggleCounter(netlist);
+    }
+
+    /**
+     * Writes the toggle coverage of the wires of the component
+     * @param data the simulated component
+     * @return the report, null if the toggles weren't counted
+     */
+    public String getToggleReport(ComponentData data) {
+        return toggles == null ? null : data.getToggleReport(toggles, wires);
+    }
+
+    /**
+     * Simulates every vector of the input and writes the results, blocking until the input is exhausted
+     * @param in the vectors
+     * @param out the results, one line per vector
+     * @return the number of simulated vectors
+     * @throws IOException if the input can't be read or the output written
+     * @throws IllegalArgumentException if a line isn't a valid vector
+     */
+    public long run(BufferedReader in, Writer out) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "batch-simulator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Le nombre de tâches en cours est borné, pour ne pas lire toute l'entrée d'avance
+        ArrayDeque<Future<String>> running = new ArrayDeque<>();
+        long vectors = 0;
+        long lineNumber = 0;
+        try {
+            String[] chunk = new String[CHUNK_VECTORS];
+            long[] chunkLines = new long[CHUNK_VECTORS];
+            int size = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                chunk[size] = line;
+                chunkLines[size++] = lineNumber;
+                if (size == CHUNK_VECTORS) {
+                    submit(pool, running, chunk, chunkLines, size, out);
+                    chunk = new String[CHUNK_VECTORS];
+                    chunkLines = new long[CHUNK_VECTORS];
+                    vectors += size;
+                    size = 0;
+                }
+            }
+            if (size > 0) {
+                submit(pool, running, Arrays.copyOf(chunk, size), chunkLines, size, out);
+                vectors += size;
+            }
+            while (!running.isEmpty()) {
+                out.write(take(running));
+            }
+            out.flush();
+        }
+        finally {
+            pool.shutdownNow();
+        }
+        return vectors;
+    }
+
+    private void submit(ExecutorService pool, ArrayDeque<Future<String>> running,
+                        String[] chunk, long[] chunkLines, int size, Writer out) throws IOException {
+        if (running.size() >= 4 * threads) {
+            out.write(take(running));
+        }
+        running.add(pool.submit(() -> simulate(chunk, chunkLines, size)));
+    }
+
+    private static String take(ArrayDeque<Future<String>> running) throws IOException {
+        try {
+            return running.poll().get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IllegalArgumentException) {
+                throw (IllegalArgumentException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Simulates a chunk of vectors, 64 at a time
+     * @return the lines of the results
+     */
+    private String simulate(String[] chunk, long[] chunkLines, int size) {
+        BitParallelSimulator simulator = simulators.get();
+        long[] values = simulator.getValues();
+        int[] inputNets = netlist.getInputNets();
+        int[] outputNets = netlist.getOutputNets();
+        StringBuilder result = new StringBuilder(size * (outputNets.length + 1));
+        ToggleCounter counter = toggles == null ? null : new ToggleCounter(netlist);
+        for (int first = 0; first < size; first += 64) {
+            int count = Math.min(64, size - first);
+            for (int net : inputNets) {
+                values[net] = 0;
+            }
+            for (int k = 0; k < count; k++) {
+                parse(chunk[first + k], chunkLines[first + k], values, inputNets, k);
+            }
+            simulator.run();
+            if (counter != null) {
+                counter.sampleSequence(values, count);
+            }
+            for (int k = 0; k < count; k++) {
+                for (int net : outputNets) {
+                    result.append((char) ('0' + (values[net] >>> k & 1L)));
+                }
+                result.append('\n');
+            }
+        }
+        if (counter != null) {
+            synchronized (toggles) {
+                toggles.merge(counter);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Writes a vector as the bit k of the input nets
+     */
+    private static void parse(String line, long lineNumber, long[] values, int[] inputNets, int k) {
+        int i = 0;
+        for (int c = 0; c < line.length(); c++) {
+            char bit = line.charAt(c);
+            if (bit == ' ' || bit == '\t' || bit == '\r') {
+                continue;
+            }
+            if ((bit != '0' && bit != '1') || i == inputNets.length) {
+                throw new IllegalArgumentException("Invalid vector at line " + lineNumber + " : " + line);
+            }
+            if (bit == '1') {
+                values[inputNets[i]] |= 1L << k;
+            }
+            i++;
+        }
+        if (i != inputNets.length) {
+            throw new IllegalArgumentException("Invalid vector at line " + lineNumber + " : " + line);
+        }
+    }
+
+    public static void main(String[] args) {
+        boolean flatten = false;
+        boolean optimize = false;
+        boolean aig = false;
+        boolean countToggles = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int a = 0;
+        try {
+            for (; a < args.length && args[a].startsWith("--"); a++) {
+                if (args[a].equals("--flatten")) {
+                    flatten = true;
+                } else if (args[a].equals("--optimize")) {
+                    optimize = true;
+                } else if (args[a].equals("--aig")) {
+                    aig = true;
+                } else if (args[a].equals("--toggles")) {
+                    countToggles = true;
+                } else if (args[a].equals("--threads")) {
+                    threads = Integer.parseInt(args[++a]);
+                } else {
+                    throw new IllegalArgumentException("Unknown option " + args[a]);
+                }
+            }
+            if (args.length - a < 2 || args.length - a > 3 || threads < 1) {
+                throw new IllegalArgumentException("Wrong arguments");
+            }
+            if (countToggles && (optimize || aig)) {
+                throw new IllegalArgumentException("--toggles can't be used with --optimize or --aig");
+            }
+        }
+        catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage : BatchSimulator [--flatten] [--optimize] [--aig] [--toggles] [--threads n] library-directory component [vector-file]");
+            System.exit(2);
+            return;
+        }
+
+        try {
+            File[] compFiles = new File(args[a]).listFiles((dir, name) -> name.endsWith(".comp"));
+            if (compFiles == null) {
+                throw new IOException("Library not found : " + args[a]);
+            }
+            ComponentData[] library = SaveLoadSheet.loadLibrary(compFiles);
+            ComponentData data = find(library, args[a + 1]);
+
+            InputStream input = args.length - a == 3 ? new FileInputStream(args[a + 2]) : System.in;
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8), 1 << 16)) {
+                Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+                BatchSimulator simulator = new BatchSimulator(library, data, flatten, optimize, aig, threads);
+                if (countToggles) {
+                    simulator.countToggles();
+                }
+                long vectors = simulator.run(in, out);
+                System.err.println(vectors + " vectors simulated");
+                if (countToggles) {
+                    System.err.print(simulator.getToggleReport(data));
+                }
+            }
+        }
+        catch (IOException | ComponentNotFoundException | IllegalArgumentException | IllegalStateException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Finds a user component by name or by id
+     * @throws IllegalArgumentException if there is no such component
+     */
+    private static ComponentData find(ComponentData[] library, String component) {
+        for (int id = PhysicSheetBuilder.BUILT_INS; id < library.length; id++) {
+            if (library[id].name.equals(component) || String.valueOf(id).equals(component)) {
+                return library[id];
+            }
+        }
+        throw new IllegalArgumentException("Component not found : " + component);
+    }
+}
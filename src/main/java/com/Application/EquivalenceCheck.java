@@ -0,0 +1,67 @@
+package com.Application;
+
+import com.Application.FileManger.ComponentData;
+import com.Application.FileManger.ComponentNotFoundException;
+import com.Application.FileManger.PhysicSheetBuilder;
+import com.Application.FileManger.SaveLoadSheet;
+import com.Physics.EquivalenceChecker;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Headless check that two components of the library compute the same function, without JavaFX.
+ * Prints "equivalent", or a row of inputs on which the components differ, and exits with the status 3 when they do.
+ *
+ * Usage : EquivalenceCheck library-directory component1 component2
+ */
+public class EquivalenceCheck {
+
+    public static void main(String[] args) {
+        if (args.length != 3) {
+            System.err.println("Usage : EquivalenceCheck library-directory component1 component2");
+            System.exit(2);
+            return;
+        }
+
+        try {
+            File[] compFiles = new File(args[0]).listFiles((dir, name) -> name.endsWith(".comp"));
+            if (compFiles == null) {
+                throw new IOException("Library not found : " + args[0]);
+            }
+            ComponentData[] library = SaveLoadSheet.loadLibrary(compFiles);
+            ComponentData first = find(library, args[1]);
+            ComponentData second = find(library, args[2]);
+
+            EquivalenceChecker checker = PhysicSheetBuilder.equivalenceChecker(library, first, second);
+            if (checker.check()) {
+                System.out.println("equivalent (" + checker.getMethod() + ")");
+                return;
+            }
+            StringBuilder row = new StringBuilder();
+            for (boolean input : checker.getCounterexample()) {
+                row.append(input ? '1' : '0');
+            }
+            System.out.println("different (" + checker.getMethod() + ") : output " + checker.getMismatchOutput()
+                    + " differs on the inputs " + row);
+            System.exit(3);
+        }
+        catch (IOException | ComponentNotFoundException | IllegalArgumentException | IllegalStateException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Finds a user component by name or by id
+     * @throws IllegalArgumentException if there is no such component
+     */
+    private static ComponentData find(ComponentData[] library, String component) {
+        for (int id = PhysicSheetBuilder.BUILT_INS; id < library.length; id++) {
+            if (library[id].name.equals(component) || String.valueOf(id).equals(component)) {
+                return library[id];
+            }
+        }
+        throw new IllegalArgumentException("Component not found : " + component);
+    }
+}
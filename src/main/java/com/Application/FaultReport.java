@@ -0,0 +1,96 @@
+package com.Application;
+
+import com.Application.FileManger.ComponentData;
+import com.Application.FileManger.ComponentNotFoundException;
+import com.Application.FileManger.PhysicSheetBuilder;
+import com.Application.FileManger.SaveLoadSheet;
+import com.Physics.FaultSimulator;
+import com.Physics.Netlist;
+import com.Physics.Sheet;
+import com.Physics.Wire;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Headless stuck-at fault coverage of a component of the library, without JavaFX.
+ * Every row of the truth table of the component is simulated, or random rows when it has too many inputs, and the
+ * faults that no row detects are listed with the name of their net.
+ *
+ * Usage : FaultReport [--flatten] [--random n] library-directory component
+ */
+public class FaultReport {
+
+    public static void main(String[] args) {
+        boolean flatten = false;
+        int random = 0;
+        int a = 0;
+        try {
+            for (; a < args.length && args[a].startsWith("--"); a++) {
+                if (args[a].equals("--flatten")) {
+                    flatten = true;
+                } else if (args[a].equals("--random")) {
+                    random = Integer.parseInt(args[++a]);
+                } else {
+                    throw new IllegalArgumentException("Unknown option " + args[a]);
+                }
+            }
+            if (args.length - a != 2 || random < 0) {
+                throw new IllegalArgumentException("Wrong arguments");
+            }
+        }
+        catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage : FaultReport [--flatten] [--random n] library-directory component");
+            System.exit(2);
+            return;
+        }
+
+        try {
+            File[] compFiles = new File(args[a]).listFiles((dir, name) -> name.endsWith(".comp"));
+            if (compFiles == null) {
+                throw new IOException("Library not found : " + args[a]);
+            }
+            ComponentData[] library = SaveLoadSheet.loadLibrary(compFiles);
+            ComponentData data = find(library, args[a + 1]);
+
+            PhysicSheetBuilder builder = new PhysicSheetBuilder(library, flatten, SaveLoadSheet.blackBoxMaxInputs);
+            Sheet sheet = builder.build(data);
+            Netlist netlist = sheet.getNetlist();
+            FaultSimulator simulator = new FaultSimulator(sheet);
+            if (random > 0 || data.inputs > FaultSimulator.EXHAUSTIVE_MAX_INPUTS) {
+                simulator.runRandom(random > 0 ? random : 1 << FaultSimulator.EXHAUSTIVE_MAX_INPUTS, 0);
+            } else {
+                simulator.runExhaustive();
+            }
+
+            // Les nets internes des composants aplatis restent numérotés
+            String[] names = new String[netlist.getNetCount()];
+            Wire[] wires = builder.getWires();
+            for (int i = 0; i < wires.length; i++) {
+                int net = netlist.getNet(wires[i]);
+                if (net != -1 && names[net] == null) {
+                    names[net] = data.getNetName(i);
+                }
+            }
+            System.out.print(simulator.getReport(names));
+        }
+        catch (IOException | ComponentNotFoundException | IllegalArgumentException | IllegalStateException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Finds a user component by name or by id
+     * @throws IllegalArgumentException if there is no such component
+     */
+    private static ComponentData find(ComponentData[] library, String component) {
+        for (int id = PhysicSheetBuilder.BUILT_INS; id < library.length; id++) {
+            if (library[id].name.equals(component) || String.valueOf(id).equals(component)) {
+                return library[id];
+            }
+        }
+        throw new IllegalArgumentException("Component not found : " + component);
+    }
+}
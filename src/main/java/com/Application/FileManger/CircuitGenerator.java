@@ -0,0 +1,539 @@
+package com.Application.FileManger;
+
+import com.Config;
+import com.Physics.BddCompiler;
+import com.Physics.Sheet;
+import com.Physics.TruthTable;
+import com.Physics.TruthTableCompiler;
+import com.Physics.Wire;
+import javafx.scene.paint.Color;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates parameterized circuits as saved components, to measure the loading, the rendering and the simulation
+ * on large sheets. Each family adds its components to a library (after the built-in gates), laid out by logic level
+ * so that the GUI can open them, and the library can be written as .comp files or built into physic sheets.
+ * The components whose truth table is small enough get it compiled, the others get a decision diagram when it stays
+ * under MAX_BDD_NODES nodes, and can only be flattened otherwise.
+ */
+public class CircuitGenerator {
+
+    /**
+     * The largest truth table compiled for a generated component, in cells (rows * outputs)
+     */
+    public static final long MAX_TABLE_CELLS = 1L << 24;
+    /**
+     * The largest decision diagram kept for a generated component too wide for a truth table
+     */
+    public static final int MAX_BDD_NODES = 1 << 16;
+
+    private static final int NOT = 0;
+    private static final int AND = 1;
+    private static final int OR = 2;
+    /**
+     * No pin, the inputs being negative
+     */
+    private static final int NO_PIN = Integer.MIN_VALUE;
+
+    private final List<ComponentData> library = new ArrayList<>();
+    private final Random random;
+
+    private ComponentData xor;
+    private ComponentData fullAdder;
+    private ComponentData mux;
+
+    /**
+     * @param seed the seed of the random families and of the colors
+     */
+    public CircuitGenerator(long seed) {
+        random = new Random(seed);
+        library.addAll(Arrays.asList(PhysicSheetBuilder.builtIns()));
+    }
+
+    /**
+     * Gets the generated components
+     * @return the components indexed by id, the built-in gates first
+     */
+    public ComponentData[] getLibrary() {
+        return library.toArray(new ComponentData[0]);
+    }
+
+    /**
+     * Builds the physic sheet of a generated component
+     * @param data the component
+     * @param flatten whether the user components should be inlined
+     * @return the physic sheet, with its inputs and outputs in order
+     */
+    public Sheet build(ComponentData data, boolean flatten) {
+        return new PhysicSheetBuilder(getLibrary(), flatten, SaveLoadSheet.blackBoxMaxInputs).build(data);
+    }
+
+    /**
+     * Writes every generated component as a .comp file
+     * @param directory the directory of the library
+     * @throws IOException if a file can't be written
+     */
+    public void write(File directory) throws IOException {
+        Files.createDirectories(directory.toPath());
+        for (int id = PhysicSheetBuilder.BUILT_INS; id < library.size(); id++) {
+            ComponentData data = library.get(id);
+            Files.writeString(new File(directory, data.name + ".comp").toPath(),
+                    data.getFileContent(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Generates a ripple-carry adder made of full adder components
+     * @param bits the width of the operands
+     * @return the adder : inputs a0..an-1, b0..bn-1 and the carry, outputs the n sum bits and the carry
+     */
+    public ComponentData adder(int bits) {
+        Draft draft = new Draft(2 * bits + 1, bits + 1);
+        int carry = draft.input(2 * bits);
+        for (int i = 0; i < bits; i++) {
+            int adder = draft.add(fullAdder(), draft.input(i), draft.input(bits + i), carry);
+            draft.output(Draft.pin(adder, 0), i);
+            carry = Draft.pin(adder, 1);
+        }
+        draft.output(carry, bits);
+        return finish(draft, "adder" + bits);
+    }
+
+    /**
+     * Generates an array multiplier, the partial products being summed by rows of adders
+     * @param bits the width of the operands, at least 2
+     * @return the multiplier : inputs a0..an-1 and b0..bn-1, least significant bit first, outputs the 2n bits of the
+     * product, least significant bit first
+     */
+    public ComponentData multiplier(int bits) {
+        if (bits < 2) {
+            throw new IllegalArgumentException("A multiplier needs at least 2 bits");
+        }
+        Draft draft = new Draft(2 * bits, 2 * bits);
+        int[] row = new int[bits];
+        for (int j = 0; j < bits; j++) {
+            row[j] = draft.gate(AND, draft.input(0), draft.input(bits + j));
+        }
+        draft.output(row[0], 0);
+        // La retenue de la ligne précédente est le bit de poids fort de la ligne
+        int top = NO_PIN;
+        for (int i = 1; i < bits; i++) {
+            int carry = NO_PIN;
+            int[] next = new int[bits];
+            for (int j = 0; j < bits; j++) {
+                int product = draft.gate(AND, draft.input(i), draft.input(bits + j));
+                int above = j + 1 < bits ? row[j + 1] : top;
+                if (above == NO_PIN && carry == NO_PIN) {
+                    next[j] = product;
+                } else if (above == NO_PIN || carry == NO_PIN) {
+                    int other = above == NO_PIN ? carry : above;
+                    next[j] = Draft.pin(draft.add(xor(), product, other), 0);
+                    carry = draft.gate(AND, product, other);
+                } else {
+                    int adder = draft.add(fullAdder(), product, above, carry);
+                    next[j] = Draft.pin(adder, 0);
+                    carry = Draft.pin(adder, 1);
+                }
+            }
+            row = next;
+            top = carry;
+            draft.output(row[0], i);
+        }
+        for (int j = 1; j < bits; j++) {
+            draft.output(row[j], bits - 1 + j);
+        }
+        draft.output(top, 2 * bits - 1);
+        return finish(draft, "multiplier" + bits);
+    }
+
+    /**
+     * Generates a tree of 2 to 1 multiplexers
+     * @param selectBits the number of select inputs
+     * @return the multiplexer : inputs the 2^n data then the n selects (the first one being the least significant)
+     */
+    public ComponentData multiplexer(int selectBits) {
+        int dataInputs = 1 << selectBits;
+        Draft draft = new Draft(dataInputs + selectBits, 1);
+        int[] level = new int[dataInputs];
+        for (int i = 0; i < dataInputs; i++) {
+            level[i] = draft.input(i);
+        }
+        for (int s = 0; s < selectBits; s++) {
+            int[] next = new int[level.length / 2];
+            for (int i = 0; i < next.length; i++) {
+                next[i] = Draft.pin(draft.add(mux(), level[2 * i], level[2 * i + 1], draft.input(dataInputs + s)), 0);
+            }
+            level = next;
+        }
+        draft.output(level[0], 0);
+        return finish(draft, "mux" + dataInputs);
+    }
+
+    /**
+     * Generates a decoder, one output per value of the inputs
+     * @param bits the number of inputs
+     * @return the decoder : output k is set when the inputs, first one most significant, are k
+     */
+    public ComponentData decoder(int bits) {
+        Draft draft = new Draft(bits, 1 << bits);
+        int[] negated = new int[bits];
+        for (int i = 0; i < bits; i++) {
+            negated[i] = draft.gate(NOT, draft.input(i));
+        }
+        for (int k = 0; k < 1 << bits; k++) {
+            int[] literals = new int[bits];
+            for (int i = 0; i < bits; i++) {
+                literals[i] = (k >>> (bits - 1 - i) & 1) != 0 ? draft.input(i) : negated[i];
+            }
+            draft.output(bits == 1 ? literals[0] : draft.tree(AND, literals), k);
+        }
+        return finish(draft, "decoder" + bits);
+    }
+
+    /**
+     * Generates a parity tree, a balanced tree of xor components
+     * @param bits the number of inputs
+     * @return the tree, whose output is set when an odd number of inputs are set
+     */
+    public ComponentData parity(int bits) {
+        Draft draft = new Draft(bits, 1);
+        int[] level = new int[bits];
+        for (int i = 0; i < bits; i++) {
+            level[i] = draft.input(i);
+        }
+        while (level.length > 1) {
+            int[] next = new int[(level.length + 1) / 2];
+            for (int i = 0; i < level.length / 2; i++) {
+                next[i] = Draft.pin(draft.add(xor(), level[2 * i], level[2 * i + 1]), 0);
+            }
+            if ((level.length & 1) != 0) {
+                next[next.length - 1] = level[level.length - 1];
+            }
+            level = next;
+        }
+        draft.output(level[0], 0);
+        return finish(draft, "parity" + bits);
+    }
+
+    /**
+     * Generates an equality comparator of two numbers
+     * @param bits the width of the numbers
+     * @return the comparator : inputs a0, b0, a1, b1..., output set when a == b. The bits of a pair are adjacent
+     * so that its decision diagram stays linear, it would grow like 2^bits with all the bits of a first
+     */
+    public ComponentData comparator(int bits) {
+        Draft draft = new Draft(2 * bits, 1);
+        int[] equal = new int[bits];
+        for (int i = 0; i < bits; i++) {
+            equal[i] = draft.gate(NOT, Draft.pin(draft.add(xor(), draft.input(2 * i), draft.input(2 * i + 1)), 0));
+        }
+        draft.output(bits == 1 ? equal[0] : draft.tree(AND, equal), 0);
+        return finish(draft, "equal" + bits);
+    }
+
+    /**
+     * Generates a random layered circuit of built-in gates
+     * @param inputs the number of inputs
+     * @param gates the number of gates
+     * @param layers the number of layers, each gate reading at least one net of the layer before
+     * @param fanin the number of nets read by the and / or gates (at least 2), wider ones being trees of 2 inputs gates
+     * @param maxFanout the number of gates reading a net, when there are enough nets to pick from
+     * @return the circuit, whose outputs are the nets of its last layer
+     */
+    public ComponentData randomDag(int inputs, int gates, int layers, int fanin, int maxFanout) {
+        layers = Math.max(1, Math.min(layers, gates));
+        // Les nets sont numérotés : d'abord les entrées, puis les portes dans l'ordre des couches
+        int[] layerStart = new int[layers + 2];
+        layerStart[1] = inputs;
+        int perLayer = Math.max(1, gates / layers);
+        for (int l = 1; l <= layers; l++) {
+            layerStart[l + 1] = l == layers ? inputs + gates : layerStart[l] + perLayer;
+        }
+        int[] readers = new int[inputs + gates];
+
+        Draft draft = new Draft(inputs, layerStart[layers + 1] - layerStart[layers]);
+        int[] pins = new int[inputs + gates];
+        for (int i = 0; i < inputs; i++) {
+            pins[i] = draft.input(i);
+        }
+        for (int l = 1; l <= layers; l++) {
+            for (int net = layerStart[l]; net < layerStart[l + 1]; net++) {
+                int type = random.nextInt(3);
+                int[] sources = new int[type == NOT ? 1 : fanin];
+                sources[0] = pins[pick(layerStart[l - 1], layerStart[l], readers, maxFanout)];
+                for (int s = 1; s < sources.length; s++) {
+                    int from = random.nextInt(l);
+                    sources[s] = pins[pick(layerStart[from], layerStart[from + 1], readers, maxFanout)];
+                }
+                pins[net] = type == NOT ? draft.gate(NOT, sources[0]) : draft.tree(type, sources);
+            }
+        }
+        for (int net = layerStart[layers]; net < layerStart[layers + 1]; net++) {
+            draft.output(pins[net], net - layerStart[layers]);
+        }
+        return finish(draft, "dag" + gates + "_" + layers);
+    }
+
+    /**
+     * Picks a net between from and to, preferring the ones read by less than maxFanout gates
+     */
+    private int pick(int from, int to, int[] readers, int maxFanout) {
+        int net = from + random.nextInt(to - from);
+        for (int attempt = 0; attempt < 4 && readers[net] >= maxFanout; attempt++) {
+            net = from + random.nextInt(to - from);
+        }
+        readers[net]++;
+        return net;
+    }
+
+    /**
+     * Generates a hierarchy of nested components : the level 0 is a full adder, and each level chains width components
+     * of the level below, so that the flattened circuit has 11 * width^depth gates
+     * @param depth the number of nested levels
+     * @param width the number of components of each level
+     * @return the top component, with 3 inputs and 2 outputs like a full adder
+     */
+    public ComponentData hierarchy(int depth, int width) {
+        ComponentData level = fullAdder();
+        for (int d = 1; d <= depth; d++) {
+            Draft draft = new Draft(3, 2);
+            int sum = draft.input(0);
+            int carry = draft.input(1);
+            for (int i = 0; i < width; i++) {
+                int c = draft.add(level, sum, carry, draft.input((i + 2) % 3));
+                sum = Draft.pin(c, 0);
+                carry = Draft.pin(c, 1);
+            }
+            draft.output(sum, 0);
+            draft.output(carry, 1);
+            level = finish(draft, "nested" + d + "_" + width);
+        }
+        return level;
+    }
+
+    private ComponentData xor() {
+        if (xor == null) {
+            Draft draft = new Draft(2, 1);
+            int a = draft.input(0);
+            int b = draft.input(1);
+            draft.output(draft.gate(AND, draft.gate(OR, a, b), draft.gate(NOT, draft.gate(AND, a, b))), 0);
+            xor = finish(draft, "xor");
+        }
+        return xor;
+    }
+
+    private ComponentData fullAdder() {
+        if (fullAdder == null) {
+            Draft draft = new Draft(3, 2);
+            int half = Draft.pin(draft.add(xor(), draft.input(0), draft.input(1)), 0);
+            draft.output(Draft.pin(draft.add(xor(), half, draft.input(2)), 0), 0);
+            draft.output(draft.gate(OR, draft.gate(AND, draft.input(0), draft.input(1)),
+                    draft.gate(AND, half, draft.input(2))), 1);
+            fullAdder = finish(draft, "fulladder");
+        }
+        return fullAdder;
+    }
+
+    private ComponentData mux() {
+        if (mux == null) {
+            Draft draft = new Draft(3, 1);
+            int select = draft.input(2);
+            draft.output(draft.gate(OR, draft.gate(AND, draft.input(0), draft.gate(NOT, select)),
+                    draft.gate(AND, draft.input(1), select)), 0);
+            mux = finish(draft, "mux2");
+        }
+        return mux;
+    }
+
+    /**
+     * Lays the draft out, compiles its truth table if it is small enough and adds it to the library
+     */
+    private ComponentData finish(Draft draft, String name) {
+        int id = library.size();
+        ComponentData data = new ComponentData(id, name, Color.hsb(random.nextDouble() * 360, 0.3, 1), draft.inputs, draft.outputs);
+        int count = draft.components.size();
+        data.components = new int[count];
+        for (int c = 0; c < count; c++) {
+            data.components[c] = draft.components.get(c);
+        }
+        int wires = draft.wires.size() / 4;
+        data.wiresStartComp = new int[wires];
+        data.wiresStartNode = new int[wires];
+        data.wiresEndComp = new int[wires];
+        data.wiresEndNode = new int[wires];
+        for (int w = 0; w < wires; w++) {
+            data.wiresStartComp[w] = draft.wires.get(4 * w);
+            data.wiresStartNode[w] = draft.wires.get(4 * w + 1);
+            data.wiresEndComp[w] = draft.wires.get(4 * w + 2);
+            data.wiresEndNode[w] = draft.wires.get(4 * w + 3);
+        }
+        layout(data, draft);
+        library.add(data);
+
+        PhysicSheetBuilder builder = new PhysicSheetBuilder(getLibrary(), false, 0);
+        Sheet sheet = builder.build(data);
+        List<List<Wire>> inputs = new ArrayList<>();
+        for (Wire wire : sheet.getWireInputs()) {
+            inputs.add(Collections.singletonList(wire));
+        }
+        if (draft.inputs <= TruthTable.MAX_INPUTS && (long) draft.outputs << draft.inputs <= MAX_TABLE_CELLS) {
+            data.setFunction(new TruthTableCompiler(sheet, inputs, sheet.getOutputs()).compile());
+        } else {
+            try {
+                data.setFunction(new BddCompiler(sheet, inputs, sheet.getOutputs(), MAX_BDD_NODES).compile());
+            }
+            catch (IllegalStateException e) {
+                // Le composant ne pourra qu'être aplati
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Places the components in columns by logic level, from left to right
+     */
+    private void layout(ComponentData data, Draft draft) {
+        int count = draft.components.size();
+        int[] levels = new int[count];
+        int levelCount = 0;
+        double columnWidth = 0;
+        // Les composants sont ajoutés après ceux qui les alimentent
+        for (int w = 0; w < data.wiresStartComp.length; w++) {
+            int start = data.wiresStartComp[w];
+            int end = data.wiresEndComp[w];
+            if (end != -1) {
+                levels[end] = Math.max(levels[end], start == -1 ? 0 : levels[start] + 1);
+            }
+        }
+        for (int c = 0; c < count; c++) {
+            levelCount = Math.max(levelCount, levels[c] + 1);
+            columnWidth = Math.max(columnWidth, 0.60 * (library.get(data.components[c]).name.length() + 5));
+        }
+        columnWidth += 4;
+
+        double margin = 4;
+        double[] columnHeights = new double[levelCount];
+        Arrays.fill(columnHeights, margin);
+        data.componentsX = new double[count];
+        data.componentsY = new double[count];
+        for (int c = 0; c < count; c++) {
+            ComponentData sub = library.get(data.components[c]);
+            data.componentsX[c] = margin + levels[c] * columnWidth;
+            data.componentsY[c] = columnHeights[levels[c]];
+            columnHeights[levels[c]] += Math.max(sub.inputs - 1, sub.outputs - 1) * Config.WSNodeSpace
+                    + 2 * Config.WSOutSpace + 1;
+        }
+        double height = Math.max(data.inputs, data.outputs) * Config.WSNodeSpace + 2 * margin;
+        for (double columnHeight : columnHeights) {
+            height = Math.max(height, columnHeight + margin);
+        }
+        data.width = 2 * margin + levelCount * columnWidth;
+        data.height = height;
+
+        data.wiresMiddle = new double[data.wiresStartComp.length];
+        for (int w = 0; w < data.wiresMiddle.length; w++) {
+            int start = data.wiresStartComp[w];
+            data.wiresMiddle[w] = (start == -1 ? 0 : data.componentsX[start]) + columnWidth - 2;
+        }
+    }
+
+    /**
+     * A component being generated : its components and its wires. A pin is an output node, written
+     * component << 4 | node, or -1 - i for the input i of the sheet.
+     */
+    private static class Draft {
+        final int inputs;
+        final int outputs;
+        final List<Integer> components = new ArrayList<>();
+        /**
+         * The start component, start node, end component and end node of each wire
+         */
+        final List<Integer> wires = new ArrayList<>();
+
+        Draft(int inputs, int outputs) {
+            this.inputs = inputs;
+            this.outputs = outputs;
+        }
+
+        static int pin(int component, int node) {
+            return component << 4 | node;
+        }
+
+        static int component(int pin) {
+            return pin < 0 ? -1 : pin >>> 4;
+        }
+
+        static int node(int pin) {
+            return pin < 0 ? -1 - pin : pin & 0xF;
+        }
+
+        int input(int i) {
+            return -1 - i;
+        }
+
+        /**
+         * Adds a component reading the given pins
+         * @return the index of the component
+         */
+        int add(ComponentData data, int... sources) {
+            int c = components.size();
+            components.add(data.id);
+            for (int i = 0; i < sources.length; i++) {
+                wire(sources[i], c, i);
+            }
+            return c;
+        }
+
+        /**
+         * Adds a built-in gate
+         * @return the pin of its output
+         */
+        int gate(int id, int... sources) {
+            int c = components.size();
+            components.add(id);
+            for (int i = 0; i < sources.length; i++) {
+                wire(sources[i], c, i);
+            }
+            return pin(c, 0);
+        }
+
+        /**
+         * Combines the pins with a balanced tree of 2 inputs gates
+         * @return the pin of the root
+         */
+        int tree(int id, int... sources) {
+            int[] level = sources;
+            while (level.length > 1) {
+                int[] next = new int[(level.length + 1) / 2];
+                for (int i = 0; i < level.length / 2; i++) {
+                    next[i] = gate(id, level[2 * i], level[2 * i + 1]);
+                }
+                if ((level.length & 1) != 0) {
+                    next[next.length - 1] = level[level.length - 1];
+                }
+                level = next;
+            }
+            return level[0];
+        }
+
+        void output(int source, int o) {
+            wire(source, -1, o);
+        }
+
+        private void wire(int source, int endComp, int endNode) {
+            wires.add(component(source));
+            wires.add(node(source));
+            wires.add(endComp);
+            wires.add(endNode);
+        }
+    }
+}
@@ -1,6 +1,13 @@
 package com.Application.FileManger;
 
 import com.Graphics.Workspace.Sheet.Sheet;
+import com.Physics.BddFunction;
+import com.Physics.Cover;
+import com.Physics.LogicFunction;
+import com.Physics.Netlist;
+import com.Physics.ToggleCounter;
+import com.Physics.TruthTable;
+import com.Physics.Wire;
 import com.google.gson.Gson;
 import javafx.scene.paint.Color;
 
@@ -12,8 +19,8 @@ public class ComponentData {
     public int inputs;
     public int outputs;
 
-    // Table de vérité du composant
-    public Boolean[] truthTable;
+    // Fonction du composant : sa table de vérité, ou sa forme minimisée
+    public LogicFunction function;
 
     // Informations sur la feuille du composant
     public double width;
@@ -76,12 +83,53 @@ public class ComponentData {
         sheet.dataCollector(this);
     }
 
-    public void setTruthTable(Boolean[] truthTable) {
-        this.truthTable = truthTable;
+    /**
+     * Gets the name of the net of a wire, after the node driving it : "in2" for the input 2 of the sheet, "c5_out1"
+     * for the output 1 of the component 5
+     * @param wire the index of the wire
+     * @return the name
+     */
+    public String getNetName(int wire) {
+        if (wiresStartComp[wire] == -1) {
+            return "in" + wiresStartNode[wire];
+        }
+        return "c" + wiresStartComp[wire] + "_out" + wiresStartNode[wire];
+    }
+
+    /**
+     * Writes the toggle coverage of the wires of the component : one line per wire, in the order of wiresStartComp,
+     * with the transitions counted on its net, the wires which never went both ways being marked
+     * @param toggles the counters of a simulation of the component
+     * @param wires the physic wire of each wire of the component, indexed like wiresStartComp
+     * @return the report
+     */
+    public String getToggleReport(ToggleCounter toggles, Wire[] wires) {
+        Netlist netlist = toggles.getNetlist();
+        StringBuilder lines = new StringBuilder();
+        int toggled = 0;
+        for (int i = 0; i < wires.length; i++) {
+            int net = netlist.getNet(wires[i]);
+            if (net == -1) {
+                lines.append(String.format("wire %d %s : not simulated%n", i, getNetName(i)));
+                continue;
+            }
+            boolean both = toggles.isToggled(net);
+            if (both) {
+                toggled++;
+            }
+            lines.append(String.format("wire %d %s : %d rises, %d falls%s%n", i, getNetName(i), toggles.getRises(net),
+                    toggles.getFalls(net), both ? "" : ", never toggled"));
+        }
+        return String.format("%d / %d wires toggled (%.1f %%)%n", toggled, wires.length,
+                wires.length == 0 ? 100 : 100.0 * toggled / wires.length) + lines;
+    }
+
+    public void setFunction(LogicFunction function) {
+        this.function = function;
     }
 
     String getFileContent() {
-        String[] content = new String[15];
+        String[] content = new String[16];
         content[0] = "id: " + id;
         content[1] = "name: " + name;
         content[2] = "color: " + color.toString();
@@ -89,82 +137,72 @@ public class ComponentData {
         content[4] = "outputs: " + outputs;
         content[5] = "width: " + width;
         content[6] = "height: " + height;
-        content[7] = "components: ";
-        for (int i = 0; i < components.length; i++) {
-            content[7] += components[i];
-            if (i != components.length - 1) {
-                content[7] += ", ";
-            }
-        }
-
-        content[8] = "componentsX: ";
-        for (int i = 0; i < componentsX.length; i++) {
-            content[8] += componentsX[i];
-            if (i != componentsX.length - 1) {
-                content[8] += ", ";
-            }
-        }
+        // Les listes sont construites d'un bloc, les feuilles générées peuvent avoir 100 000 composants
+        content[7] = "components: " + join(components);
+        content[8] = "componentsX: " + join(componentsX);
+        content[9] = "componentsY: " + join(componentsY);
+        content[10] = "wiresStartComp: " + join(wiresStartComp);
+        content[11] = "wiresStartNode: " + join(wiresStartNode);
+        content[12] = "wiresEndComp: " + join(wiresEndComp);
+        content[13] = "wiresEndNode: " + join(wiresEndNode);
+        content[14] = getFunctionLine();
+        content[15] = "builtins: " + PhysicSheetBuilder.BUILT_INS;
 
-        content[9] = "componentsY: ";
-        for (int i = 0; i < componentsY.length; i++) {
-            content[9] += componentsY[i];
-            if (i != componentsY.length - 1) {
-                content[9] += ", ";
-            }
-        }
+        return String.join("\n", content);
+    }
 
-        content[10] = "wiresStartComp: ";
-        for (int i = 0; i < wiresStartComp.length; i++) {
-            content[10] += wiresStartComp[i];
-            if (i != wiresStartComp.length - 1) {
-                content[10] += ", ";
+    private static String join(int[] values) {
+        StringBuilder line = new StringBuilder(values.length * 4);
+        for (int i = 0; i < values.length; i++) {
+            if (i != 0) {
+                line.append(", ");
             }
+            line.append(values[i]);
         }
+        return line.toString();
+    }
 
-        content[11] = "wiresStartNode: ";
-        for (int i = 0; i < wiresStartNode.length; i++) {
-            content[11] += wiresStartNode[i];
-            if (i != wiresStartNode.length - 1) {
-                content[11] += ", ";
+    private static String join(double[] values) {
+        StringBuilder line = new StringBuilder(values.length * 6);
+        for (int i = 0; i < values.length; i++) {
+            if (i != 0) {
+                line.append(", ");
             }
+            line.append(values[i]);
         }
+        return line.toString();
+    }
 
-        content[12] = "wiresEndComp: ";
-        for (int i = 0; i < wiresEndComp.length; i++) {
-            content[12] += wiresEndComp[i];
-            if (i != wiresEndComp.length - 1) {
-                content[12] += ", ";
-            }
+    /**
+     * Gets the line of the function : "cover: " followed by the cubes for a minimized function, "bdd: " followed by
+     * the nodes for a decision diagram, else "table: "
+     * followed by the truth table, empty for a component without function which can only be flattened
+     */
+    String getFunctionLine() {
+        if (function instanceof Cover) {
+            return "cover: " + function;
         }
-
-        content[13] = "wiresEndNode: ";
-        for (int i = 0; i < wiresEndNode.length; i++) {
-            content[13] += wiresEndNode[i];
-            if (i != wiresEndNode.length - 1) {
-                content[13] += ", ";
-            }
+        if (function instanceof BddFunction) {
+            return "bdd: " + function;
         }
-
-        content[14] = "table: " + getTable();
-
-        return String.join("\n", content);
+        return "table: " + (function == null ? "" : function.toString());
     }
 
-    String getTable() {
-        StringBuilder table = new StringBuilder();
-        for (Boolean b : truthTable) {
-            if (b) {
-                table.append("1");
-            } else {
-                table.append("0");
-            }
-        }
-        return table.toString();
+    private static int shiftId(int id, int savedBuiltIns) {
+        return id < savedBuiltIns ? id : id - savedBuiltIns + PhysicSheetBuilder.BUILT_INS;
     }
 
+    /**
+     * Reads a component file. The ids written by a version with fewer built-in components, the files without
+     * "builtins" line having the 3 gates only, are shifted after the current built-in components.
+     * @param fileContent the content of the file
+     * @return the component
+     */
     public static ComponentData parseData(String fileContent) {
         String[] content = fileContent.split("\n");
-        int id = Integer.parseInt(content[0].split(": ")[1].split(String.valueOf((char)13))[0]);
+        int savedBuiltIns = content.length > 15 && content[15].startsWith("builtins: ") ?
+                Integer.parseInt(content[15].split(": ")[1].split(String.valueOf((char)13))[0]) : 3;
+        int id = shiftId(Integer.parseInt(content[0].split(": ")[1].split(String.valueOf((char)13))[0]), savedBuiltIns);
         String name = content[1].split(": ")[1].split(String.valueOf((char)13))[0];
         Color color = Color.web(content[2].split(": ")[1].split(String.valueOf((char)13))[0]);
 
@@ -187,7 +225,7 @@ public class ComponentData {
         data.componentsY = new double[compY.length];
 
         for (int i = 0; i < compId.length; i++) {
-            data.components[i] = Integer.parseInt(compId[i]);
+            data.components[i] = shiftId(Integer.parseInt(compId[i]), savedBuiltIns);
             data.componentsX[i] = Double.parseDouble(compX[i]);
             data.componentsY[i] = Double.parseDouble(compY[i]);
         }
@@ -208,8 +246,34 @@ public class ComponentData {
             data.wiresEndComp[i] = Integer.parseInt(wireEndComp[i]);
             data.wiresEndNode[i] = Integer.parseInt(wireEndNode[i]);
         }
-        //TODO: parse the table
-        data.truthTable = new Boolean[inputs];
+        if (content.length > 14 && content[14].startsWith("bdd: ")) {
+            try {
+                data.function = BddFunction.parse(
+                        content[14].split(String.valueOf((char)13))[0].substring("bdd: ".length()), inputs, outputs);
+            }
+            catch (NumberFormatException | IndexOutOfBoundsException e) {
+                System.err.println("Invalid function for component " + name + " : " + e.getMessage());
+            }
+            return data;
+        }
+        if (inputs > TruthTable.MAX_INPUTS || (content.length > 14 && content[14].trim().equals("table:"))) {
+            // Le composant est trop large pour une table, il ne peut être qu'aplati
+            return data;
+        }
+        if (content.length > 14) {
+            try {
+                String function = content[14].split(String.valueOf((char)13))[0];
+                if (function.startsWith("cover: ")) {
+                    data.function = Cover.parse(function.substring("cover: ".length()), inputs, outputs);
+                } else {
+                    data.function = TruthTable.parse(function.split(": ")[1], inputs, outputs);
+                }
+            }
+            catch (NumberFormatException | IndexOutOfBoundsException e) {
+                // Les anciennes sauvegardes contiennent une table factice : sans fonction, le composant sera aplati
+                System.err.println("Invalid function for component " + name + ", its sheet will be flattened : " + e.getMessage());
+            }
+        }
 
         return data;
     }
@@ -1,4 +1,14 @@
 package com.Application.FileManger;
 
 public class ComponentNotFoundException extends Exception {
+
+    public ComponentNotFoundException() {
+    }
+
+    /**
+     * @param id the id of the missing component
+     */
+    public ComponentNotFoundException(int id) {
+        super("No component with id " + id);
+    }
 }
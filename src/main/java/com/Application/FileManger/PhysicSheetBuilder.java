@@ -0,0 +1,326 @@
+package com.Application.FileManger;
+
+import com.Physics.Aig;
+import com.Physics.Component;
+import com.Physics.EquivalenceChecker;
+import com.Physics.LogicFunction;
+import com.Physics.Register;
+import com.Physics.Sheet;
+import com.Physics.TruthTable;
+import com.Physics.Wire;
+import javafx.scene.paint.Color;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Builds physic sheets from saved components, without any graphic object.
+ * A user component is either kept as a black box evaluated through its truth table, or flattened : its saved sheet
+ * is inlined recursively, so that the physic sheet only contains built-in gates. Each net is a single wire, shared
+ * by all the components reading it.
+ */
+public class PhysicSheetBuilder {
+    /**
+     * The number of built-in components, the ids of the user components start after them
+     */
+    public static final int BUILT_INS = 4;
+    /**
+     * The id of the D flip-flop, the built-in component added after the not, and and or gates
+     */
+    public static final int FLIP_FLOP = 3;
+
+    /**
+     * The components that can be used, indexed by id
+     */
+    private final ComponentData[] library;
+    private final boolean flatten;
+    /**
+     * When flattening, the user components with at most this many inputs are still kept as black boxes
+     */
+    private final int blackBoxMaxInputs;
+
+    /**
+     * The components being inlined, to detect a component containing itself
+     */
+    private final Set<Integer> inlining = new HashSet<>();
+
+    private Sheet sheet;
+    private Wire[] wires;
+
+    /**
+     * @param library the components that can be used, indexed by id
+     * @param flatten whether the user components should be inlined
+     * @param blackBoxMaxInputs when flattening, the user components with at most this many inputs keep their table
+     */
+    public PhysicSheetBuilder(ComponentData[] library, boolean flatten, int blackBoxMaxInputs) {
+        this.library = library;
+        this.flatten = flatten;
+        this.blackBoxMaxInputs = blackBoxMaxInputs;
+    }
+
+    /**
+     * Creates the built-in components : the not, and and or gates, then the D flip-flop
+     * @return the components, indexed by id
+     */
+    public static ComponentData[] builtIns() {
+        return new ComponentData[] {
+                new ComponentData(0, "not", Color.BROWN, 1, 1),
+                new ComponentData(1, "and", Color.GREEN, 2, 1),
+                new ComponentData(2, "or", Color.RED, 2, 1),
+                new ComponentData(FLIP_FLOP, "flip-flop", Color.ORANGE, 1, 1)
+        };
+    }
+
+    /**
+     * Gets the function of a built-in component
+     * @param id the id of the component, below BUILT_INS
+     * @return its function, a register for the flip-flop
+     */
+    public static LogicFunction builtInFunction(int id) {
+        switch (id) {
+            case 0:
+                return TruthTable.not();
+            case 1:
+                return TruthTable.and();
+            case 2:
+                return TruthTable.or();
+            case FLIP_FLOP:
+                return Register.flipFlop();
+            default:
+                throw new IllegalArgumentException("Not a built-in component : " + id);
+        }
+    }
+
+    /**
+     * Builds the physic sheet of a saved component. The inputs and outputs of the sheet are added in order.
+     * @param data the component to build
+     * @return the physic sheet
+     */
+    public Sheet build(ComponentData data) {
+        sheet = new Sheet();
+        Wire[] inputs = new Wire[data.inputs];
+        for (int i = 0; i < data.inputs; i++) {
+            inputs[i] = new Wire();
+            sheet.addWireInput(inputs[i]);
+        }
+        Wire[][] nets = new Wire[data.components.length][];
+        for (Wire output : inline(data, inputs, nets)) {
+            sheet.addOutput(output);
+        }
+
+        // Le fil de chaque fil sauvegardé est le fil de son node de départ
+        wires = new Wire[data.wiresStartComp.length];
+        for (int i = 0; i < wires.length; i++) {
+            int startComp = data.wiresStartComp[i];
+            wires[i] = startComp == -1 ? inputs[data.wiresStartNode[i]] : nets[startComp][data.wiresStartNode[i]];
+        }
+        return sheet;
+    }
+
+    /**
+     * Builds the And-Inverter Graph of a saved component, whose inputs and outputs are the ones of the component
+     * @param data the component to build
+     * @return the graph
+     */
+    public Aig buildAig(ComponentData data) {
+        return Aig.fromNetlist(build(data).getNetlist());
+    }
+
+    /**
+     * Checks if two saved components are built the same way once flattened, whatever the order of their gates and
+     * the number of copies of a same subexpression
+     * @param library the components that can be used, indexed by id
+     * @return true if the graphs of both components are structurally equal
+     */
+    public static boolean sameStructure(ComponentData[] library, ComponentData a, ComponentData b) {
+        PhysicSheetBuilder builder = new PhysicSheetBuilder(library, true, 0);
+        return Aig.structurallyEqual(builder.buildAig(a), builder.buildAig(b));
+    }
+
+    /**
+     * Prepares the check that two saved components compute the same function. Their sheets are built again, the
+     * components they contain being evaluated through their function when they have one.
+     * @param library the components that can be used, indexed by id
+     * @return the checker
+     * @throws IllegalArgumentException if the components don't have the same number of inputs and outputs
+     */
+    public static EquivalenceChecker equivalenceChecker(ComponentData[] library, ComponentData a, ComponentData b) {
+        PhysicSheetBuilder builder = new PhysicSheetBuilder(library, false, 0);
+        return new EquivalenceChecker(builder.build(a), builder.build(b));
+    }
+
+    /**
+     * Gets the wires of the last built sheet
+     * @return the physic wire of each wire of the saved component, indexed like ComponentData.wiresStartComp
+     */
+    public Wire[] getWires() {
+        return wires;
+    }
+
+    /**
+     * Adds the content of a component to a sheet, reading the given wires as inputs
+     * @param sheet the sheet receiving the gates
+     * @param data the component to inline
+     * @param inputs the wire of each input of the component
+     * @return the wire of each output of the component
+     */
+    public Wire[] inline(Sheet sheet, ComponentData data, Wire[] inputs) {
+        this.sheet = sheet;
+        return inline(data, inputs, new Wire[data.components.length][]);
+    }
+
+    /**
+     * Checks if a component of the library will be kept as a black box, a component without function never is
+     * @param id the id of the component
+     * @return true if the component is evaluated through its function
+     */
+    public boolean isBlackBox(int id) {
+        if (id < BUILT_INS) {
+            return true;
+        }
+        return library[id].function != null && (!flatten || library[id].inputs <= blackBoxMaxInputs);
+    }
+
+    private Wire[] inline(ComponentData data, Wire[] inputs, Wire[][] nets) {
+        if (!inlining.add(data.id)) {
+            throw new IllegalStateException("Component " + data.name + " contains itself");
+        }
+        int[][] wiresInto = wiresByComponent(data.wiresEndComp, data.components.length);
+        List<Integer> flipFlops = new ArrayList<>();
+        for (int c : sortComponents(data, wiresInto)) {
+            ComponentData sub = library[data.components[c]];
+            if (sub.id == FLIP_FLOP) {
+                // L'entrée d'une bascule peut venir de sa propre sortie : elle est reliée à la fin
+                nets[c] = addBlackBox(sub, new Wire[sub.inputs]);
+                flipFlops.add(c);
+                continue;
+            }
+            Wire[] subInputs = new Wire[sub.inputs];
+            for (int i : wiresInto[c]) {
+                int startComp = data.wiresStartComp[i];
+                subInputs[data.wiresEndNode[i]] = startComp == -1 ?
+                        inputs[data.wiresStartNode[i]] : nets[startComp][data.wiresStartNode[i]];
+            }
+
+            if (isBlackBox(sub.id)) {
+                nets[c] = addBlackBox(sub, subInputs);
+            }
+            else {
+                nets[c] = inline(sub, subInputs, new Wire[sub.components.length][]);
+            }
+        }
+        for (int c : flipFlops) {
+            Component flipFlop = nets[c][0].getDriver();
+            for (int i : wiresInto[c]) {
+                int startComp = data.wiresStartComp[i];
+                flipFlop.addWireInput(startComp == -1 ?
+                        inputs[data.wiresStartNode[i]] : nets[startComp][data.wiresStartNode[i]], data.wiresEndNode[i]);
+            }
+        }
+
+        Wire[] outputs = new Wire[data.outputs];
+        for (int i = 0; i < data.wiresEndComp.length; i++) {
+            if (data.wiresEndComp[i] == -1) {
+                int startComp = data.wiresStartComp[i];
+                outputs[data.wiresEndNode[i]] = startComp == -1 ?
+                        inputs[data.wiresStartNode[i]] : nets[startComp][data.wiresStartNode[i]];
+            }
+        }
+        inlining.remove(data.id);
+        return outputs;
+    }
+
+    /**
+     * Adds a component evaluated through its truth table
+     * @return the wire of each output of the component
+     */
+    private Wire[] addBlackBox(ComponentData data, Wire[] inputs) {
+        LogicFunction function = data.function;
+        if (data.id < BUILT_INS) {
+            function = builtInFunction(data.id);
+        }
+        Component component = new Component(data.name, data.inputs, data.outputs, function);
+        sheet.addComponent(component);
+        for (int i = 0; i < inputs.length; i++) {
+            component.addWireInput(inputs[i], i);
+        }
+        Wire[] outputs = new Wire[data.outputs];
+        for (int o = 0; o < outputs.length; o++) {
+            outputs[o] = new Wire();
+            outputs[o].addConnection(component, 0);
+            outputs[o].setId(o, 0);
+            component.addWireOutput(outputs[o], o);
+            sheet.addWire(outputs[o]);
+        }
+        return outputs;
+    }
+
+    /**
+     * Sorts the components of a saved sheet so that each component comes after the ones feeding it. The flip-flops
+     * don't wait for their input, their output being their state.
+     * @param wiresInto the wires ending on each component
+     * @return the indices of the components, in order
+     */
+    private static List<Integer> sortComponents(ComponentData data, int[][] wiresInto) {
+        int count = data.components.length;
+        int[][] wiresFrom = wiresByComponent(data.wiresStartComp, count);
+        int[] pending = new int[count];
+        for (int c = 0; c < count; c++) {
+            if (data.components[c] == FLIP_FLOP) {
+                continue;
+            }
+            for (int i : wiresInto[c]) {
+                if (data.wiresStartComp[i] != -1) {
+                    pending[c]++;
+                }
+            }
+        }
+        List<Integer> sorted = new ArrayList<>(count);
+        for (int c = 0; c < count; c++) {
+            if (pending[c] == 0) {
+                sorted.add(c);
+            }
+        }
+        for (int k = 0; k < sorted.size(); k++) {
+            for (int i : wiresFrom[sorted.get(k)]) {
+                int next = data.wiresEndComp[i];
+                if (next != -1 && --pending[next] == 0) {
+                    sorted.add(next);
+                }
+            }
+        }
+        if (sorted.size() != count) {
+            throw new IllegalStateException("Component " + data.name + " contains a combinational loop");
+        }
+        return sorted;
+    }
+
+    /**
+     * Groups the wires of a saved sheet by component
+     * @param wiresComp the component at one end of each wire, -1 for the sheet itself
+     * @param count the number of components
+     * @return the indices of the wires of each component
+     */
+    private static int[][] wiresByComponent(int[] wiresComp, int count) {
+        int[] sizes = new int[count];
+        for (int comp : wiresComp) {
+            if (comp != -1) {
+                sizes[comp]++;
+            }
+        }
+        int[][] wires = new int[count][];
+        for (int c = 0; c < count; c++) {
+            wires[c] = new int[sizes[c]];
+            sizes[c] = 0;
+        }
+        for (int i = 0; i < wiresComp.length; i++) {
+            int comp = wiresComp[i];
+            if (comp != -1) {
+                wires[comp][sizes[comp]++] = i;
+            }
+        }
+        return wires;
+    }
+}
@@ -3,6 +3,8 @@ package com.Application.FileManger;
 import com.Graphics.GraphicsManager;
 import com.Graphics.Workspace.Application.SheetObject;
 import com.Graphics.Workspace.Component.ComponentInstance;
+import com.Graphics.Workspace.Node.InputNode;
+import com.Graphics.Workspace.Node.OutputNode;
 import com.Graphics.Workspace.Sheet.Sheet;
 import com.Graphics.Workspace.Wire.WireInstance;
 import com.Physics.Component;
@@ -16,6 +18,8 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.regex.PatternSyntaxException;
 
 import static com.Graphics.GraphicsManager.currentSheet;
@@ -26,40 +30,132 @@ public class SaveLoadSheet {
 
     public static ComponentData[] componentData;
     public static SheetObject[] loadedObjects;
-    public static Boolean[][][] truthTables;
+    public static LogicFunction[] functions;
+
+    /**
+     * Whether loadSheet inlines the saved sheet of the user components instead of evaluating their truth table
+     */
+    public static boolean flattenComponents = false;
+    /**
+     * When flattening, the user components with at most this many inputs keep their truth table
+     */
+    public static int blackBoxMaxInputs = 8;
+    /**
+     * The sheets with at least this many inputs are compiled into a decision diagram instead of a truth table
+     */
+    public static int bddMinInputs = 16;
 
     private static String defaultPath = System.getProperty("user.home") + "/Documents/SimulateurElectronique/";
 
-    public static void saveSheet(int id, String name, Color color, Sheet sheet) {
+    /**
+     * Compiles the function of the sheet and saves it as a component, blocking until it is done
+     * @throws IOException if the file of the component can't be written
+     */
+    public static void saveSheet(int id, String name, Color color, Sheet sheet) throws IOException {
         ComponentData componentData = new ComponentData(id, name, color, sheet);
-        //System.out.println(componentData.getFileContent());
-        //TODO: Change setTruthTable argument to "compiled version" of the truthTable of the sheet
-        componentData.setTruthTable(new Boolean[] {true, true, false, true, false, true, true, true, false});
-        Boolean[] truthTable = new Boolean[sheet.ioComponent.startNodes.size()];
-        for (int i=0;i<Math.pow(2, sheet.ioComponent.startNodes.size());i++) {
+        componentData.setFunction(compileFunction(createCompiler(sheet), createBddCompiler(sheet)));
+        writeComponent(componentData);
+    }
 
+    /**
+     * Compiles the function of a sheet : a decision diagram for the wide sheets, else the minimized truth table.
+     * When the diagram is too large the truth table is used, if the sheet has few enough inputs for it.
+     * @param tableCompiler the compiler of the truth table
+     * @param bddCompiler the compiler of the decision diagram, null to use the truth table
+     * @return the function, or null if the sheet is too wide for both or has flip-flops, the component can then only
+     * be flattened
+     * @throws CancellationException if one of the compilers was cancelled
+     */
+    public static LogicFunction compileFunction(TruthTableCompiler tableCompiler, BddCompiler bddCompiler) {
+        if (tableCompiler.isSequential()) {
+            // Les sorties dépendent de l'état des bascules : pas de table de vérité
+            return null;
+        }
+        if (bddCompiler != null) {
+            try {
+                return bddCompiler.compile();
+            }
+            catch (CancellationException e) {
+                throw e;
+            }
+            catch (IllegalStateException e) {
+                System.err.println(e.getMessage());
+            }
+        }
+        if (tableCompiler.getInputs() > TruthTable.MAX_INPUTS) {
+            return null;
+        }
+        return LogicMinimizer.simplify(tableCompiler.compile());
+    }
+
+    /**
+     * Prepares the compilation of the decision diagram of a sheet, if it has at least bddMinInputs inputs
+     * @param sheet the graphic sheet, whose wires are linked to the physic sheet
+     * @return the compiler of the decision diagram, or null for a narrow sheet or a sheet with flip-flops
+     */
+    public static BddCompiler createBddCompiler(Sheet sheet) {
+        if (sheet.ioComponent.startNodes.size() < bddMinInputs || physicSheet.getNetlist().getFlipFlopCount() > 0) {
+            return null;
+        }
+        return new BddCompiler(physicSheet, sheetInputs(sheet), sheetOutputs(sheet), BddCompiler.MAX_NODES);
+    }
+
+    /**
+     * Prepares the compilation of the truth table of a sheet, its inputs and outputs being the global nodes
+     * @param sheet the graphic sheet, whose wires are linked to the physic sheet
+     * @return the compiler of the truth table
+     */
+    public static TruthTableCompiler createCompiler(Sheet sheet) {
+        return new TruthTableCompiler(physicSheet, sheetInputs(sheet), sheetOutputs(sheet));
+    }
+
+    /**
+     * Gets the physic wires of each global input of a sheet
+     */
+    private static List<List<Wire>> sheetInputs(Sheet sheet) {
+        ArrayList<List<Wire>> inputs = new ArrayList<>();
+        for (OutputNode node : sheet.ioComponent.startNodes) {
+            ArrayList<Wire> wires = new ArrayList<>();
+            // Le premier fil d'un node est son fil abstrait
+            for (int i = 1; i < node.wiresConnected.size(); i++) {
+                wires.add(node.wiresConnected.get(i).getPhysicWire());
+            }
+            inputs.add(wires);
+        }
+        return inputs;
+    }
+
+    /**
+     * Gets the physic wire of each global output of a sheet
+     */
+    private static List<Wire> sheetOutputs(Sheet sheet) {
+        ArrayList<Wire> outputs = new ArrayList<>();
+        for (InputNode node : sheet.ioComponent.endNodes) {
+            outputs.add(node.wireConnected.getPhysicWire());
         }
-        System.out.println(componentData.getTable());
+        return outputs;
+    }
 
+    /**
+     * Writes the component in its file of the library
+     * @param componentData the component to write, with its truth table
+     * @throws IOException if the file can't be written
+     */
+    public static void writeComponent(ComponentData componentData) throws IOException {
+        String name = componentData.name;
         String fileContent = componentData.getFileContent();
 
-        try {
-            File creator = new File(defaultPath + name + ".comp");
-            creator.createNewFile();
-            FileWriter saveCompo = new FileWriter(defaultPath + name + ".comp");
+        File creator = new File(defaultPath + name + ".comp");
+        creator.createNewFile();
+        try (FileWriter saveCompo = new FileWriter(defaultPath + name + ".comp")) {
             saveCompo.write(fileContent);
-            saveCompo.close();
-        } catch (IOException e) {
-            System.out.println("An error occurred.");
-            e.printStackTrace();
         }
     }
 
     public static void loadSheet(String fileContent) throws ComponentNotFoundException {
         ComponentData data = ComponentData.parseData(fileContent);
 
-        physicSheet = new com.Physics.Sheet();
-        currentSheet = new Sheet(data.width, data.height);
+        newSheets(data.width, data.height);
 
         for (int i = 0; i < data.inputs; i++) {
             currentSheet.ioComponent.addStartNode(currentSheet);
@@ -72,7 +168,7 @@ public class SaveLoadSheet {
             int compIdInt = data.components[i];
             SheetObject abstractComponent = loadedObjects[compIdInt];
             Component physicComponent = new Component(
-                    data.name, abstractComponent.inputs, abstractComponent.outputs, truthTables[compIdInt]);
+                    data.name, abstractComponent.inputs, abstractComponent.outputs, functions[compIdInt]);
             currentSheet.addObject(new ComponentInstance(
                     loadedObjects[compIdInt], data.componentsX[i], data.componentsY[i], physicComponent));
             physicSheet.addComponent(physicComponent);
@@ -93,7 +189,7 @@ public class SaveLoadSheet {
                 physicSheet.addWireInput(physicWire);
             } else {
                 wireInstance.setStart(currentSheet.components.get(startComp).outputs[data.wiresStartNode[i]]);
-                physicSheet.getComponents().get(startComp).addWireOutput(physicWire, data.wiresEndNode[i]);
+                physicSheet.getComponents().get(startComp).addWireOutput(physicWire, data.wiresStartNode[i]);
                 physicWire.addConnection(physicSheet.getComponents().get(startComp), 0);
             }
 
@@ -103,7 +199,7 @@ public class SaveLoadSheet {
                 System.out.println("Output");
             } else {
                 wireInstance.setEnd(currentSheet.components.get(endComp).inputs[data.wiresEndNode[i]]);
-                physicSheet.getComponents().get(endComp).addWireInput(physicWire, data.wiresStartNode[i]);
+                physicSheet.getComponents().get(endComp).addWireInput(physicWire, data.wiresEndNode[i]);
                 physicWire.addConnection(physicSheet.getComponents().get(endComp), 1);
             }
 
@@ -112,6 +208,55 @@ public class SaveLoadSheet {
                 physicSheet.addWire(physicWire);
             }
         }
+
+        boolean withoutTable = false;
+        for (int id : data.components) {
+            withoutTable |= functions[id] == null;
+        }
+        // Les composants sans table de vérité ne peuvent être simulés qu'aplatis
+        if (flattenComponents || withoutTable) {
+            flattenComponents(data);
+        }
+    }
+
+    /**
+     * Replaces the user components of the loaded sheet by the gates of their saved sheets, in the physic sheet only :
+     * all of them when flattenComponents is set, otherwise only the ones saved without truth table.
+     * The wires leaving a flattened component are driven by the inlined gates, and its instance is marked as flattened
+     * so that no wire is connected to the removed component afterwards.
+     * @param data the loaded sheet
+     */
+    private static void flattenComponents(ComponentData data) {
+        PhysicSheetBuilder builder = new PhysicSheetBuilder(componentData, flattenComponents, blackBoxMaxInputs);
+        for (int i = 0; i < data.components.length; i++) {
+            if (builder.isBlackBox(data.components[i])) {
+                continue;
+            }
+            Component component = currentSheet.components.get(i).getPhysicComponent();
+            Wire[] outputs = builder.inline(physicSheet, componentData[data.components[i]], component.getWiresInput());
+
+            for (Wire wire : new ArrayList<>(physicSheet.getWires())) {
+                if (wire.getDriver() != component) {
+                    continue;
+                }
+                Wire net = outputs[wire.getId(0)];
+                Component driver = net.getDriver();
+                if (driver == null) {
+                    // La sortie recopie directement une entrée : on passe par un buffer
+                    driver = new Component("buffer", 1, 1, TruthTable.parse("01", 1, 1));
+                    physicSheet.addComponent(driver);
+                    driver.addWireInput(net, 0);
+                    wire.setId(0, 0);
+                }
+                else {
+                    wire.setId(net.getId(0), 0);
+                }
+                wire.replaceConnection(component, driver);
+                driver.addWireOutput(wire, wire.getId(0));
+            }
+            physicSheet.removeComponent(component);
+            currentSheet.components.get(i).setFlattened(true);
+        }
     }
 
     /**
@@ -122,45 +267,29 @@ public class SaveLoadSheet {
         int lastId = compFiles.length;
 
         File[] fileNames = new File[lastId];
-        ComponentData[] componentData = new ComponentData[lastId + 3];
-        SheetObject[] tempArray = new SheetObject[lastId + 3];
-        Boolean[][][] truthTables = new Boolean[lastId + 3][][];
-
-        tempArray[0] = new SheetObject(0, "not", Color.BROWN, 1, 1);
-        tempArray[1] = new SheetObject(1, "and", Color.GREEN, 2, 1);
-        tempArray[2] = new SheetObject(2, "or", Color.RED, 2, 1);
-
-        componentData[0] = new ComponentData(0, "not", Color.BROWN, 1, 1);
-        componentData[1] = new ComponentData(1, "and", Color.GREEN, 2, 1);
-        componentData[2] = new ComponentData(2, "or", Color.RED, 2, 1);
-
-        truthTables[0] = new Boolean[][] {{true}, {false}};
-        truthTables[1] = new Boolean[][] {{false}, {false}, {false}, {true}};
-        truthTables[2] = new Boolean[][] {{false}, {true}, {true}, {true}};
+        ComponentData[] componentData = new ComponentData[lastId + PhysicSheetBuilder.BUILT_INS];
+        SheetObject[] tempArray = new SheetObject[lastId + PhysicSheetBuilder.BUILT_INS];
+        LogicFunction[] functions = new LogicFunction[lastId + PhysicSheetBuilder.BUILT_INS];
+
+        for (ComponentData builtIn : PhysicSheetBuilder.builtIns()) {
+            componentData[builtIn.id] = builtIn;
+            tempArray[builtIn.id] = new SheetObject(
+                    builtIn.id, builtIn.name, builtIn.color, builtIn.inputs, builtIn.outputs);
+            functions[builtIn.id] = PhysicSheetBuilder.builtInFunction(builtIn.id);
+        }
 
         for (File file: compFiles) {
             try {
                 String fileContent = Files.readString(file.toPath(), StandardCharsets.UTF_8);
-                String[] split = fileContent.split("\n");
-                String rawId = split[0].split(": ")[1].split(String.valueOf((char)13))[0];
-                int id = Integer.parseInt(rawId);
-                fileNames[id - 3] = file;
+                // L'id est lu par parseData, qui décale ceux des fichiers écrits avant la bascule D
+                ComponentData data = ComponentData.parseData(fileContent);
+                int id = data.id;
+                fileNames[id - PhysicSheetBuilder.BUILT_INS] = file;
 
                 if (id >= lastId) {
-                    tempArray[id] = new SheetObject(id,
-                            split[1].split(": ")[1].split(String.valueOf((char)13))[0],
-                            Color.web(split[2].split(": ")[1].split(String.valueOf((char)13))[0]),
-                            Integer.parseInt(split[3].split(": ")[1].split(String.valueOf((char)13))[0]),
-                            Integer.parseInt(split[4].split(": ")[1].split(String.valueOf((char)13))[0])
-                    );
-//                    String rawTable = split[14].split(": ")[1];
-//                    truthTables[id] = new Boolean[rawTable.length()][];
-//                    for (int i = 0; i < rawTable.length(); i++) {
-//                        if (rawTable.charAt(i) == '1') truthTables[id][i][0] = true;
-//                        else truthTables[id][i][0] = false;
-//                    }
-                    fileNames[id - 3] = file;
-                    componentData[id] = ComponentData.parseData(fileContent);
+                    tempArray[id] = new SheetObject(id, data.name, data.color, data.inputs, data.outputs);
+                    componentData[id] = data;
+                    functions[id] = data.function;
                 }
             }
             catch (IOException e) {
@@ -176,19 +305,51 @@ public class SaveLoadSheet {
             int i = 0;
             while (i < fileNames.length && fileNames[i] != null) i++;
 
-            SaveLoadSheet.componentData = Arrays.copyOfRange(componentData, 0, i + 3);
-            loadedObjects = Arrays.copyOfRange(tempArray, 0, i + 3);
-            SaveLoadSheet.truthTables = Arrays.copyOfRange(truthTables, 0, i + 3);
+            SaveLoadSheet.componentData = Arrays.copyOfRange(componentData, 0, i + PhysicSheetBuilder.BUILT_INS);
+            loadedObjects = Arrays.copyOfRange(tempArray, 0, i + PhysicSheetBuilder.BUILT_INS);
+            SaveLoadSheet.functions = Arrays.copyOfRange(functions, 0, i + PhysicSheetBuilder.BUILT_INS);
             return Files.readString(fileNames[i - 1].toPath(), StandardCharsets.UTF_8);
         }
         else {
             SaveLoadSheet.componentData = componentData;
             loadedObjects = tempArray;
-            SaveLoadSheet.truthTables = truthTables;
+            SaveLoadSheet.functions = functions;
             return null;
         }
     }
 
+    /**
+     * Loads the components of a library without creating any graphic object, for the headless tools
+     * @param compFiles the .comp files of the library
+     * @return the components indexed by id, the built-in gates first
+     * @throws IOException if a file can't be read
+     * @throws ComponentNotFoundException if an id of the library has no file
+     */
+    public static ComponentData[] loadLibrary(File[] compFiles) throws IOException, ComponentNotFoundException {
+        ComponentData[] library = new ComponentData[compFiles.length + PhysicSheetBuilder.BUILT_INS];
+        System.arraycopy(PhysicSheetBuilder.builtIns(), 0, library, 0, PhysicSheetBuilder.BUILT_INS);
+
+        for (File file : compFiles) {
+            ComponentData data;
+            try {
+                data = ComponentData.parseData(Files.readString(file.toPath(), StandardCharsets.UTF_8));
+            }
+            catch (NumberFormatException | PatternSyntaxException | IndexOutOfBoundsException e) {
+                throw new IOException("File corrupted : " + file.getPath(), e);
+            }
+            if (data.id < PhysicSheetBuilder.BUILT_INS || data.id >= library.length) {
+                throw new IOException("Invalid id " + data.id + " in " + file.getPath());
+            }
+            library[data.id] = data;
+        }
+        for (int id = 0; id < library.length; id++) {
+            if (library[id] == null) {
+                throw new ComponentNotFoundException(id);
+            }
+        }
+        return library;
+    }
+
     public static void loadAll() throws IOException, ComponentNotFoundException {
         System.out.println("entered");
         File[] compFiles = new File(defaultPath).listFiles();
@@ -201,15 +362,13 @@ public class SaveLoadSheet {
             }
             else {
                 System.out.println("rawSheet is null");
-                physicSheet = new com.Physics.Sheet();
-                currentSheet = new Sheet(30, 20);
+                newSheets(30, 20);
             }
         }
         else {
             System.out.println("file not found");
             loadObjectUntil(new File[0]);
-            physicSheet = new com.Physics.Sheet();
-            currentSheet = new Sheet(30, 20);
+            newSheets(30, 20);
         }
     }
 
@@ -218,7 +377,18 @@ public class SaveLoadSheet {
         if (files == null) files = new File[0];
         loadObjectUntil(files);
 
+        newSheets(30, 20);
+    }
+
+    /**
+     * Replaces the physic and the graphic sheets by empty ones, what the controller took on the old sheet being
+     * forgotten
+     */
+    private static void newSheets(double width, double height) {
         physicSheet = new com.Physics.Sheet();
-        currentSheet = new Sheet(30, 20);
+        currentSheet = new Sheet(width, height);
+        if (GraphicsManager.controller != null) {
+            GraphicsManager.controller.sheetReplaced();
+        }
     }
 }
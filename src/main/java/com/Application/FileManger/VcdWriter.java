@@ -0,0 +1,267 @@
+package com.Application.FileManger;
+
+import com.Physics.NetListener;
+import com.Physics.Netlist;
+import com.Physics.StatePlanes;
+import com.Physics.Wire;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Writes the waveform of a simulation as a Value Change Dump, readable by GTKWave and the other waveform viewers.
+ * Only the signals that changed are written at each time, through a fixed buffer flushed into a file channel, so that
+ * the memory used doesn't depend on the length of the run.
+ * The signals are the nets of a saved component, named after the component and the node driving them : "in2" is
+ * the input 2 of the sheet, "c5_out1" the output 1 of the component 5 of ComponentData.components.
+ * A signal is identified by a key : the index of its wire in the state planes of a sheet for record, or its net for
+ * the changes given as a NetListener of a timing simulation.
+ */
+public class VcdWriter implements NetListener, Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    /**
+     * The identifier code of each signal
+     */
+    private final String[] codes;
+    /**
+     * The signal of each key, -1 for a key which isn't recorded
+     */
+    private final int[] signals;
+    /**
+     * The time of the last written changes, -1 before the first one
+     */
+    private long time = -1;
+
+    /**
+     * The planes read by record, with their states at the last record
+     */
+    private StatePlanes planes;
+    private long[] recorded;
+    private long[] lastValue;
+    private long[] lastKnown;
+
+    /**
+     * Creates the file and writes its header
+     * @param path the file to write, replaced if it exists
+     * @param scope the name of the module holding the signals
+     * @param names the name of each signal
+     * @param keys the key of each signal
+     * @throws IOException if the file can't be written
+     */
+    public VcdWriter(Path path, String scope, String[] names, int[] keys) throws IOException {
+        int maxKey = -1;
+        for (int key : keys) {
+            maxKey = Math.max(maxKey, key);
+        }
+        signals = new int[maxKey + 1];
+        Arrays.fill(signals, -1);
+        codes = new String[names.length];
+        for (int s = 0; s < names.length; s++) {
+            signals[keys[s]] = s;
+            codes[s] = code(s);
+        }
+
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        write("$version SimulateurElectronique $end\n");
+        write("$timescale 1ns $end\n");
+        write("$scope module " + identifier(scope) + " $end\n");
+        for (int s = 0; s < names.length; s++) {
+            write("$var wire 1 " + codes[s] + " " + identifier(names[s]) + " $end\n");
+        }
+        write("$upscope $end\n");
+        write("$enddefinitions $end\n");
+    }
+
+    /**
+     * Opens a waveform of the wires of a sheet, written by record
+     * @param path the file to write
+     * @param data the saved component, which names the signals
+     * @param wires the physic wire of each wire of the component, indexed like ComponentData.wiresStartComp
+     * @return the writer
+     * @throws IOException if the file can't be written
+     * @throws IllegalArgumentException if the wires don't belong to the same sheet
+     */
+    public static VcdWriter forSheet(Path path, ComponentData data, Wire[] wires) throws IOException {
+        StatePlanes planes = wires.length == 0 ? new StatePlanes() : wires[0].getPlanes();
+        int[] keys = new int[wires.length];
+        for (int i = 0; i < wires.length; i++) {
+            if (wires[i].getPlanes() != planes || planes == null) {
+                throw new IllegalArgumentException("The wires must belong to the same sheet");
+            }
+            keys[i] = wires[i].getIndex();
+        }
+        VcdWriter writer = create(path, data, keys);
+        writer.planes = planes;
+        writer.recorded = new long[(writer.signals.length + 63) >>> 6];
+        for (int key = 0; key < writer.signals.length; key++) {
+            if (writer.signals[key] != -1) {
+                writer.recorded[key >>> 6] |= 1L << key;
+            }
+        }
+        writer.lastValue = new long[writer.recorded.length];
+        writer.lastKnown = new long[writer.recorded.length];
+        return writer;
+    }
+
+    /**
+     * Opens a waveform of the nets of a netlist, written by netChanged
+     * @param path the file to write
+     * @param data the saved component, which names the signals
+     * @param wires the physic wire of each wire of the component, indexed like ComponentData.wiresStartComp
+     * @param netlist the netlist of the sheet holding the wires
+     * @return the writer
+     * @throws IOException if the file can't be written
+     * @throws IllegalArgumentException if a wire isn't part of the netlist
+     */
+    public static VcdWriter forNetlist(Path path, ComponentData data, Wire[] wires, Netlist netlist) throws IOException {
+        int[] keys = new int[wires.length];
+        for (int i = 0; i < wires.length; i++) {
+            keys[i] = netlist.getNet(wires[i]);
+            if (keys[i] == -1) {
+                throw new IllegalArgumentException("The wire " + i + " isn't part of the netlist");
+            }
+        }
+        return create(path, data, keys);
+    }
+
+    /**
+     * Names the nets of the component, the wires starting from the same node being a single signal
+     */
+    private static VcdWriter create(Path path, ComponentData data, int[] wireKeys) throws IOException {
+        Map<String, Integer> nets = new LinkedHashMap<>();
+        for (int i = 0; i < wireKeys.length; i++) {
+            nets.putIfAbsent(data.getNetName(i), wireKeys[i]);
+        }
+        String[] names = nets.keySet().toArray(new String[0]);
+        int[] keys = new int[names.length];
+        for (int s = 0; s < names.length; s++) {
+            keys[s] = nets.get(names[s]);
+        }
+        return new VcdWriter(path, data.name, names, keys);
+    }
+
+    /**
+     * Writes the signals whose state changed since the last record, by comparing the planes of the sheet with
+     * their previous state one word at a time
+     * @param time the time of the states, not before the last written time
+     * @throws IOException if the file can't be written
+     * @throws IllegalStateException if the writer wasn't opened by forSheet
+     */
+    public void record(long time) throws IOException {
+        if (planes == null) {
+            throw new IllegalStateException("The waveform isn't bound to a sheet");
+        }
+        long[] value = planes.getValuePlane();
+        long[] known = planes.getKnownPlane();
+        int words = Math.min(recorded.length, value.length);
+        for (int w = 0; w < words; w++) {
+            long changed = ((known[w] ^ lastKnown[w]) | ((value[w] ^ lastValue[w]) & known[w])) & recorded[w];
+            while (changed != 0) {
+                int bit = Long.numberOfTrailingZeros(changed);
+                changed &= changed - 1;
+                long mask = 1L << bit;
+                char state = (known[w] & mask) == 0 ? 'x' : (value[w] & mask) != 0 ? '1' : '0';
+                change(time, signals[w << 6 | bit], state);
+            }
+            lastValue[w] = value[w];
+            lastKnown[w] = known[w];
+        }
+    }
+
+    @Override
+    public void netChanged(long time, int net, boolean state) {
+        if (net >= signals.length || signals[net] == -1) {
+            return;
+        }
+        try {
+            change(time, signals[net], state ? '1' : '0');
+        }
+        catch (IOException e) {
+            // Le simulateur ne connaît pas les IOException
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void change(long time, int signal, char state) throws IOException {
+        if (time != this.time) {
+            if (time < this.time) {
+                throw new IllegalArgumentException("The time " + time + " is before the time " + this.time);
+            }
+            this.time = time;
+            write("#" + time + "\n");
+        }
+        write(state + codes[signal] + "\n");
+    }
+
+    /**
+     * Gets the identifier code of a signal, written in base 94 with the printable characters
+     */
+    private static String code(int signal) {
+        StringBuilder code = new StringBuilder();
+        do {
+            code.append((char) ('!' + signal % 94));
+            signal /= 94;
+        } while (signal > 0);
+        return code.toString();
+    }
+
+    /**
+     * Replaces the characters which can't be part of a name in the header
+     */
+    private static String identifier(String name) {
+        String identifier = name.replaceAll("[^A-Za-z0-9_]", "_");
+        return identifier.isEmpty() ? "_" : identifier;
+    }
+
+    /**
+     * Appends ASCII text to the buffer, flushing it when full
+     */
+    private void write(String text) throws IOException {
+        for (int c = 0; c < text.length(); c++) {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            buffer.put((byte) text.charAt(c));
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes the buffered changes to the file
+     * @throws IOException if the file can't be written
+     */
+    public void flush() throws IOException {
+        drain();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            drain();
+        }
+        finally {
+            channel.close();
+        }
+    }
+}
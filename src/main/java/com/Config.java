@@ -12,6 +12,8 @@ public class Config {
     public static Color WSOnWiresColor = Color.web("#D60020");
     public static Color WSOffWiresColor = Color.web("#521818");
     public static Color WSDisabledColor = Color.GRAY;
+    public static Color WSColdWiresColor = Color.web("#1B3A8C");
+    public static Color WSHotWiresColor = Color.web("#FFC400");
     public static double WSMoveAlpha = 0.7;
 
     //Texts of the workspace :
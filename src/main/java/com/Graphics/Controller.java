@@ -4,7 +4,13 @@ import com.Application.FileManger.ComponentData;
 import com.Application.FileManger.ComponentNotFoundException;
 import com.Graphics.Workspace.Component.ComponentInstance;
 import com.Physics.Component;
+import com.Physics.BddCompiler;
+import com.Physics.SimulationService;
+import com.Physics.StatePlanes;
+import com.Physics.ToggleCounter;
+import com.Physics.TruthTableCompiler;
 import com.Physics.Wire;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.scene.control.*;
 import javafx.scene.input.MouseEvent;
@@ -12,9 +18,17 @@ import javafx.scene.paint.Color;
 
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.function.DoubleConsumer;
 
 import com.Application.FileManger.SaveLoadSheet;
+import com.Application.FileManger.VcdWriter;
 
 import static com.Graphics.GraphicsManager.*;
 
@@ -29,10 +43,47 @@ public class Controller {
 
     public Button Transform;
     public Button Simulate;
+    public Button Snapshot;
+    public Button Restore;
+    public Button Run;
+    public Button Step;
+    public Slider SpeedSlider;
+    public Label SpeedLabel;
+    public Button Coverage;
+    public Label StatusLabel;
 
     public TextField NameInput;
     public ColorPicker Picker;
 
+    /**
+     * The compilation of the sheet in progress, null if there is none
+     */
+    private TruthTableCompiler compiler;
+    /**
+     * The decision diagram compiler of the compilation in progress, null if there is none or the sheet is narrow
+     */
+    private BddCompiler bddCompiler;
+
+    /**
+     * The waveform of the simulations, only written when the property simulator.vcd gives its file
+     */
+    private VcdWriter recorder;
+    private long step;
+    /**
+     * The version of the sheet the waveform was opened on, the waveform starting again after an edit
+     */
+    private long recordedVersion;
+
+    /**
+     * The states saved by the last snapshot, null if there is none
+     */
+    private StatePlanes snapshot;
+
+    /**
+     * The version of the sheet whose netlist couldn't be built, not built again before the next edit
+     */
+    private long failedVersion = -1;
+
     public void getAvailableComponents(MouseEvent mouseEvent) {
         ComponentList.getItems().clear();
         ArrayList<MenuItem> items = new ArrayList<>();
@@ -47,7 +98,7 @@ public class Controller {
 
     public void addDoor(int id) {
         ComponentData data = SaveLoadSheet.componentData[id];
-        Component physicComponent = new Component(data.name, data.inputs, data.outputs, SaveLoadSheet.truthTables[id]);
+        Component physicComponent = new Component(data.name, data.inputs, data.outputs, SaveLoadSheet.functions[id]);
         physicSheet.addComponent(physicComponent);
         ComponentInstance instance = new ComponentInstance(SaveLoadSheet.loadedObjects[id], data.inputs, data.outputs, physicComponent);
         currentSheet.addObject(instance);
@@ -103,22 +154,284 @@ public class Controller {
     }
 
     public void simulate(ActionEvent actionEvent) {
-        for (Wire wire : physicSheet.getWires()) {
-            wire.setState(null);
+        physicSheet.reset();
+        try {
+            physicSheet.refresh();
+        }
+        catch (IllegalStateException e) {
+            showStatus("Not simulated : " + e.getMessage());
+            return;
         }
-        physicSheet.refresh();
-        for (Wire wire : physicSheet.getWires()) {
-            System.out.println(wire.getState());
+        showStatus("");
+        String waveform = System.getProperty("simulator.vcd");
+        if (Objects.nonNull(waveform)) {
+            record(Paths.get(waveform));
         }
         currentSheet.refresh();
     }
 
+    /**
+     * Writes the states of the sheet as the next step of the waveform. After an edit of the sheet the file is
+     * written again from the start, with the new wires.
+     * @param path the file of the waveform
+     */
+    private void record(Path path) {
+        if (Objects.nonNull(recorder) && recordedVersion != physicSheet.getVersion()) {
+            closeRecorder();
+        }
+        try {
+            if (Objects.isNull(recorder)) {
+                ComponentData data = new ComponentData(SaveLoadSheet.loadedObjects.length, NameInput.getText(), Picker.getValue(), currentSheet);
+                Wire[] wires = new Wire[currentSheet.wires.size()];
+                for (int i = 0; i < wires.length; i++) {
+                    wires[i] = currentSheet.wires.get(i).getPhysicWire();
+                }
+                recorder = VcdWriter.forSheet(path, data, wires);
+                recordedVersion = physicSheet.getVersion();
+            }
+            recorder.record(step++);
+            recorder.flush();
+        }
+        catch (IOException | IllegalArgumentException | IllegalStateException e) {
+            System.err.println("Waveform not written : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Closes the waveform, the next record starting a new one
+     */
+    private void closeRecorder() {
+        if (Objects.isNull(recorder)) {
+            return;
+        }
+        try {
+            recorder.close();
+        }
+        catch (IOException e) {
+            System.err.println("Waveform not written : " + e.getMessage());
+        }
+        recorder = null;
+        step = 0;
+    }
+
+    /**
+     * Saves the state of every wire, to come back to it after toggling some inputs
+     */
+    public void takeSnapshot(ActionEvent actionEvent) {
+        snapshot = physicSheet.snapshot();
+    }
+
+    /**
+     * Gives back the states of the last snapshot without simulating, only the wires which changed are repainted
+     */
+    public void restoreSnapshot(ActionEvent actionEvent) {
+        if (Objects.nonNull(snapshot)) {
+            currentSheet.refresh(physicSheet.restore(snapshot));
+        }
+    }
+
+    /**
+     * Forgets what was taken on the previous sheet, called when the sheet is replaced by a new or a loaded one
+     */
+    public void sheetReplaced() {
+        snapshot = null;
+        closeRecorder();
+        failedVersion = -1;
+    }
+
+    /**
+     * Starts the simulation on its own thread if needed, then runs or pauses it
+     */
+    public void runSimulation(ActionEvent actionEvent) {
+        if (!startSimulation()) {
+            return;
+        }
+        if (simulation.isRunning()) {
+            simulation.pause();
+            Run.setText("Run");
+        }
+        else {
+            simulation.run();
+            Run.setText("Pause");
+        }
+    }
+
+    /**
+     * Pauses the simulation and simulates a single clock edge
+     */
+    public void stepSimulation(ActionEvent actionEvent) {
+        if (!startSimulation()) {
+            return;
+        }
+        simulation.pause();
+        Run.setText("Run");
+        simulation.step();
+    }
+
+    /**
+     * Reads the speed slider : 10^value cycles per second, its maximum meaning as fast as possible
+     */
+    public void setSpeed(MouseEvent mouseEvent) {
+        if (Objects.nonNull(simulation)) {
+            double value = SpeedSlider.getValue();
+            simulation.setSpeed(value >= SpeedSlider.getMax() ? 0 : Math.pow(10, value));
+        }
+    }
+
+    private boolean startSimulation() {
+        if (Objects.isNull(simulation)) {
+            try {
+                simulation = new SimulationService(physicSheet);
+            }
+            catch (IllegalStateException e) {
+                showStatus("Simulation not started : " + e.getMessage());
+                return false;
+            }
+            setSpeed(null);
+        }
+        return true;
+    }
+
+    /**
+     * Shows the last state published by the simulation, called on every frame. The simulation is given the new
+     * topology of the sheet after an edit.
+     */
+    public void showSimulation() {
+        if (Objects.isNull(simulation)) {
+            return;
+        }
+        if (physicSheet.getVersion() == failedVersion) {
+            return;
+        }
+        try {
+            if (physicSheet.getNetlist() != simulation.getNetlist()) {
+                simulation.load(physicSheet);
+                showStatus("");
+            }
+        }
+        catch (IllegalStateException e) {
+            // Une boucle combinatoire pendant l'édition : on garde l'ancienne topologie jusqu'à la prochaine modification
+            failedVersion = physicSheet.getVersion();
+            showStatus("Not simulated : " + e.getMessage());
+            return;
+        }
+        SimulationService.State state = simulation.poll();
+        if (Objects.nonNull(state)) {
+            currentSheet.refresh(physicSheet.load(state.getNetlist(), state.getValues()));
+            SpeedLabel.setText(String.format("%d cycles, %.0f /s", state.getCycle(), state.getCyclesPerSecond()));
+        }
+    }
+
+    /**
+     * Starts counting the transitions of the wires, shown as a heat map, or stops and writes the toggle coverage of
+     * every wire of the sheet in the file given by the property simulator.coverage, coverage.txt by default
+     */
+    public void toggleCoverage(ActionEvent actionEvent) {
+        if (!physicSheet.isToggleCounting()) {
+            physicSheet.setToggleCounting(true);
+            renderer.setHeatMap(true);
+            Coverage.setText("Report");
+            return;
+        }
+        try {
+            ToggleCounter toggles = physicSheet.getToggleCounter();
+            if (Objects.nonNull(toggles)) {
+                ComponentData data = new ComponentData(SaveLoadSheet.loadedObjects.length, NameInput.getText(), Picker.getValue(), currentSheet);
+                Wire[] wires = new Wire[currentSheet.wires.size()];
+                for (int i = 0; i < wires.length; i++) {
+                    wires[i] = currentSheet.wires.get(i).getPhysicWire();
+                }
+                Path path = Paths.get(System.getProperty("simulator.coverage", "coverage.txt"));
+                Files.writeString(path, data.getToggleReport(toggles, wires), StandardCharsets.UTF_8);
+                System.err.println("Toggle coverage written to " + path.toAbsolutePath());
+            }
+        }
+        catch (IOException | IllegalArgumentException | IllegalStateException e) {
+            System.err.println("Toggle coverage not written : " + e.getMessage());
+        }
+        finally {
+            physicSheet.setToggleCounting(false);
+            renderer.setHeatMap(false);
+            Coverage.setText("Coverage");
+        }
+    }
+
     public void setSimulateState(boolean state) {
         Transform.setDisable(!state);
     }
 
+    /**
+     * Shows a message to the user below the workspace
+     * @param message the message, empty to clear it
+     */
+    public void showStatus(String message) {
+        StatusLabel.setText(message);
+    }
+
+    /**
+     * Compiles the sheet into a component on a background thread, a second click cancels the compilation
+     */
     public void transformSheet() {
-        SaveLoadSheet.saveSheet(SaveLoadSheet.loadedObjects.length, NameInput.getText(), Picker.getValue(), currentSheet);
+        if (Objects.nonNull(compiler)) {
+            compiler.cancel();
+            if (Objects.nonNull(bddCompiler)) {
+                bddCompiler.cancel();
+            }
+            return;
+        }
+        ComponentData data;
+        TruthTableCompiler sheetCompiler;
+        BddCompiler sheetBddCompiler;
+        try {
+            data = new ComponentData(SaveLoadSheet.loadedObjects.length, NameInput.getText(), Picker.getValue(), currentSheet);
+            sheetCompiler = SaveLoadSheet.createCompiler(currentSheet);
+            sheetBddCompiler = SaveLoadSheet.createBddCompiler(currentSheet);
+        }
+        catch (IllegalStateException e) {
+            showStatus("Not transformed : " + e.getMessage());
+            return;
+        }
+        DoubleConsumer progressListener = progress -> Platform.runLater(() -> Transform.setText((int) (progress * 100) + " %"));
+        sheetCompiler.setProgressListener(progressListener);
+        if (Objects.nonNull(sheetBddCompiler)) {
+            sheetBddCompiler.setProgressListener(progressListener);
+        }
+        compiler = sheetCompiler;
+        bddCompiler = sheetBddCompiler;
+        showStatus("");
+
+        Thread thread = new Thread(() -> {
+            String status = "";
+            try {
+                data.setFunction(SaveLoadSheet.compileFunction(sheetCompiler, sheetBddCompiler));
+                SaveLoadSheet.writeComponent(data);
+                status = "Component " + data.name + " saved";
+            }
+            catch (CancellationException e) {
+                status = "Transformation cancelled";
+            }
+            catch (IOException e) {
+                status = "Not transformed, the component can't be written : " + e.getMessage();
+            }
+            catch (OutOfMemoryError e) {
+                status = "Not transformed : not enough memory for the function of the sheet";
+            }
+            catch (RuntimeException e) {
+                e.printStackTrace();
+                status = "Not transformed : " + e;
+            }
+            finally {
+                String message = status;
+                Platform.runLater(() -> {
+                    compiler = null;
+                    bddCompiler = null;
+                    Transform.setText("Transform");
+                    showStatus(message);
+                });
+            }
+        }, "truth-table-compiler");
+        thread.setDaemon(true);
+        thread.start();
     }
 
     public void loadLastSheet(MouseEvent event) throws ComponentNotFoundException, IOException {
@@ -4,6 +4,7 @@ import com.Application.FileManger.ComponentNotFoundException;
 import com.Application.FileManger.SaveLoadSheet;
 import com.Graphics.Workspace.Application.CanvasRenderer;
 import com.Graphics.Workspace.Sheet.Sheet;
+import com.Physics.SimulationService;
 import javafx.animation.AnimationTimer;
 import javafx.application.Application;
 import javafx.fxml.FXML;
@@ -22,6 +23,10 @@ public class GraphicsManager extends Application {
     public static Sheet currentSheet;
     public static com.Physics.Sheet physicSheet;
     public static com.Graphics.Workspace.Application.CanvasRenderer renderer;
+    /**
+     * The simulation running on its own thread, null until the user starts it
+     */
+    public static SimulationService simulation;
 
     @FXML
     public static Controller controller;
@@ -89,11 +94,23 @@ public class GraphicsManager extends Application {
         stage.show();
     }
 
+    /**
+     * Stops the simulation thread when the application exits
+     */
+    @Override
+    public void stop() {
+        if (Objects.nonNull(simulation)) {
+            simulation.shutdown();
+        }
+    }
+
     public static void main(String[] args) {
         launch();
     }
 
     public static void CanvasAnimator(CanvasRenderer renderer) {
+        // On ne prend que le dernier état publié, sans jamais attendre la simulation
+        controller.showSimulation();
         renderer.renderGraphicContext();
     }
 }
@@ -18,6 +18,7 @@ import java.util.Objects;
 
 import static com.Graphics.GraphicsManager.currentSheet;
 import static com.Graphics.GraphicsManager.physicSheet;
+import static com.Graphics.GraphicsManager.simulation;
 
 /**
  * This class allows the user to interact with the canvas
@@ -94,6 +95,9 @@ public class CanvasInteractions {
     private void OnMousePressed(MouseEvent event) {
         // On essaye de récupérer un node sous le curseur
         GraphicNode node = sheet.getNodeAt(event.getX() / scale, event.getY() / scale);
+        if (Objects.nonNull(node) && isFlattened(node)) {
+            return;
+        }
         if (Objects.nonNull(node)) {
             // Dans ce cas, on sélectionne le node
             selectedNode = node;
@@ -155,15 +159,26 @@ public class CanvasInteractions {
                     ArrayList<WireInstance> node = ((OutputNode) selectedNode).wiresConnected;
                     node.get(0).getPhysicWire().setState(!selectedNode.getState());
 
+                    // On ne propage que le changement de l'entrée, et on ne redessine que les fils modifiés
                     if (sheet.isSheetComplete()) {
-                        for (Wire wire : physicSheet.getWires()) {
-                            wire.setState(null);
+                        ArrayList<Wire> toggledWires = new ArrayList<>();
+                        for (int i = 1; i < node.size(); i++) {
+                            toggledWires.add(node.get(i).getPhysicWire());
                         }
-                        physicSheet.refresh();
-                        for (Wire wire : physicSheet.getWires()) {
-                            System.out.println(wire.getState());
+                        if (Objects.nonNull(simulation)) {
+                            // La simulation tourne sur son propre fil, elle publiera le nouvel état
+                            for (Wire wire : toggledWires) {
+                                simulation.setInput(wire, wire.getState() == Boolean.TRUE);
+                            }
+                        }
+                        else {
+                            try {
+                                currentSheet.refresh(physicSheet.propagate(toggledWires));
+                            }
+                            catch (IllegalStateException e) {
+                                GraphicsManager.controller.showStatus("Not simulated : " + e.getMessage());
+                            }
                         }
-                        currentSheet.refresh();
                     }
                 }
                 break;
@@ -186,13 +201,21 @@ public class CanvasInteractions {
                 if (!selectedWire.canBePlaced) {
                     sheet.removeWire(selectedWire);
                 }
-                if (sheet.isSheetComplete()) {
-                    for (Wire wire : physicSheet.getWires()) {
-                        wire.setState(null);
+                else if (currentAction == CurrentAction.wireDragFromInput && Objects.nonNull(selectedWire.getStart())
+                        && selectedWire.getStart().relativeTo instanceof IOComponent) {
+                    // Le fil a été tiré jusqu'à une entrée de la feuille
+                    selectedWire.setState(selectedWire.getStart().getState());
+                    physicSheet.addWireInput(selectedWire.getPhysicWire());
+                }
+                if (sheet.isSheetComplete() && Objects.isNull(simulation)) {
+                    physicSheet.reset();
+                    try {
+                        physicSheet.refresh();
+                        GraphicsManager.controller.showStatus("");
                     }
-                    physicSheet.refresh();
-                    for (Wire wire : physicSheet.getWires()) {
-                        System.out.println(wire.getState());
+                    catch (IllegalStateException e) {
+                        // Le fil vient de fermer une boucle combinatoire
+                        GraphicsManager.controller.showStatus("Not simulated : " + e.getMessage());
                     }
                     currentSheet.refresh();
                 }
@@ -254,7 +277,9 @@ public class CanvasInteractions {
                         startNode.relativeTo.getPhysicComponent().addWireOutput(selectedWire.getPhysicWire(), startNode.id);
                         physicSheet.addWire(selectedWire.getPhysicWire());
                     } else {
+                        // Un fil partant d'une entrée de la feuille est une entrée de la feuille physique
                         selectedWire.getPhysicWire().setState(startNode.getState());
+                        physicSheet.addWireInput(selectedWire.getPhysicWire());
                     }
                     startNode.setState(startNode.getState());
                     // On passe en wireDrag
@@ -264,6 +289,9 @@ public class CanvasInteractions {
                 case wireDragFromOutput: {
                     // On essaye de récupérer un fil
                     GraphicNode possibleEndNode = sheet.getNodeAt(posX, posY);
+                    if (Objects.nonNull(possibleEndNode) && isFlattened(possibleEndNode)) {
+                        possibleEndNode = null;
+                    }
 
                     // Cas 1 : on reste sur le même node
                     if (Objects.nonNull(endNode) && Objects.equals(endNode, possibleEndNode)) {
@@ -361,6 +389,9 @@ public class CanvasInteractions {
                 case wireDragFromInput: {
                     // On essaye de récupérer un fil
                     GraphicNode possibleStartNode = sheet.getNodeAt(posX, posY);
+                    if (Objects.nonNull(possibleStartNode) && isFlattened(possibleStartNode)) {
+                        possibleStartNode = null;
+                    }
 
                     // Cas 1 : on reste sur le même node
                     if (Objects.nonNull(startNode) && Objects.equals(startNode, possibleStartNode)) {
@@ -420,6 +451,21 @@ public class CanvasInteractions {
         }
     }
 
+    /**
+     * Tests if a node belongs to a flattened component, whose physic component is no longer in the physic sheet,
+     * and tells the user that its wires can't be edited
+     * @param node the node under the cursor
+     * @return true if no wire can be connected to the node
+     */
+    private boolean isFlattened(GraphicNode node) {
+        if (!node.relativeTo.isFlattened()) {
+            return false;
+        }
+        GraphicsManager.controller.showStatus("The wires of " + node.relativeTo.instanceOf.name
+                + " can't be edited, it is simulated through its gates");
+        return true;
+    }
+
     /**
      * Teste si le fil sélectionné peut être placé
      */
@@ -4,6 +4,7 @@ import com.Config;
 import com.Graphics.Workspace.Component.ComponentInstance;
 import com.Graphics.Workspace.Sheet.Sheet;
 import com.Graphics.Workspace.Wire.WireInstance;
+import com.Physics.ToggleCounter;
 import javafx.geometry.VPos;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
@@ -13,6 +14,8 @@ import javafx.scene.text.TextAlignment;
 
 import java.util.ArrayList;
 
+import static com.Graphics.GraphicsManager.physicSheet;
+
 /**
  * This class make the canvas render each frame.
  */
@@ -32,6 +35,11 @@ public class CanvasRenderer {
      */
     private double scale;
 
+    /**
+     * Whether the wires are colored by their number of transitions instead of their state
+     */
+    private boolean heatMap;
+
     public void setScale(double newScale) {
         scale = newScale;
     }
@@ -53,8 +61,16 @@ public class CanvasRenderer {
         context.setFill(Config.WSBackgroundColor);
         context.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
 
+        ToggleCounter toggles = heatMap ? physicSheet.getToggleCounter() : null;
+        // L'échelle est logarithmique, pour distinguer les fils peu actifs des fils jamais basculés
+        double maxHeat = toggles == null ? 0 : Math.log1p(toggles.getMaxToggles());
         for (WireInstance wire: displayedSheet.wires) {
             wire.drawWire(context, scale);
+            if (toggles != null && wire.isReal) {
+                int net = toggles.getNetlist().getNet(wire.getPhysicWire());
+                double heat = net == -1 || maxHeat == 0 ? 0 : Math.log1p(toggles.getToggles(net)) / maxHeat;
+                context.setStroke(Config.lerpColor(Config.WSColdWiresColor, Config.WSHotWiresColor, heat));
+            }
             context.stroke();
         }
 
@@ -74,6 +90,14 @@ public class CanvasRenderer {
         displayedSheet.ioComponent.drawComponent(context, scale);
     }
 
+    /**
+     * Colors the wires from cold to hot by their number of transitions, counted by the physic sheet
+     * @param heatMap false to color the wires by their state again
+     */
+    public void setHeatMap(boolean heatMap) {
+        this.heatMap = heatMap;
+    }
+
     public void setDisplayedSheet(Sheet displayedSheet) {
         this.displayedSheet = displayedSheet;
     }
@@ -103,4 +103,19 @@ public abstract class ObjectInstance {
         return false;
     }
 
+    /**
+     * True when the physic component was replaced by its gates, it is no longer in the physic sheet
+     */
+    private boolean flattened;
+    public void setFlattened(boolean flattened) {
+        this.flattened = flattened;
+    }
+    /**
+     * Tests if the physic component was replaced by its gates, the wires of the object can't be edited then
+     * @return true if the object is flattened
+     */
+    public boolean isFlattened() {
+        return flattened;
+    }
+
 }
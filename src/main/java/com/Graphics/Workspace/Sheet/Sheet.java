@@ -10,8 +10,12 @@ import com.Graphics.Workspace.Node.OutputNode;
 import com.Graphics.Workspace.Wire.WireInstance;
 import com.Graphics.Workspace.Wire.WireInteraction;
 
+import com.Physics.Wire;
+
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Objects;
 
 
@@ -55,6 +59,10 @@ public class Sheet {
      * The real wires that the sheet contains
      */
     public ArrayList<WireInstance> wires;
+    /**
+     * The wire instances of the sheet, indexed by their physic wire
+     */
+    private final HashMap<Wire, WireInstance> wiresByPhysicWire;
 
     public IOComponent ioComponent;
 
@@ -70,6 +78,7 @@ public class Sheet {
         components = new ArrayList<>();
         nodes = new ArrayList<>();
         wires = new ArrayList<>();
+        wiresByPhysicWire = new HashMap<>();
 
         ioComponent = new IOComponent(this);
     }
@@ -92,6 +101,7 @@ public class Sheet {
 
     public void addWire(WireInstance wire) {
         wires.add(wire);
+        wiresByPhysicWire.put(wire.getPhysicWire(), wire);
     }
     public void addOrphanNode(GraphicNode node) {
         nodes.add(node);
@@ -102,6 +112,7 @@ public class Sheet {
         while (true) {
             if (!wires.remove(wire)) break;
         }
+        wiresByPhysicWire.remove(wire.getPhysicWire());
     }
 
     /**
@@ -274,4 +285,17 @@ public class Sheet {
             wire.refresh();
         }
     }
+
+    /**
+     * Refreshes only the wire instances whose physic wire changed
+     * @param changedWires the physic wires whose state changed
+     */
+    public void refresh(Collection<Wire> changedWires) {
+        for (Wire physicWire : changedWires) {
+            WireInstance wire = wiresByPhysicWire.get(physicWire);
+            if (Objects.nonNull(wire)) {
+                wire.refresh();
+            }
+        }
+    }
 }
@@ -275,12 +275,12 @@ public class WireInstance {
         if (Objects.nonNull(end)) {
             end.removeWire();
         }
-        physicSheet.getWires().remove(this);
+        physicSheet.removeWire(physicWire);
         //TODO: delete object
     }
 
     public void refresh() {
-        state = physicWire.getState();
+        state = physicWire.getState() == Boolean.TRUE;
     }
 
     public Wire getPhysicWire() {
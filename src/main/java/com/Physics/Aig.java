@@ -0,0 +1,423 @@
+package com.Physics;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * An And-Inverter Graph : every gate is a 2 inputs and, the inversions being carried by the edges.
+ * A literal is node << 1 | inverted, the node 0 is the constant false, the nodes 1..inputs are the inputs, and the
+ * other nodes are and nodes created children first. The and nodes are hash-consed through a unique table, so that
+ * a subexpression built twice on the same literals is a single node, evaluated once.
+ */
+public class Aig {
+
+    public static final int FALSE = 0;
+    public static final int TRUE = 1;
+
+    private final int inputs;
+    private int[] fanins0;
+    private int[] fanins1;
+    private int size;
+    /**
+     * The unique table, open addressing with linear probing, -1 for an empty slot
+     */
+    private int[] unique;
+    private int[] outputs = new int[0];
+
+    /**
+     * Creates a graph holding only its inputs
+     * @param inputs the number of inputs
+     */
+    public Aig(int inputs) {
+        this.inputs = inputs;
+        size = inputs + 1;
+        int capacity = Math.max(64, Integer.highestOneBit(size) << 1);
+        fanins0 = new int[capacity];
+        fanins1 = new int[capacity];
+        Arrays.fill(fanins0, 0, size, -1);
+        Arrays.fill(fanins1, 0, size, -1);
+        unique = new int[capacity << 1];
+        Arrays.fill(unique, -1);
+    }
+
+    public int getInputs() {
+        return inputs;
+    }
+
+    /**
+     * Gets the number of nodes, the constant and the inputs included
+     */
+    public int getNodeCount() {
+        return size;
+    }
+
+    /**
+     * Gets the number of and nodes
+     */
+    public int getAndCount() {
+        return size - inputs - 1;
+    }
+
+    /**
+     * Gets the literal of an input
+     * @param i the index of the input
+     */
+    public int input(int i) {
+        return (i + 1) << 1;
+    }
+
+    public int getFanin0(int node) {
+        return fanins0[node];
+    }
+
+    public int getFanin1(int node) {
+        return fanins1[node];
+    }
+
+    public static int not(int literal) {
+        return literal ^ 1;
+    }
+
+    /**
+     * Gets the and of two literals, creating its node if no equal node exists
+     */
+    public int and(int a, int b) {
+        if (a > b) {
+            int swap = a;
+            a = b;
+            b = swap;
+        }
+        if (a == FALSE || a == not(b)) {
+            return FALSE;
+        }
+        if (a == TRUE || a == b) {
+            return b;
+        }
+        int mask = unique.length - 1;
+        int slot = hash(a, b) & mask;
+        while (unique[slot] != -1) {
+            int node = unique[slot];
+            if (fanins0[node] == a && fanins1[node] == b) {
+                return node << 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size == fanins0.length) {
+            fanins0 = Arrays.copyOf(fanins0, size << 1);
+            fanins1 = Arrays.copyOf(fanins1, size << 1);
+        }
+        int node = size++;
+        fanins0[node] = a;
+        fanins1[node] = b;
+        unique[slot] = node;
+        if (size << 1 > unique.length) {
+            rehash();
+        }
+        return node << 1;
+    }
+
+    public int or(int a, int b) {
+        return not(and(not(a), not(b)));
+    }
+
+    /**
+     * Computes if s then t else e
+     */
+    public int mux(int s, int t, int e) {
+        return or(and(s, t), and(not(s), e));
+    }
+
+    private static int hash(int a, int b) {
+        long hash = a * 0x9E3779B97F4A7C15L + b * 0xC2B2AE3D27D4EB4FL;
+        return (int) (hash ^ hash >>> 32);
+    }
+
+    private void rehash() {
+        unique = new int[unique.length << 1];
+        Arrays.fill(unique, -1);
+        int mask = unique.length - 1;
+        for (int node = inputs + 1; node < size; node++) {
+            int slot = hash(fanins0[node], fanins1[node]) & mask;
+            while (unique[slot] != -1) {
+                slot = (slot + 1) & mask;
+            }
+            unique[slot] = node;
+        }
+    }
+
+    public int[] getOutputs() {
+        return outputs;
+    }
+
+    public void setOutputs(int[] outputs) {
+        this.outputs = outputs;
+    }
+
+    /**
+     * Evaluates every node on 64 vectors at once
+     * @param inputValues the 64 states of each input, bit k for the vector k
+     * @param values working memory of getNodeCount() words, holding the state of each node afterwards
+     * @return the 64 states of each output
+     */
+    public long[] simulate(long[] inputValues, long[] values) {
+        values[0] = 0;
+        System.arraycopy(inputValues, 0, values, 1, inputs);
+        for (int node = inputs + 1; node < size; node++) {
+            int a = fanins0[node];
+            int b = fanins1[node];
+            values[node] = (values[a >> 1] ^ -(long) (a & 1)) & (values[b >> 1] ^ -(long) (b & 1));
+        }
+        long[] result = new long[outputs.length];
+        for (int o = 0; o < outputs.length; o++) {
+            result[o] = values[outputs[o] >> 1] ^ -(long) (outputs[o] & 1);
+        }
+        return result;
+    }
+
+    /**
+     * Copies the nodes of another graph into this one, merging them with the equal nodes already here
+     * @param other the graph to copy
+     * @param inputLiterals the literal of this graph given to each input of the other one
+     * @return the literal of each output of the other graph
+     */
+    public int[] add(Aig other, int[] inputLiterals) {
+        int[] literals = new int[other.size];
+        literals[0] = FALSE;
+        System.arraycopy(inputLiterals, 0, literals, 1, other.inputs);
+        for (int node = other.inputs + 1; node < other.size; node++) {
+            literals[node] = and(map(literals, other.fanins0[node]), map(literals, other.fanins1[node]));
+        }
+        int[] result = new int[other.outputs.length];
+        for (int o = 0; o < result.length; o++) {
+            result[o] = map(literals, other.outputs[o]);
+        }
+        return result;
+    }
+
+    private static int map(int[] literals, int literal) {
+        return literals[literal >> 1] ^ (literal & 1);
+    }
+
+    /**
+     * Computes a hash of the structure of the outputs, which doesn't depend on the numbering of the nodes nor on
+     * the order of the inputs of the and nodes. Two graphs of different hashes are structurally different.
+     * @return the hash
+     */
+    public long signature() {
+        long[] hashes = new long[size];
+        for (int i = 1; i <= inputs; i++) {
+            hashes[i] = mix(i);
+        }
+        for (int node = inputs + 1; node < size; node++) {
+            long a = edge(hashes, fanins0[node]);
+            long b = edge(hashes, fanins1[node]);
+            hashes[node] = mix(Math.min(a, b) * 31 + Math.max(a, b));
+        }
+        long signature = mix(inputs);
+        for (int output : outputs) {
+            signature = mix(signature * 31 + edge(hashes, output));
+        }
+        return signature;
+    }
+
+    private static long edge(long[] hashes, int literal) {
+        return (literal & 1) == 0 ? hashes[literal >> 1] : ~hashes[literal >> 1];
+    }
+
+    private static long mix(long x) {
+        x = (x ^ (x >>> 33)) * 0xff51afd7ed558ccdL;
+        x = (x ^ (x >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return x ^ (x >>> 33);
+    }
+
+    /**
+     * Checks if two graphs compute their outputs with the same structure, by hashing both into a common graph.
+     * Equal structures have equal functions, but equal functions can have different structures.
+     * @return true if every output of a is the same node as the output of b
+     */
+    public static boolean structurallyEqual(Aig a, Aig b) {
+        if (a.inputs != b.inputs || a.outputs.length != b.outputs.length || a.signature() != b.signature()) {
+            return false;
+        }
+        Aig common = new Aig(a.inputs);
+        int[] inputLiterals = new int[a.inputs];
+        for (int i = 0; i < inputLiterals.length; i++) {
+            inputLiterals[i] = common.input(i);
+        }
+        return Arrays.equals(common.add(a, inputLiterals), common.add(b, inputLiterals));
+    }
+
+    /**
+     * Builds a sheet computing the outputs with the built-in gates, the inputs and outputs of the sheet being in the
+     * order of the graph. An and node becomes an and, its inversion an or when both its inputs are inverted and a not
+     * otherwise, so that the or gates of the original sheet come back. Only the nodes reaching an output are built.
+     * @return the sheet
+     */
+    public Sheet toSheet() {
+        boolean[] needed = new boolean[size << 1];
+        for (int output : outputs) {
+            needed[output] = true;
+        }
+        for (int node = size - 1; node > inputs; node--) {
+            int a = fanins0[node];
+            int b = fanins1[node];
+            if (needed[node << 1 | 1]) {
+                if ((a & b & 1) == 1) {
+                    needed[not(a)] = true;
+                    needed[not(b)] = true;
+                } else {
+                    needed[node << 1] = true;
+                }
+            }
+            if (needed[node << 1]) {
+                needed[a] = true;
+                needed[b] = true;
+            }
+        }
+
+        Sheet sheet = new Sheet();
+        Wire[] wires = new Wire[size << 1];
+        for (int i = 0; i < inputs; i++) {
+            wires[input(i)] = new Wire();
+            sheet.addWireInput(wires[input(i)]);
+        }
+        for (int constant = FALSE; constant <= TRUE; constant++) {
+            if (needed[constant]) {
+                Component component = new Component(constant == TRUE ? "true" : "false", 0, 1,
+                        TruthTable.parse(String.valueOf(constant), 0, 1));
+                wires[constant] = gate(sheet, component);
+            }
+        }
+        for (int node = 1; node < size; node++) {
+            int a = fanins0[node];
+            int b = fanins1[node];
+            if (node > inputs && needed[node << 1]) {
+                wires[node << 1] = gate(sheet, new Component("and", 2, 1, TruthTable.and()), wires[a], wires[b]);
+            }
+            if (needed[node << 1 | 1]) {
+                if (node > inputs && (a & b & 1) == 1) {
+                    wires[node << 1 | 1] = gate(sheet, new Component("or", 2, 1, TruthTable.or()),
+                            wires[not(a)], wires[not(b)]);
+                } else {
+                    wires[node << 1 | 1] = gate(sheet, new Component("not", 1, 1, TruthTable.not()), wires[node << 1]);
+                }
+            }
+        }
+        for (int output : outputs) {
+            sheet.addOutput(wires[output]);
+        }
+        return sheet;
+    }
+
+    /**
+     * Adds a single output gate to a sheet
+     * @return the wire of its output
+     */
+    private static Wire gate(Sheet sheet, Component component, Wire... inputs) {
+        sheet.addComponent(component);
+        for (int i = 0; i < inputs.length; i++) {
+            component.addWireInput(inputs[i], i);
+        }
+        Wire wire = new Wire();
+        wire.addConnection(component, 0);
+        wire.setId(0, 0);
+        component.addWireOutput(wire, 0);
+        sheet.addWire(wire);
+        return wire;
+    }
+
+    /**
+     * Converts a netlist : the built-in gates become and nodes and inversions, the other functions are converted
+     * through their decision diagram, each node of the diagram becoming a multiplexer.
+     * The inputs of the graph are the inputs of the sheet, and its outputs the outputs of the sheet.
+     * @param netlist the compiled sheet
+     * @return the graph
+     * @throws IllegalArgumentException if the netlist has registers, the graph being combinational
+     */
+    public static Aig fromNetlist(Netlist netlist) {
+        if (netlist.getRegisters().length > 0) {
+            throw new IllegalArgumentException("A sheet with registers can't be converted into an and-inverter graph");
+        }
+        int[] inputNets = netlist.getInputNets();
+        Aig aig = new Aig(inputNets.length);
+        // Les nets sans pilote qui ne sont pas des entrées de la feuille sont lus comme faux
+        int[] literals = new int[netlist.getNetCount()];
+        for (int i = 0; i < inputNets.length; i++) {
+            literals[inputNets[i]] = aig.input(i);
+        }
+
+        int[] gateTypes = netlist.getGateTypes();
+        int[] faninStart = netlist.getFaninStart();
+        int[] faninNets = netlist.getFaninNets();
+        int[] gateOutputs = netlist.getGateOutputs();
+        LogicFunction[] gateFunctions = netlist.getGateFunctions();
+        Map<LogicFunction, BddFunction> diagrams = new IdentityHashMap<>();
+        int[] operands = new int[netlist.getMaxFanin()];
+        for (int g = 0; g < gateTypes.length; g++) {
+            int count = faninStart[g + 1] - faninStart[g];
+            for (int i = 0; i < count; i++) {
+                int net = faninNets[faninStart[g] + i];
+                operands[i] = net < 0 ? FALSE : literals[net];
+            }
+            switch (gateTypes[g]) {
+                case Netlist.NOT:
+                    literals[gateOutputs[g]] = not(operands[0]);
+                    break;
+                case Netlist.AND:
+                    literals[gateOutputs[g]] = aig.and(operands[0], operands[1]);
+                    break;
+                case Netlist.OR:
+                    literals[gateOutputs[g]] = aig.or(operands[0], operands[1]);
+                    break;
+                default:
+                    BddFunction diagram = diagrams.computeIfAbsent(gateFunctions[g], Aig::toDiagram);
+                    for (int o = 0; o < diagram.getOutputs(); o++) {
+                        literals[gateOutputs[g] + o] = aig.addDiagram(diagram, o, operands);
+                    }
+                    break;
+            }
+        }
+
+        int[] outputNets = netlist.getOutputNets();
+        int[] outputs = new int[outputNets.length];
+        for (int o = 0; o < outputs.length; o++) {
+            outputs[o] = literals[outputNets[o]];
+        }
+        aig.setOutputs(outputs);
+        return aig;
+    }
+
+    /**
+     * Gets the decision diagram of a function, its input i being the variable i
+     */
+    private static BddFunction toDiagram(LogicFunction function) {
+        if (function instanceof BddFunction) {
+            return (BddFunction) function;
+        }
+        Bdd bdd = new Bdd(BddCompiler.MAX_NODES, 16);
+        int[] variables = new int[function.getInputs()];
+        for (int i = 0; i < variables.length; i++) {
+            variables[i] = bdd.variable(i);
+        }
+        int[] roots = new int[function.getOutputs()];
+        for (int o = 0; o < roots.length; o++) {
+            roots[o] = BddCompiler.apply(bdd, function, o, variables);
+        }
+        return bdd.export(roots, variables.length);
+    }
+
+    /**
+     * Builds an output of a decision diagram, each node becoming a multiplexer on the literal of its input
+     */
+    private int addDiagram(BddFunction diagram, int output, int[] operands) {
+        int root = diagram.getRoot(output);
+        int[] nodes = new int[root + 1];
+        nodes[Bdd.FALSE] = FALSE;
+        nodes[Bdd.TRUE] = TRUE;
+        for (int k = 2; k <= root; k++) {
+            nodes[k] = mux(operands[diagram.getVar(k)], nodes[diagram.getHigh(k)], nodes[diagram.getLow(k)]);
+        }
+        return nodes[root];
+    }
+}
@@ -0,0 +1,237 @@
+package com.Physics;
+
+import java.util.Arrays;
+
+/**
+ * A manager of reduced ordered binary decision diagrams. The nodes live in primitive arrays and are hash-consed
+ * through a unique table, so that two equal functions are the same node. The results of ite are memoized in a
+ * direct-mapped cache of bounded size, a new result overwriting the old one on a collision.
+ * The node 0 is false, the node 1 is true, and the variable i is tested before the variable i + 1.
+ */
+public class Bdd {
+
+    public static final int FALSE = 0;
+    public static final int TRUE = 1;
+
+    private static final int TERMINAL = Integer.MAX_VALUE;
+
+    private int[] vars;
+    private int[] lows;
+    private int[] highs;
+    private int size;
+    private final int maxNodes;
+
+    /**
+     * The unique table, open addressing with linear probing, -1 for an empty slot
+     */
+    private int[] unique;
+
+    private final int[] cacheF;
+    private final int[] cacheG;
+    private final int[] cacheH;
+    private final int[] cacheResult;
+    private final int cacheMask;
+
+    /**
+     * @param maxNodes the number of nodes above which an operation fails, to stop the functions that blow up
+     * @param cacheBits the log2 of the number of entries of the operation cache
+     */
+    public Bdd(int maxNodes, int cacheBits) {
+        this.maxNodes = maxNodes;
+        vars = new int[1024];
+        lows = new int[1024];
+        highs = new int[1024];
+        vars[FALSE] = vars[TRUE] = TERMINAL;
+        size = 2;
+        unique = new int[2048];
+        Arrays.fill(unique, -1);
+
+        cacheMask = (1 << cacheBits) - 1;
+        cacheF = new int[1 << cacheBits];
+        cacheG = new int[1 << cacheBits];
+        cacheH = new int[1 << cacheBits];
+        cacheResult = new int[1 << cacheBits];
+        Arrays.fill(cacheF, -1);
+    }
+
+    public int getNodeCount() {
+        return size;
+    }
+
+    public int var(int node) {
+        return vars[node];
+    }
+
+    public int low(int node) {
+        return lows[node];
+    }
+
+    public int high(int node) {
+        return highs[node];
+    }
+
+    /**
+     * Gets the function of a single variable
+     * @param var the index of the variable
+     * @return its node
+     */
+    public int variable(int var) {
+        return node(var, FALSE, TRUE);
+    }
+
+    public int not(int f) {
+        return ite(f, FALSE, TRUE);
+    }
+
+    public int and(int f, int g) {
+        return ite(f, g, FALSE);
+    }
+
+    public int or(int f, int g) {
+        return ite(f, TRUE, g);
+    }
+
+    /**
+     * Computes if f then g else h
+     * @throws IllegalStateException if the diagram exceeds its maximum number of nodes
+     */
+    public int ite(int f, int g, int h) {
+        if (f == TRUE) {
+            return g;
+        }
+        if (f == FALSE) {
+            return h;
+        }
+        if (g == h) {
+            return g;
+        }
+        if (g == TRUE && h == FALSE) {
+            return f;
+        }
+
+        int slot = (int) ((f * 0x9E3779B97F4A7C15L + g * 0xC2B2AE3D27D4EB4FL + h * 0x165667B19E3779F9L) >>> 40) & cacheMask;
+        if (cacheF[slot] == f && cacheG[slot] == g && cacheH[slot] == h) {
+            return cacheResult[slot];
+        }
+
+        int var = Math.min(vars[f], Math.min(vars[g], vars[h]));
+        int low = ite(cofactor(f, var, false), cofactor(g, var, false), cofactor(h, var, false));
+        int high = ite(cofactor(f, var, true), cofactor(g, var, true), cofactor(h, var, true));
+        int result = node(var, low, high);
+
+        cacheF[slot] = f;
+        cacheG[slot] = g;
+        cacheH[slot] = h;
+        cacheResult[slot] = result;
+        return result;
+    }
+
+    private int cofactor(int node, int var, boolean high) {
+        if (vars[node] != var) {
+            return node;
+        }
+        return high ? highs[node] : lows[node];
+    }
+
+    /**
+     * Gets the node testing a variable, creating it if no equal node exists
+     */
+    private int node(int var, int low, int high) {
+        if (low == high) {
+            return low;
+        }
+        int mask = unique.length - 1;
+        int slot = hash(var, low, high) & mask;
+        while (unique[slot] != -1) {
+            int node = unique[slot];
+            if (vars[node] == var && lows[node] == low && highs[node] == high) {
+                return node;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size == maxNodes) {
+            throw new IllegalStateException("The decision diagram exceeds " + maxNodes + " nodes");
+        }
+        if (size == vars.length) {
+            vars = Arrays.copyOf(vars, size << 1);
+            lows = Arrays.copyOf(lows, size << 1);
+            highs = Arrays.copyOf(highs, size << 1);
+        }
+        int node = size++;
+        vars[node] = var;
+        lows[node] = low;
+        highs[node] = high;
+        unique[slot] = node;
+        if (size << 1 > unique.length) {
+            rehash();
+        }
+        return node;
+    }
+
+    private static int hash(int var, int low, int high) {
+        long hash = var * 0x9E3779B97F4A7C15L + low * 0xC2B2AE3D27D4EB4FL + high * 0x165667B19E3779F9L;
+        return (int) (hash ^ hash >>> 32);
+    }
+
+    private void rehash() {
+        unique = new int[unique.length << 1];
+        Arrays.fill(unique, -1);
+        int mask = unique.length - 1;
+        for (int node = 2; node < size; node++) {
+            int slot = hash(vars[node], lows[node], highs[node]) & mask;
+            while (unique[slot] != -1) {
+                slot = (slot + 1) & mask;
+            }
+            unique[slot] = node;
+        }
+    }
+
+    /**
+     * Copies the nodes reachable from some roots into a compact function, independent of this manager
+     * @param roots the node of each output
+     * @param inputs the number of variables
+     * @return the function
+     */
+    public BddFunction export(int[] roots, int inputs) {
+        int[] local = new int[size];
+        Arrays.fill(local, -1);
+        local[FALSE] = FALSE;
+        local[TRUE] = TRUE;
+        int[] order = new int[size];
+        int count = 2;
+        // Parcours en profondeur itératif, les fils sont numérotés avant leur père
+        int[] stack = new int[size];
+        for (int root : roots) {
+            int top = 0;
+            stack[top++] = root;
+            while (top > 0) {
+                int node = stack[top - 1];
+                if (local[node] != -1) {
+                    top--;
+                } else if (local[lows[node]] == -1) {
+                    stack[top++] = lows[node];
+                } else if (local[highs[node]] == -1) {
+                    stack[top++] = highs[node];
+                } else {
+                    top--;
+                    local[node] = count;
+                    order[count++] = node;
+                }
+            }
+        }
+        int[] nodeVars = new int[count];
+        int[] nodeLows = new int[count];
+        int[] nodeHighs = new int[count];
+        nodeVars[FALSE] = nodeVars[TRUE] = -1;
+        for (int k = 2; k < count; k++) {
+            nodeVars[k] = vars[order[k]];
+            nodeLows[k] = local[lows[order[k]]];
+            nodeHighs[k] = local[highs[order[k]]];
+        }
+        int[] localRoots = new int[roots.length];
+        for (int o = 0; o < roots.length; o++) {
+            localRoots[o] = local[roots[o]];
+        }
+        return new BddFunction(inputs, nodeVars, nodeLows, nodeHighs, localRoots);
+    }
+}
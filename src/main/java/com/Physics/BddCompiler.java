@@ -0,0 +1,181 @@
+package com.Physics;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Compiles the function of a sheet into a decision diagram by simulating it symbolically : each net holds the node
+ * of its function of the sheet inputs, and the gates are applied in level order. Unlike the truth table compiler,
+ * the cost doesn't grow with 2^inputs but with the size of the diagrams, which suits wide sheets.
+ * The variables are tested in the order of the inputs, the diagram staying small when the inputs which interact
+ * are close to each other.
+ */
+public class BddCompiler {
+
+    /**
+     * The default number of nodes above which the compilation gives up
+     */
+    public static final int MAX_NODES = 1 << 22;
+
+    private final Netlist netlist;
+    private final Wire[][] inputs;
+    private final Wire[] outputs;
+    private final int maxNodes;
+
+    private volatile boolean cancelled;
+    private DoubleConsumer progressListener;
+
+    /**
+     * Prepares the compilation of a sheet
+     * @param sheet the sheet to compile
+     * @param inputs the wires of each sheet input, in the order of the inputs
+     * @param outputs the wire of each sheet output, in the order of the outputs
+     * @param maxNodes the number of nodes above which the compilation gives up
+     */
+    public BddCompiler(Sheet sheet, List<List<Wire>> inputs, List<Wire> outputs, int maxNodes) {
+        netlist = sheet.getNetlist();
+        this.inputs = new Wire[inputs.size()][];
+        for (int i = 0; i < inputs.size(); i++) {
+            this.inputs[i] = inputs.get(i).toArray(new Wire[0]);
+        }
+        this.outputs = outputs.toArray(new Wire[0]);
+        this.maxNodes = maxNodes;
+    }
+
+    /**
+     * Sets the listener called with the progress of the compilation, between 0 and 1, the ratio of the gates
+     * already applied. It is called from the compiling thread, at most once per percent.
+     * @param progressListener the listener
+     */
+    public void setProgressListener(DoubleConsumer progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Asks the compilation to stop, compile will throw a CancellationException before the next gate
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Simulates the sheet symbolically
+     * @return the diagram of the sheet, the input i being the variable i
+     * @throws IllegalStateException if the diagram exceeds the maximum number of nodes
+     * @throws CancellationException if the compilation was cancelled
+     */
+    public BddFunction compile() {
+        Bdd bdd = new Bdd(maxNodes, 18);
+        int[] nodes = new int[netlist.getNetCount()];
+        int[] variables = new int[inputs.length];
+        for (int i = 0; i < inputs.length; i++) {
+            variables[i] = bdd.variable(i);
+            for (Wire wire : inputs[i]) {
+                int net = netlist.getNet(wire);
+                if (net != -1) {
+                    nodes[net] = variables[i];
+                }
+            }
+        }
+
+        int[] gateTypes = netlist.getGateTypes();
+        int[] faninStart = netlist.getFaninStart();
+        int[] faninNets = netlist.getFaninNets();
+        int[] gateOutputs = netlist.getGateOutputs();
+        LogicFunction[] gateFunctions = netlist.getGateFunctions();
+        int[] operands = new int[netlist.getMaxFanin()];
+        DoubleConsumer progressListener = this.progressListener;
+        int reportedPercent = 0;
+        for (int g = 0; g < gateTypes.length; g++) {
+            if (cancelled) {
+                throw new CancellationException("Decision diagram compilation cancelled");
+            }
+            if (progressListener != null && 100L * g / gateTypes.length > reportedPercent) {
+                reportedPercent = (int) (100L * g / gateTypes.length);
+                progressListener.accept(reportedPercent / 100d);
+            }
+            int count = faninStart[g + 1] - faninStart[g];
+            for (int i = 0; i < count; i++) {
+                int net = faninNets[faninStart[g] + i];
+                operands[i] = net < 0 ? Bdd.FALSE : nodes[net];
+            }
+            switch (gateTypes[g]) {
+                case Netlist.NOT:
+                    nodes[gateOutputs[g]] = bdd.not(operands[0]);
+                    break;
+                case Netlist.AND:
+                    nodes[gateOutputs[g]] = bdd.and(operands[0], operands[1]);
+                    break;
+                case Netlist.OR:
+                    nodes[gateOutputs[g]] = bdd.or(operands[0], operands[1]);
+                    break;
+                default:
+                    for (int o = 0; o < gateFunctions[g].getOutputs(); o++) {
+                        nodes[gateOutputs[g] + o] = apply(bdd, gateFunctions[g], o, operands);
+                    }
+                    break;
+            }
+        }
+
+        int[] roots = new int[outputs.length];
+        for (int o = 0; o < outputs.length; o++) {
+            int net = netlist.getNet(outputs[o]);
+            roots[o] = net == -1 ? Bdd.FALSE : nodes[net];
+        }
+        return bdd.export(roots, inputs.length);
+    }
+
+    /**
+     * Builds the node of an output of a component from the nodes of its inputs
+     */
+    static int apply(Bdd bdd, LogicFunction function, int output, int[] operands) {
+        if (function instanceof BddFunction) {
+            // Chaque noeud du composant devient un ite sur le noeud de son entrée
+            BddFunction diagram = (BddFunction) function;
+            int root = diagram.getRoot(output);
+            int[] composed = new int[root + 1];
+            composed[Bdd.FALSE] = Bdd.FALSE;
+            composed[Bdd.TRUE] = Bdd.TRUE;
+            for (int k = 2; k <= root; k++) {
+                composed[k] = bdd.ite(operands[diagram.getVar(k)], composed[diagram.getHigh(k)], composed[diagram.getLow(k)]);
+            }
+            return composed[root];
+        }
+        if (function instanceof Cover) {
+            Cover cover = (Cover) function;
+            int result = Bdd.FALSE;
+            for (int c = 0; c < cover.getCubeCount(output); c++) {
+                int cube = Bdd.TRUE;
+                int care = cover.getCare(output, c);
+                for (int bits = care; bits != 0; bits &= bits - 1) {
+                    int b = Integer.numberOfTrailingZeros(bits);
+                    int literal = operands[cover.getInputs() - 1 - b];
+                    cube = bdd.and(cube, (cover.getValue(output, c) >>> b & 1) != 0 ? literal : bdd.not(literal));
+                }
+                result = bdd.or(result, cube);
+            }
+            return result;
+        }
+        TruthTable table = function.toTruthTable();
+        return shannon(bdd, table, output, operands, 0, 0);
+    }
+
+    /**
+     * Expands a truth table on its inputs, from the first one (the most significant bit of the row)
+     * @param input the next input to expand
+     * @param row the bits of the row fixed by the enclosing calls
+     */
+    private static int shannon(Bdd bdd, TruthTable table, int output, int[] operands, int input, int row) {
+        if (input == table.getInputs()) {
+            return table.get(row, output) ? Bdd.TRUE : Bdd.FALSE;
+        }
+        int low = shannon(bdd, table, output, operands, input + 1, row << 1);
+        int high = shannon(bdd, table, output, operands, input + 1, row << 1 | 1);
+        return bdd.ite(operands[input], high, low);
+    }
+}
@@ -0,0 +1,185 @@
+package com.Physics;
+
+/**
+ * A function stored as a reduced ordered binary decision diagram, one root per output.
+ * The nodes are numbered children first : 0 is false, 1 is true, and node k tests the input vars[k] and goes on to
+ * highs[k] when it is set, else to lows[k]. Its size doesn't depend on the number of rows, so that wide datapath
+ * blocks such as comparators or parity trees stay small, and it can have more inputs than a truth table.
+ */
+public class BddFunction implements LogicFunction {
+
+    private final int inputs;
+    private final int[] vars;
+    private final int[] lows;
+    private final int[] highs;
+    private final int[] roots;
+
+    /**
+     * @param inputs the number of inputs
+     * @param vars the input tested by each node, -1 for the two terminals
+     * @param lows the node reached when the input is not set, lower than the node
+     * @param highs the node reached when the input is set, lower than the node
+     * @param roots the node of each output
+     */
+    public BddFunction(int inputs, int[] vars, int[] lows, int[] highs, int[] roots) {
+        this.inputs = inputs;
+        this.vars = vars;
+        this.lows = lows;
+        this.highs = highs;
+        this.roots = roots;
+    }
+
+    @Override
+    public int getInputs() {
+        return inputs;
+    }
+
+    @Override
+    public int getOutputs() {
+        return roots.length;
+    }
+
+    /**
+     * Gets the number of nodes, terminals included
+     */
+    public int getNodeCount() {
+        return vars.length;
+    }
+
+    /**
+     * Walks the diagram from the root of an output, only usable up to 31 inputs
+     */
+    @Override
+    public boolean get(int row, int output) {
+        int node = roots[output];
+        while (node > Bdd.TRUE) {
+            node = (row >>> (inputs - 1 - vars[node]) & 1) != 0 ? highs[node] : lows[node];
+        }
+        return node == Bdd.TRUE;
+    }
+
+    /**
+     * Walks the diagram from the root of an output, reading the inputs in the state of the nets of a netlist
+     * @param values the state of each net
+     * @param faninNets the nets read by the gates, -1 for an unconnected input
+     * @param first the index in faninNets of the first input of the gate
+     */
+    boolean get(int output, boolean[] values, int[] faninNets, int first) {
+        int node = roots[output];
+        while (node > Bdd.TRUE) {
+            int net = faninNets[first + vars[node]];
+            node = net >= 0 && values[net] ? highs[node] : lows[node];
+        }
+        return node == Bdd.TRUE;
+    }
+
+    /**
+     * Evaluates every node on the 64 vectors, from the terminals up to the root
+     */
+    @Override
+    public long evaluate(long[] inputs, int output, long[] scratch) {
+        int root = roots[output];
+        scratch[Bdd.FALSE] = 0;
+        scratch[Bdd.TRUE] = -1L;
+        for (int k = 2; k <= root; k++) {
+            long select = inputs[vars[k]];
+            scratch[k] = (select & scratch[highs[k]]) | (~select & scratch[lows[k]]);
+        }
+        return scratch[root];
+    }
+
+    @Override
+    public int getScratchSize() {
+        return vars.length;
+    }
+
+    @Override
+    public TruthTable toTruthTable() {
+        TruthTable table = new TruthTable(inputs, roots.length);
+        for (int row = 0; row < table.getRows(); row++) {
+            for (int o = 0; o < roots.length; o++) {
+                table.set(row, o, get(row, o));
+            }
+        }
+        return table;
+    }
+
+    public int getVar(int node) {
+        return vars[node];
+    }
+
+    public int getLow(int node) {
+        return lows[node];
+    }
+
+    public int getHigh(int node) {
+        return highs[node];
+    }
+
+    public int getRoot(int output) {
+        return roots[output];
+    }
+
+    /**
+     * Parses a diagram written as the roots, a '|', then the input, low and high of each node from the node 2
+     * @param bdd the text of the diagram
+     * @param inputs the number of inputs
+     * @param outputs the number of outputs
+     * @return the parsed function
+     * @throws NumberFormatException if the text isn't a valid diagram
+     */
+    public static BddFunction parse(String bdd, int inputs, int outputs) {
+        String[] parts = bdd.split("\\|", -1);
+        if (parts.length != 2) {
+            throw new NumberFormatException("Invalid decision diagram");
+        }
+        String[] rootWords = parts[0].trim().split(" +");
+        String nodeText = parts[1].trim();
+        String[] nodeWords = nodeText.isEmpty() ? new String[0] : nodeText.split(" +");
+        if (rootWords.length != outputs) {
+            throw new NumberFormatException("Expected " + outputs + " roots, found " + rootWords.length);
+        }
+        int count = nodeWords.length + 2;
+        int[] vars = new int[count];
+        int[] lows = new int[count];
+        int[] highs = new int[count];
+        vars[Bdd.FALSE] = vars[Bdd.TRUE] = -1;
+        for (int k = 2; k < count; k++) {
+            String[] node = nodeWords[k - 2].split(",");
+            vars[k] = Integer.parseInt(node[0]);
+            lows[k] = Integer.parseInt(node[1]);
+            highs[k] = Integer.parseInt(node[2]);
+            if (vars[k] < 0 || vars[k] >= inputs || lows[k] >= k || highs[k] >= k || lows[k] < 0 || highs[k] < 0) {
+                throw new NumberFormatException("Invalid node " + k + " : " + nodeWords[k - 2]);
+            }
+        }
+        int[] roots = new int[outputs];
+        for (int o = 0; o < outputs; o++) {
+            roots[o] = Integer.parseInt(rootWords[o]);
+            if (roots[o] < 0 || roots[o] >= count) {
+                throw new NumberFormatException("Invalid root " + roots[o]);
+            }
+        }
+        return new BddFunction(inputs, vars, lows, highs, roots);
+    }
+
+    /**
+     * Writes the roots, a '|', then the input, low and high of each node from the node 2
+     * @return the text of the diagram
+     */
+    @Override
+    public String toString() {
+        StringBuilder bdd = new StringBuilder(vars.length * 12);
+        for (int o = 0; o < roots.length; o++) {
+            if (o != 0) {
+                bdd.append(' ');
+            }
+            bdd.append(roots[o]);
+        }
+        bdd.append(" |");
+        for (int k = 2; k < vars.length; k++) {
+            bdd.append(' ').append(vars[k]).append(',').append(lows[k]).append(',').append(highs[k]);
+        }
+        return bdd.toString();
+    }
+}
@@ -0,0 +1,165 @@
+package com.Physics;
+
+/**
+ * Simulates a sheet on 64 input vectors at once : each wire holds a long whose bit k is its state for the vector k.
+ * Built-in gates become word-wide boolean operations, the other components evaluate their function on the 64 vectors.
+ * The netlist is interpreted, unless it was compiled into a generated class with {@link #compile()}.
+ */
+public class BitParallelSimulator {
+
+    private final Netlist netlist;
+
+    /**
+     * The 64 states of each net
+     */
+    private final long[] values;
+    /**
+     * Working memory of the functions and of the gates inputs
+     */
+    private final long[] scratch;
+    private final long[] operands;
+    /**
+     * The generated code of the netlist, null while it is interpreted
+     */
+    private CompiledCircuit compiled;
+
+    /**
+     * Prepares the simulation of a sheet, through its netlist
+     * @param sheet the sheet to simulate
+     */
+    public BitParallelSimulator(Sheet sheet) {
+        this(sheet.getNetlist());
+    }
+
+    /**
+     * Prepares the simulation of a netlist, which can be shared with other simulators
+     * @param netlist the compiled sheet
+     */
+    public BitParallelSimulator(Netlist netlist) {
+        this.netlist = netlist;
+        int scratchSize = 0;
+        for (LogicFunction function : netlist.getGateFunctions()) {
+            scratchSize = Math.max(scratchSize, function.getScratchSize());
+        }
+        values = new long[netlist.getNetCount()];
+        scratch = new long[scratchSize];
+        operands = new long[netlist.getMaxFanin()];
+    }
+
+    /**
+     * Creates an independent simulator of the same netlist, for example to simulate on another thread
+     * @return the new simulator
+     */
+    public BitParallelSimulator copy() {
+        BitParallelSimulator copy = new BitParallelSimulator(netlist);
+        copy.compiled = compiled;
+        return copy;
+    }
+
+    /**
+     * Compiles the netlist into a generated class, shared with the copies made afterwards
+     * @return true if the netlist is now compiled, false if it stays interpreted because it is too large
+     */
+    public boolean compile() {
+        if (compiled == null) {
+            compiled = CircuitCompiler.compile(netlist);
+        }
+        return compiled != null;
+    }
+
+    public boolean isCompiled() {
+        return compiled != null;
+    }
+
+    public Netlist getNetlist() {
+        return netlist;
+    }
+
+    /**
+     * Sets the 64 states of an input wire, a wire which isn't part of the sheet is ignored
+     * @param wire the input wire
+     * @param value the states, bit k for the vector k
+     */
+    public void setInput(Wire wire, long value) {
+        int net = netlist.getNet(wire);
+        if (net != -1) {
+            values[net] = value;
+        }
+    }
+
+    /**
+     * Gets the 64 states of a wire computed by the last run
+     * @param wire the wire
+     * @return the states, bit k for the vector k
+     */
+    public long getValue(Wire wire) {
+        return values[netlist.getNet(wire)];
+    }
+
+    /**
+     * Gets the state of every net, indexed like the netlist. The input nets can be written directly.
+     * @return the array of the states, not copied
+     */
+    public long[] getValues() {
+        return values;
+    }
+
+    /**
+     * Evaluates every gate once, in level order
+     */
+    public void run() {
+        if (compiled != null) {
+            compiled.run(values, operands, scratch);
+            return;
+        }
+        long[] values = this.values;
+        int[] gateTypes = netlist.getGateTypes();
+        int[] faninStart = netlist.getFaninStart();
+        int[] faninNets = netlist.getFaninNets();
+        int[] gateOutputs = netlist.getGateOutputs();
+        for (int g = 0; g < gateTypes.length; g++) {
+            int first = faninStart[g];
+            switch (gateTypes[g]) {
+                case Netlist.NOT:
+                    values[gateOutputs[g]] = ~read(faninNets[first]);
+                    break;
+                case Netlist.AND:
+                    values[gateOutputs[g]] = read(faninNets[first]) & read(faninNets[first + 1]);
+                    break;
+                case Netlist.OR:
+                    values[gateOutputs[g]] = read(faninNets[first]) | read(faninNets[first + 1]);
+                    break;
+                default:
+                    evaluateFunction(netlist, g, values, operands, scratch);
+                    break;
+            }
+        }
+    }
+
+    private long read(int net) {
+        return net < 0 ? 0 : values[net];
+    }
+
+    /**
+     * Evaluates a gate through its function and writes its outputs
+     * @param g the gate, of type TABLE or BDD
+     * @param values the 64 states of each net
+     * @param operands working memory of the maximum fan-in of the netlist
+     * @param scratch working memory of the greatest scratch size of the functions
+     */
+    static void evaluateFunction(Netlist netlist, int g, long[] values, long[] operands, long[] scratch) {
+        int[] faninStart = netlist.getFaninStart();
+        int[] faninNets = netlist.getFaninNets();
+        int first = faninStart[g];
+        int count = faninStart[g + 1] - first;
+        for (int i = 0; i < count; i++) {
+            int net = faninNets[first + i];
+            operands[i] = net < 0 ? 0 : values[net];
+        }
+        LogicFunction function = netlist.getGateFunctions()[g];
+        int out = netlist.getGateOutputs()[g];
+        for (int o = 0; o < function.getOutputs(); o++) {
+            values[out + o] = function.evaluate(operands, o, scratch);
+        }
+    }
+}
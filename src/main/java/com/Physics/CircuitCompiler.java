@@ -0,0 +1,420 @@
+package com.Physics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles a netlist into a generated subclass of {@link CompiledCircuit}, loaded as a hidden class.
+ * Each built-in gate becomes a straight-line bitwise operation on longs, the states being kept in local variables
+ * within a method, so that the JIT compiles the circuit without any interpretation overhead. The other gates call
+ * their function like the interpreter.
+ * The JIT doesn't compile the methods longer than 8000 bytes, so the gates are split by level into chained
+ * methods of at most METHOD_BYTES bytes, called one after the other. A netlist needing more than MAX_METHODS
+ * methods is left to the interpreter.
+ */
+public class CircuitCompiler {
+
+    /**
+     * The size of the code of a method, under the limit of the JIT
+     */
+    public static final int METHOD_BYTES = 7000;
+    /**
+     * The number of methods called by run, whose code must also stay under the limit of the JIT
+     */
+    public static final int MAX_METHODS = 990;
+    /**
+     * The greatest size of the code of a gate
+     */
+    private static final int GATE_BYTES = 56;
+
+    private static final String NAME = "com/Physics/GeneratedCircuit";
+    private static final String BASE = "com/Physics/CompiledCircuit";
+    private static final String RUN = "([J[J[J)V";
+
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ICONST_0 = 0x03;
+    private static final int LCONST_0 = 0x09;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC_W = 0x13;
+    private static final int LDC2_W = 0x14;
+    private static final int LLOAD = 0x16;
+    private static final int LALOAD = 0x2f;
+    private static final int LSTORE = 0x37;
+    private static final int LASTORE = 0x50;
+    private static final int DUP2 = 0x5c;
+    private static final int ISHL = 0x78;
+    private static final int LAND = 0x7f;
+    private static final int IOR = 0x80;
+    private static final int LOR = 0x81;
+    private static final int LXOR = 0x83;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKEVIRTUAL = 0xb6;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int WIDE = 0xc4;
+
+    private final Netlist netlist;
+
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final Map<String, Integer> constants = new HashMap<>();
+    private int poolCount = 1;
+
+    /**
+     * The code and the number of local variables of each chained method
+     */
+    private final List<byte[]> methodCodes = new ArrayList<>();
+    private final List<Integer> methodLocals = new ArrayList<>();
+
+    /**
+     * The method being generated, and the local variable holding each net, valid when netStamps[net] == stamp
+     */
+    private ByteArrayOutputStream code = new ByteArrayOutputStream();
+    private final int[] netLocals;
+    private final int[] netStamps;
+    private int stamp = 1;
+    private int nextLocal = 4;
+
+    private CircuitCompiler(Netlist netlist) {
+        this.netlist = netlist;
+        netLocals = new int[netlist.getNetCount()];
+        netStamps = new int[netlist.getNetCount()];
+    }
+
+    /**
+     * Compiles a netlist and loads the generated class
+     * @param netlist the compiled sheet
+     * @return an instance of the generated class, or null if the netlist is too large and must be interpreted
+     */
+    public static CompiledCircuit compile(Netlist netlist) {
+        byte[] bytes = new CircuitCompiler(netlist).generate();
+        if (bytes == null) {
+            return null;
+        }
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            return (CompiledCircuit) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class, Netlist.class))
+                    .invoke(netlist);
+        }
+        catch (Throwable e) {
+            System.err.println("Failed to load the compiled circuit : " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Generates the class file
+     * @return its bytes, or null if the netlist needs too many methods or constants
+     */
+    private byte[] generate() {
+        int[] gateTypes = netlist.getGateTypes();
+        int[] levelStart = netlist.getLevelStart();
+        for (int l = 0; l < netlist.getLevelCount(); l++) {
+            // Un niveau qui tient dans une méthode n'est pas coupé
+            int levelBytes = (levelStart[l + 1] - levelStart[l]) * GATE_BYTES;
+            if (code.size() > 0 && levelBytes <= METHOD_BYTES && code.size() + levelBytes > METHOD_BYTES) {
+                endMethod();
+            }
+            for (int g = levelStart[l]; g < levelStart[l + 1]; g++) {
+                if (code.size() + GATE_BYTES > METHOD_BYTES) {
+                    endMethod();
+                }
+                if (gateTypes[g] <= Netlist.OR) {
+                    gate(g);
+                } else {
+                    call(g);
+                }
+            }
+            if (methodCodes.size() > MAX_METHODS) {
+                return null;
+            }
+        }
+        if (code.size() > 0) {
+            endMethod();
+        }
+        if (methodCodes.size() > MAX_METHODS) {
+            return null;
+        }
+        try {
+            return write();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Emits a built-in gate : values[out] = a op b, the result staying in a local variable for the next gates
+     */
+    private void gate(int g) {
+        int first = netlist.getFaninStart()[g];
+        int[] faninNets = netlist.getFaninNets();
+        int out = netlist.getGateOutputs()[g];
+        load(faninNets[first]);
+        switch (netlist.getGateTypes()[g]) {
+            case Netlist.NOT:
+                code.write(LDC2_W);
+                u2(longConstant(-1L));
+                code.write(LXOR);
+                break;
+            case Netlist.AND:
+                load(faninNets[first + 1]);
+                code.write(LAND);
+                break;
+            default:
+                load(faninNets[first + 1]);
+                code.write(LOR);
+                break;
+        }
+        int local = newLocal(out);
+        localOp(LSTORE, local);
+        code.write(ALOAD_0 + 1);
+        pushInt(out);
+        localOp(LLOAD, local);
+        code.write(LASTORE);
+    }
+
+    /**
+     * Emits a call to evaluateGate(g, values, operands, scratch), for the gates evaluated through their function
+     */
+    private void call(int g) {
+        code.write(ALOAD_0);
+        pushInt(g);
+        code.write(ALOAD_0 + 1);
+        code.write(ALOAD_0 + 2);
+        code.write(ALOAD_0 + 3);
+        code.write(INVOKEVIRTUAL);
+        u2(methodRef(BASE, "evaluateGate", "(I[J[J[J)V"));
+    }
+
+    /**
+     * Pushes the state of a net, from its local variable if it already has one
+     */
+    private void load(int net) {
+        if (net < 0) {
+            code.write(LCONST_0);
+        } else if (netStamps[net] == stamp) {
+            localOp(LLOAD, netLocals[net]);
+        } else {
+            code.write(ALOAD_0 + 1);
+            pushInt(net);
+            code.write(LALOAD);
+            code.write(DUP2);
+            localOp(LSTORE, newLocal(net));
+        }
+    }
+
+    private int newLocal(int net) {
+        netLocals[net] = nextLocal;
+        netStamps[net] = stamp;
+        nextLocal += 2;
+        return netLocals[net];
+    }
+
+    private void localOp(int opcode, int local) {
+        if (local > 255) {
+            code.write(WIDE);
+            code.write(opcode);
+            u2(local);
+        } else {
+            code.write(opcode);
+            code.write(local);
+        }
+    }
+
+    private void pushInt(int value) {
+        if (value <= 5) {
+            code.write(ICONST_0 + value);
+        } else if (value <= Byte.MAX_VALUE) {
+            code.write(BIPUSH);
+            code.write(value);
+        } else if (value <= Short.MAX_VALUE) {
+            code.write(SIPUSH);
+            u2(value);
+        } else if (poolCount < 60000) {
+            code.write(LDC_W);
+            u2(intConstant(value));
+        } else {
+            // La table des constantes est pleine : (value >>> 15) << 15 | (value & 0x7fff)
+            code.write(SIPUSH);
+            u2(value >>> 15);
+            code.write(BIPUSH);
+            code.write(15);
+            code.write(ISHL);
+            code.write(SIPUSH);
+            u2(value & 0x7fff);
+            code.write(IOR);
+        }
+    }
+
+    private void u2(int value) {
+        code.write(value >>> 8);
+        code.write(value);
+    }
+
+    /**
+     * Closes the method being generated, the locals of its nets are forgotten
+     */
+    private void endMethod() {
+        code.write(RETURN);
+        methodCodes.add(code.toByteArray());
+        methodLocals.add(nextLocal);
+        code = new ByteArrayOutputStream();
+        stamp++;
+        nextLocal = 4;
+    }
+
+    private byte[] write() throws IOException {
+        int thisClass = classConstant(NAME);
+        int superClass = classConstant(BASE);
+        int codeName = utf8("Code");
+        int initName = utf8("<init>");
+        int initType = utf8("(Lcom/Physics/Netlist;)V");
+        int superInit = methodRef(BASE, "<init>", "(Lcom/Physics/Netlist;)V");
+        int runName = utf8("run");
+        int runType = utf8(RUN);
+        int[] chained = new int[methodCodes.size()];
+        for (int m = 0; m < chained.length; m++) {
+            chained[m] = methodRef(NAME, "level" + m, RUN);
+        }
+        if (poolCount > 0xffff) {
+            return null;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(poolBytes.size() + methodCodes.size() * METHOD_BYTES);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(61);
+        out.writeShort(poolCount);
+        pool.flush();
+        poolBytes.writeTo(out);
+        // public final super
+        out.writeShort(0x0031);
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(0);
+        out.writeShort(0);
+        out.writeShort(2 + chained.length);
+
+        byte[] init = {(byte) ALOAD_0, (byte) (ALOAD_0 + 1), (byte) INVOKESPECIAL, (byte) (superInit >>> 8), (byte) superInit, (byte) RETURN};
+        method(out, 0x0001, initName, initType, codeName, 2, 2, init);
+
+        ByteArrayOutputStream run = new ByteArrayOutputStream(chained.length * 7 + 1);
+        for (int method : chained) {
+            run.write(ALOAD_0);
+            run.write(ALOAD_0 + 1);
+            run.write(ALOAD_0 + 2);
+            run.write(ALOAD_0 + 3);
+            run.write(INVOKESPECIAL);
+            run.write(method >>> 8);
+            run.write(method);
+        }
+        run.write(RETURN);
+        method(out, 0x0001, runName, runType, codeName, 4, 4, run.toByteArray());
+
+        for (int m = 0; m < chained.length; m++) {
+            method(out, 0x0012, utf8("level" + m), runType, codeName, 8, methodLocals.get(m), methodCodes.get(m));
+        }
+        out.writeShort(0);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void method(DataOutputStream out, int access, int name, int type, int codeName, int maxStack,
+                               int maxLocals, byte[] code) throws IOException {
+        out.writeShort(access);
+        out.writeShort(name);
+        out.writeShort(type);
+        out.writeShort(1);
+        out.writeShort(codeName);
+        out.writeInt(12 + code.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0);
+        out.writeShort(0);
+    }
+
+    // Table des constantes, chaque constante n'y figure qu'une fois
+
+    private int utf8(String text) {
+        return constant("U" + text, 1, () -> {
+            pool.writeByte(1);
+            pool.writeUTF(text);
+        });
+    }
+
+    private int classConstant(String name) {
+        int text = utf8(name);
+        return constant("C" + name, 1, () -> {
+            pool.writeByte(7);
+            pool.writeShort(text);
+        });
+    }
+
+    private int methodRef(String owner, String name, String type) {
+        int ownerClass = classConstant(owner);
+        int nameIndex = utf8(name);
+        int typeIndex = utf8(type);
+        int nameAndType = constant("N" + name + type, 1, () -> {
+            pool.writeByte(12);
+            pool.writeShort(nameIndex);
+            pool.writeShort(typeIndex);
+        });
+        return constant("M" + owner + "." + name + type, 1, () -> {
+            pool.writeByte(10);
+            pool.writeShort(ownerClass);
+            pool.writeShort(nameAndType);
+        });
+    }
+
+    private int intConstant(int value) {
+        return constant("I" + value, 1, () -> {
+            pool.writeByte(3);
+            pool.writeInt(value);
+        });
+    }
+
+    private int longConstant(long value) {
+        return constant("J" + value, 2, () -> {
+            pool.writeByte(5);
+            pool.writeLong(value);
+        });
+    }
+
+    private interface Entry {
+        void write() throws IOException;
+    }
+
+    /**
+     * Adds a constant to the table if it isn't already in it
+     * @param key the identity of the constant
+     * @param slots the number of indexes used by the constant, 2 for the longs
+     * @return the index of the constant
+     */
+    private int constant(String key, int slots, Entry entry) {
+        Integer index = constants.get(key);
+        if (index != null) {
+            return index;
+        }
+        try {
+            entry.write();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        constants.put(key, poolCount);
+        poolCount += slots;
+        return poolCount - slots;
+    }
+}
@@ -0,0 +1,33 @@
+package com.Physics;
+
+/**
+ * The base of the classes generated by the {@link CircuitCompiler}. A generated class evaluates the gates of one
+ * netlist on 64 vectors, as straight-line code, and keeps no state : the same instance can run on several threads.
+ */
+public abstract class CompiledCircuit {
+
+    protected final Netlist netlist;
+
+    protected CompiledCircuit(Netlist netlist) {
+        this.netlist = netlist;
+    }
+
+    public Netlist getNetlist() {
+        return netlist;
+    }
+
+    /**
+     * Evaluates every gate once, in level order
+     * @param values the 64 states of each net, the input nets must be set
+     * @param operands working memory holding the inputs of a gate, of the maximum fan-in of the netlist
+     * @param scratch working memory of the functions, of their greatest scratch size
+     */
+    public abstract void run(long[] values, long[] operands, long[] scratch);
+
+    /**
+     * Evaluates a gate whose function isn't inlined in the generated code
+     */
+    protected final void evaluateGate(int g, long[] values, long[] operands, long[] scratch) {
+        BitParallelSimulator.evaluateFunction(netlist, g, values, operands, scratch);
+    }
+}
@@ -10,20 +10,32 @@ public class Component {
     private int inputs;
     private int outputs;
 
-    private Boolean[][] truthTable;
+    /**
+     * The function of the component, an exhaustive truth table or a minimized form
+     */
+    private LogicFunction function;
+
+    /**
+     * The propagation delay of the component, in ticks of the timing simulation
+     */
+    private int delay = 1;
 
     private Wire[] WireInputs;
     private Wire[] WireOutput;
 
-    public Component(String name, int inputs, int outputs, Boolean[][] truthTable) {
+    public Component(String name, int inputs, int outputs, LogicFunction function) {
         this.name = name;
         this.inputs = inputs;
         this.outputs = outputs;
-        this.truthTable = truthTable;
+        this.function = function;
         WireInputs = new Wire[inputs];
         WireOutput = new Wire[outputs];
     }
 
+    public String getName() {
+        return name;
+    }
+
     public int getInputs() {
         return inputs;
     }
@@ -32,8 +44,22 @@ public class Component {
         return outputs;
     }
 
-    public Boolean[][] getTruthTable() {
-        return truthTable;
+    public LogicFunction getFunction() {
+        return function;
+    }
+
+    public int getDelay() {
+        return delay;
+    }
+
+    public void setDelay(int delay) {
+        if (delay < 1) {
+            throw new IllegalArgumentException("The delay of a component must be at least one tick");
+        }
+        this.delay = delay;
+        if (sheet != null) {
+            sheet.invalidate();
+        }
     }
 
     public void displayLinkWiresInput() { //Aide au codage, ne sert à rien
@@ -50,10 +76,16 @@ public class Component {
 
     public void addWireInput(Wire wire, int i) { //Changement au niveau de ce qui était prévu : au lieu de mettre en argument la liste des wires en entrée on les ajoute un à un ce qui sera plus facile quand on voudra construire un circuit au fur et à mesure...
         WireInputs[i] = wire;
+        if (sheet != null) {
+            sheet.invalidate();
+        }
     }
 
     public void addWireOutput(Wire wire, int i) { //Pareil que pour la fonction addLinkWiresInput
         WireOutput[i] = wire;
+        if (sheet != null) {
+            sheet.invalidate();
+        }
     }
 
     public Wire[] getWiresInput() {
@@ -0,0 +1,215 @@
+package com.Physics;
+
+import java.util.Arrays;
+
+/**
+ * A two-level form of a function : each output is the or of cubes, a cube being the and of some input literals.
+ * A cube is stored as two masks over the bits of the row, the inputs it reads (care) and their expected state (value),
+ * so that it covers a row when (row & care) == value.
+ */
+public class Cover implements LogicFunction {
+
+    private final int inputs;
+    private final int outputs;
+
+    /**
+     * The cubes of each output
+     */
+    private final int[][] cares;
+    private final int[][] values;
+    private final int[] sizes;
+
+    /**
+     * Creates a cover where every output is false
+     * @param inputs the number of inputs
+     * @param outputs the number of outputs
+     */
+    public Cover(int inputs, int outputs) {
+        if (inputs < 0 || inputs > TruthTable.MAX_INPUTS) {
+            throw new IllegalArgumentException("A cover can't have " + inputs + " inputs");
+        }
+        this.inputs = inputs;
+        this.outputs = outputs;
+        cares = new int[outputs][4];
+        values = new int[outputs][4];
+        sizes = new int[outputs];
+    }
+
+    @Override
+    public int getInputs() {
+        return inputs;
+    }
+
+    @Override
+    public int getOutputs() {
+        return outputs;
+    }
+
+    /**
+     * Adds a cube to an output
+     * @param output the index of the output
+     * @param care the bits of the row read by the cube
+     * @param value the state of these bits, the other bits being 0
+     */
+    public void addCube(int output, int care, int value) {
+        int size = sizes[output];
+        if (size == cares[output].length) {
+            cares[output] = Arrays.copyOf(cares[output], size << 1);
+            values[output] = Arrays.copyOf(values[output], size << 1);
+        }
+        cares[output][size] = care;
+        values[output][size] = value & care;
+        sizes[output] = size + 1;
+    }
+
+    public int getCubeCount(int output) {
+        return sizes[output];
+    }
+
+    public int getCare(int output, int cube) {
+        return cares[output][cube];
+    }
+
+    public int getValue(int output, int cube) {
+        return values[output][cube];
+    }
+
+    /**
+     * Counts the literals of every cube, the cost of the cover
+     */
+    public int getLiteralCount() {
+        int literals = 0;
+        for (int o = 0; o < outputs; o++) {
+            for (int c = 0; c < sizes[o]; c++) {
+                literals += Integer.bitCount(cares[o][c]);
+            }
+        }
+        return literals;
+    }
+
+    @Override
+    public boolean get(int row, int output) {
+        int[] care = cares[output];
+        int[] value = values[output];
+        for (int c = 0; c < sizes[output]; c++) {
+            if ((row & care[c]) == value[c]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public long evaluate(long[] inputs, int output, long[] scratch) {
+        long result = 0;
+        for (int c = 0; c < sizes[output] && result != -1L; c++) {
+            long cube = -1L;
+            int care = cares[output][c];
+            int value = values[output][c];
+            // Le bit b de la ligne est l'entrée inputs - 1 - b
+            for (int bits = care; bits != 0; bits &= bits - 1) {
+                int b = Integer.numberOfTrailingZeros(bits);
+                long input = inputs[this.inputs - 1 - b];
+                cube &= (value >>> b & 1) != 0 ? input : ~input;
+            }
+            result |= cube;
+        }
+        return result;
+    }
+
+    @Override
+    public int getScratchSize() {
+        return 0;
+    }
+
+    @Override
+    public TruthTable toTruthTable() {
+        TruthTable table = new TruthTable(inputs, outputs);
+        for (int o = 0; o < outputs; o++) {
+            for (int c = 0; c < sizes[o]; c++) {
+                // On énumère les lignes du cube en faisant varier ses bits libres
+                int free = ~cares[o][c] & (int) (table.getRows() - 1);
+                int row = 0;
+                do {
+                    table.set(row | values[o][c], o, true);
+                    row = (row - free) & free;
+                } while (row != 0);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Parses a cover written with one cube per word, a '0', '1' or '-' for each input, the outputs being separated by '|'
+     * @param cover the text of the cover
+     * @param inputs the number of inputs
+     * @param outputs the number of outputs
+     * @return the parsed cover
+     * @throws NumberFormatException if the text doesn't match the size of the cover
+     */
+    public static Cover parse(String cover, int inputs, int outputs) {
+        Cover result = new Cover(inputs, outputs);
+        String[] outputCubes = cover.split("\\|", -1);
+        if (outputCubes.length != outputs) {
+            throw new NumberFormatException("Expected " + outputs + " outputs, found " + outputCubes.length);
+        }
+        for (int o = 0; o < outputs; o++) {
+            for (String cube : outputCubes[o].trim().split(" +")) {
+                if (cube.isEmpty()) {
+                    continue;
+                }
+                if (inputs == 0 && cube.equals("-")) {
+                    result.addCube(o, 0, 0);
+                    continue;
+                }
+                if (cube.length() != inputs) {
+                    throw new NumberFormatException("Invalid cube : " + cube);
+                }
+                int care = 0;
+                int value = 0;
+                for (int i = 0; i < inputs; i++) {
+                    int bit = 1 << (inputs - 1 - i);
+                    char c = cube.charAt(i);
+                    if (c == '1') {
+                        care |= bit;
+                        value |= bit;
+                    } else if (c == '0') {
+                        care |= bit;
+                    } else if (c != '-') {
+                        throw new NumberFormatException("Unexpected character in cover : " + c);
+                    }
+                }
+                result.addCube(o, care, value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes the cubes of each output, a '0', '1' or '-' for each input, the outputs being separated by '|'
+     * @return the text of the cover
+     */
+    @Override
+    public String toString() {
+        StringBuilder cover = new StringBuilder();
+        for (int o = 0; o < outputs; o++) {
+            if (o != 0) {
+                cover.append(" | ");
+            }
+            for (int c = 0; c < sizes[o]; c++) {
+                if (c != 0) {
+                    cover.append(' ');
+                }
+                if (inputs == 0) {
+                    // Le cube toujours vrai d'une fonction sans entrée
+                    cover.append('-');
+                }
+                for (int i = 0; i < inputs; i++) {
+                    int bit = 1 << (inputs - 1 - i);
+                    cover.append((cares[o][c] & bit) == 0 ? '-' : (values[o][c] & bit) != 0 ? '1' : '0');
+                }
+            }
+        }
+        return cover.toString();
+    }
+}
@@ -0,0 +1,237 @@
+package com.Physics;
+
+/**
+ * Cycle-based simulation of a clocked sheet : on each clock edge the combinational logic between the registers is
+ * evaluated once, in level order, then every flip-flop takes the state of its input, all at once.
+ * No event is scheduled and no delay is modelled, which makes a cycle cost one pass over the gates. The gates are
+ * simulated by a BitParallelSimulator, so that 64 copies of the machine run side by side : bit k of every net is the
+ * state of the copy k, each copy having its own inputs and registers.
+ */
+public class CycleSimulator {
+
+    private final Netlist netlist;
+    private final BitParallelSimulator simulator;
+    private final long[] values;
+    private final int[] registerInputNets;
+    private final int[] registerOutputNets;
+    /**
+     * The next state of each flip-flop, read before writing any of them
+     */
+    private final long[] next;
+
+    /**
+     * The counters of the transitions, null when they aren't counted
+     */
+    private ToggleCounter toggles;
+
+    private long cycles;
+    /**
+     * The speed of the last run, in cycles per second
+     */
+    private double cyclesPerSecond;
+
+    /**
+     * Prepares the simulation of a sheet, through its netlist
+     * @param sheet the sheet to simulate
+     * @throws IllegalStateException if the sheet contains a combinational loop which doesn't go through a register
+     */
+    public CycleSimulator(Sheet sheet) {
+        this(sheet.getNetlist());
+    }
+
+    /**
+     * Prepares the simulation of a netlist, every flip-flop starting at 0
+     * @param netlist the compiled sheet
+     */
+    public CycleSimulator(Netlist netlist) {
+        this.netlist = netlist;
+        simulator = new BitParallelSimulator(netlist);
+        values = simulator.getValues();
+        registerInputNets = netlist.getRegisterInputNets();
+        registerOutputNets = netlist.getRegisterOutputNets();
+        next = new long[registerInputNets.length];
+    }
+
+    /**
+     * Compiles the combinational logic into a generated class
+     * @return true if the logic is now compiled, false if it stays interpreted because it is too large
+     */
+    public boolean compile() {
+        return simulator.compile();
+    }
+
+    public Netlist getNetlist() {
+        return netlist;
+    }
+
+    /**
+     * Counts the transitions of the nets on every cycle, each of the 64 copies being compared with its previous cycle
+     * @param toggles the counters of the netlist, or null to stop counting
+     */
+    public void setToggleCounter(ToggleCounter toggles) {
+        this.toggles = toggles;
+    }
+
+    /**
+     * Sets every flip-flop to 0 and the cycle count back to 0, the inputs keep their state
+     */
+    public void reset() {
+        for (int net : registerOutputNets) {
+            if (net >= 0) {
+                values[net] = 0;
+            }
+        }
+        cycles = 0;
+    }
+
+    /**
+     * Sets the 64 states of an input wire, a wire which isn't part of the sheet is ignored
+     * @param wire the input wire
+     * @param value the states, bit k for the copy k
+     */
+    public void setInput(Wire wire, long value) {
+        simulator.setInput(wire, value);
+    }
+
+    /**
+     * Sets the state of an input of the sheet for all the copies
+     * @param input the index of the input in the sheet
+     * @param state the state of the input
+     */
+    public void setInput(int input, boolean state) {
+        values[netlist.getInputNets()[input]] = state ? -1L : 0;
+    }
+
+    /**
+     * Sets the 64 states of a flip-flop, for example to start from another state than 0
+     * @param flipFlop the index of the flip-flop, numbered like Netlist.getRegisterStart
+     * @param value the states, bit k for the copy k
+     */
+    public void setFlipFlop(int flipFlop, long value) {
+        if (registerOutputNets[flipFlop] >= 0) {
+            values[registerOutputNets[flipFlop]] = value;
+        }
+    }
+
+    /**
+     * Gets the 64 states of a flip-flop
+     * @param flipFlop the index of the flip-flop
+     * @return the states, bit k for the copy k, 0 for a flip-flop whose output is unconnected
+     */
+    public long getFlipFlop(int flipFlop) {
+        return registerOutputNets[flipFlop] < 0 ? 0 : values[registerOutputNets[flipFlop]];
+    }
+
+    /**
+     * Gets the 64 states of a wire. The outputs of the registers hold their state after the last edge, the other
+     * wires their state just before it.
+     * @param wire the wire
+     * @return the states, bit k for the copy k
+     */
+    public long getValue(Wire wire) {
+        return simulator.getValue(wire);
+    }
+
+    /**
+     * Gets the state of an output of the sheet for the copy 0
+     * @param output the index of the output in the sheet
+     */
+    public boolean getOutput(int output) {
+        return (values[netlist.getOutputNets()[output]] & 1L) != 0;
+    }
+
+    /**
+     * Gets the state of every net, indexed like the netlist. The input nets can be written directly.
+     * @return the array of the states, not copied
+     */
+    public long[] getValues() {
+        return values;
+    }
+
+    /**
+     * Evaluates the combinational logic without clocking, so that every wire holds its state for the current
+     * state of the registers and of the inputs
+     */
+    public void settle() {
+        simulator.run();
+    }
+
+    /**
+     * Simulates one clock edge
+     */
+    public void cycle() {
+        simulator.run();
+        if (toggles != null) {
+            toggles.sampleLanes(values, -1L);
+        }
+        clock();
+    }
+
+    /**
+     * Simulates the clock edge alone : every flip-flop takes the state its input had after the last settle
+     */
+    public void clock() {
+        commit();
+        cycles++;
+    }
+
+    /**
+     * Simulates clock edges as fast as possible, the inputs keeping their state
+     * @param count the number of edges
+     * @return the speed of the run, in cycles per second
+     */
+    public double run(long count) {
+        BitParallelSimulator simulator = this.simulator;
+        ToggleCounter toggles = this.toggles;
+        long start = System.nanoTime();
+        if (toggles == null) {
+            for (long c = 0; c < count; c++) {
+                simulator.run();
+                commit();
+            }
+        } else {
+            for (long c = 0; c < count; c++) {
+                simulator.run();
+                toggles.sampleLanes(values, -1L);
+                commit();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        cycles += count;
+        cyclesPerSecond = elapsed == 0 ? Double.POSITIVE_INFINITY : count * 1e9 / elapsed;
+        return cyclesPerSecond;
+    }
+
+    /**
+     * Copies the input of every flip-flop to its output, all at once
+     */
+    private void commit() {
+        long[] values = this.values;
+        long[] next = this.next;
+        for (int b = 0; b < next.length; b++) {
+            int net = registerInputNets[b];
+            next[b] = net < 0 ? 0 : values[net];
+        }
+        for (int b = 0; b < next.length; b++) {
+            int net = registerOutputNets[b];
+            if (net >= 0) {
+                values[net] = next[b];
+            }
+        }
+    }
+
+    /**
+     * Gets the number of clock edges simulated since the creation or the last reset
+     */
+    public long getCycles() {
+        return cycles;
+    }
+
+    /**
+     * Gets the speed of the last run
+     * @return the number of cycles per second, 0 before the first run
+     */
+    public double getCyclesPerSecond() {
+        return cyclesPerSecond;
+    }
+}
@@ -0,0 +1,328 @@
+package com.Physics;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Checks if two sheets with the same number of inputs and outputs compute the same function.
+ * Random rows are simulated first, 64 at a time on both netlists, to find a difference quickly. When none is found,
+ * the check is made exact : every row is simulated for the narrow sheets, and the decision diagrams of the outputs are
+ * compared for the wide ones, both sheets sharing a manager so that two equal outputs are the same node. The variables
+ * of the diagrams are ordered as a depth-first walk of the first sheet from its outputs meets the inputs, which keeps
+ * the inputs of a same gate close, like the bits of rank i of the two operands of an adder.
+ * Like in a truth table, the first input is the most significant bit of a row.
+ */
+public class EquivalenceChecker {
+
+    /**
+     * The number of 64 rows words of the random screen
+     */
+    public static final int RANDOM_WORDS = 1 << 12;
+    /**
+     * The maximum number of inputs checked by simulating every row, the wider sheets are checked through their
+     * decision diagrams
+     */
+    public static final int EXHAUSTIVE_MAX_INPUTS = 24;
+
+    /**
+     * The number of 64 rows words simulated by a single task
+     */
+    private static final int CHUNK_WORDS = 64;
+
+    /**
+     * The state of the 6 lowest bits of the row index for the 64 rows of a word
+     */
+    private static final long[] LOW_BITS = {
+            0xAAAAAAAAAAAAAAAAL, 0xCCCCCCCCCCCCCCCCL, 0xF0F0F0F0F0F0F0F0L,
+            0xFF00FF00FF00FF00L, 0xFFFF0000FFFF0000L, 0xFFFFFFFF00000000L
+    };
+
+    private final Netlist first;
+    private final Netlist second;
+    private final ForkJoinPool pool;
+    private final int inputs;
+    private long seed = 42;
+
+    private volatile boolean[] counterexample;
+    private int mismatchOutput = -1;
+    private String method;
+
+    /**
+     * Prepares the check of two sheets
+     * @throws IllegalArgumentException if the sheets don't have the same number of inputs and outputs
+     */
+    public EquivalenceChecker(Sheet first, Sheet second) {
+        this(first.getNetlist(), second.getNetlist(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Prepares the check of two netlists
+     * @param pool the threads simulating the rows
+     * @throws IllegalArgumentException if the netlists don't have the same number of inputs and outputs
+     */
+    public EquivalenceChecker(Netlist first, Netlist second, ForkJoinPool pool) {
+        if (first.getInputNets().length != second.getInputNets().length
+                || first.getOutputNets().length != second.getOutputNets().length) {
+            throw new IllegalArgumentException("The sheets don't have the same number of inputs and outputs");
+        }
+        this.first = first;
+        this.second = second;
+        this.pool = pool;
+        inputs = first.getInputNets().length;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Checks the equivalence, stopping at the first difference found
+     * @return true if both sheets compute the same function
+     * @throws IllegalStateException if the sheets are too wide to be simulated on every row and their decision
+     * diagrams exceed the maximum number of nodes
+     */
+    public boolean check() {
+        counterexample = null;
+        mismatchOutput = -1;
+        method = "random";
+        long words = inputs >= 6 + 30 ? RANDOM_WORDS : Math.min(RANDOM_WORDS, 1L << Math.max(0, inputs - 6));
+        pool.invoke(new Chunk(0, words, false));
+        if (counterexample != null) {
+            return false;
+        }
+        if (inputs <= EXHAUSTIVE_MAX_INPUTS) {
+            method = "exhaustive";
+            pool.invoke(new Chunk(0, 1L << Math.max(0, inputs - 6), true));
+            return counterexample == null;
+        }
+        method = "bdd";
+        return checkDiagrams();
+    }
+
+    /**
+     * Simulates the rows of the words from..to on both netlists, splitting itself until the range is small enough
+     */
+    private class Chunk extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final long from;
+        private final long to;
+        private final boolean exhaustive;
+
+        Chunk(long from, long to, boolean exhaustive) {
+            this.from = from;
+            this.to = to;
+            this.exhaustive = exhaustive;
+        }
+
+        @Override
+        protected void compute() {
+            if (counterexample != null) {
+                return;
+            }
+            if (to - from > CHUNK_WORDS) {
+                long middle = (from + to) >>> 1;
+                invokeAll(new Chunk(from, middle, exhaustive), new Chunk(middle, to, exhaustive));
+                return;
+            }
+
+            BitParallelSimulator a = new BitParallelSimulator(first);
+            BitParallelSimulator b = new BitParallelSimulator(second);
+            long[] inputValues = new long[inputs];
+            long rowMask = !exhaustive || inputs >= 6 ? -1L : (1L << (1 << inputs)) - 1;
+            SplittableRandom random = new SplittableRandom(seed ^ from * 0x9E3779B97F4A7C15L);
+            for (long word = from; word < to && counterexample == null; word++) {
+                long firstRow = word << 6;
+                for (int i = 0; i < inputs; i++) {
+                    if (exhaustive) {
+                        // L'entrée i est le bit (n - 1 - i) de l'index de la ligne
+                        int bit = inputs - 1 - i;
+                        inputValues[i] = bit < 6 ? LOW_BITS[bit] : -(firstRow >>> bit & 1L);
+                    } else {
+                        inputValues[i] = random.nextLong();
+                    }
+                    a.getValues()[first.getInputNets()[i]] = inputValues[i];
+                    b.getValues()[second.getInputNets()[i]] = inputValues[i];
+                }
+                a.run();
+                b.run();
+                int[] outputsA = first.getOutputNets();
+                int[] outputsB = second.getOutputNets();
+                for (int o = 0; o < outputsA.length; o++) {
+                    long diff = (a.getValues()[outputsA[o]] ^ b.getValues()[outputsB[o]]) & rowMask;
+                    if (diff != 0) {
+                        int k = Long.numberOfTrailingZeros(diff);
+                        boolean[] row = new boolean[inputs];
+                        for (int i = 0; i < inputs; i++) {
+                            row[i] = (inputValues[i] >>> k & 1L) != 0;
+                        }
+                        found(row, o);
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    private synchronized void found(boolean[] row, int output) {
+        if (counterexample == null) {
+            mismatchOutput = output;
+            counterexample = row;
+        }
+    }
+
+    /**
+     * Builds the diagrams of both netlists in a single manager and compares their outputs
+     */
+    private boolean checkDiagrams() {
+        Bdd bdd = new Bdd(BddCompiler.MAX_NODES, 20);
+        int[] levels = order();
+        int[] rootsA = diagram(bdd, first, levels);
+        int[] rootsB = diagram(bdd, second, levels);
+        for (int o = 0; o < rootsA.length; o++) {
+            if (rootsA[o] != rootsB[o]) {
+                int diff = bdd.or(bdd.and(rootsA[o], bdd.not(rootsB[o])), bdd.and(bdd.not(rootsA[o]), rootsB[o]));
+                // Un noeud différent de faux a toujours un chemin vers vrai
+                int[] inputOf = new int[inputs];
+                for (int i = 0; i < inputs; i++) {
+                    inputOf[levels[i]] = i;
+                }
+                boolean[] row = new boolean[inputs];
+                int node = diff;
+                while (node != Bdd.TRUE) {
+                    if (bdd.high(node) != Bdd.FALSE) {
+                        row[inputOf[bdd.var(node)]] = true;
+                        node = bdd.high(node);
+                    } else {
+                        node = bdd.low(node);
+                    }
+                }
+                found(row, o);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Orders the inputs as a depth-first walk of the first netlist from its outputs meets them
+     * @return the variable of each input
+     */
+    private int[] order() {
+        int[] levels = new int[inputs];
+        Arrays.fill(levels, -1);
+        int[] inputNets = first.getInputNets();
+        int[] inputOfNet = new int[first.getNetCount()];
+        Arrays.fill(inputOfNet, -1);
+        for (int i = 0; i < inputs; i++) {
+            inputOfNet[inputNets[i]] = i;
+        }
+        int[] netDrivers = first.getNetDrivers();
+        int[] faninStart = first.getFaninStart();
+        int[] faninNets = first.getFaninNets();
+        boolean[] visited = new boolean[first.getNetCount()];
+        int[] stack = new int[first.getNetCount() + first.getFaninNets().length];
+        int next = 0;
+        int[] outputNets = first.getOutputNets();
+        for (int o = outputNets.length - 1; o >= 0; o--) {
+            int top = 0;
+            stack[top++] = outputNets[o];
+            while (top > 0) {
+                int net = stack[--top];
+                if (net < 0 || visited[net]) {
+                    continue;
+                }
+                visited[net] = true;
+                if (inputOfNet[net] != -1) {
+                    levels[inputOfNet[net]] = next++;
+                }
+                int g = netDrivers[net];
+                if (g >= 0) {
+                    // Les entrées de la porte sont empilées à l'envers pour être visitées dans l'ordre
+                    for (int i = faninStart[g + 1] - 1; i >= faninStart[g]; i--) {
+                        stack[top++] = faninNets[i];
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < inputs; i++) {
+            if (levels[i] == -1) {
+                levels[i] = next++;
+            }
+        }
+        return levels;
+    }
+
+    /**
+     * Builds the diagram of each output of a netlist
+     * @param levels the variable of each input
+     */
+    private int[] diagram(Bdd bdd, Netlist netlist, int[] levels) {
+        int[] nodes = new int[netlist.getNetCount()];
+        int[] inputNets = netlist.getInputNets();
+        for (int i = 0; i < inputNets.length; i++) {
+            nodes[inputNets[i]] = bdd.variable(levels[i]);
+        }
+        int[] gateTypes = netlist.getGateTypes();
+        int[] faninStart = netlist.getFaninStart();
+        int[] faninNets = netlist.getFaninNets();
+        int[] gateOutputs = netlist.getGateOutputs();
+        LogicFunction[] gateFunctions = netlist.getGateFunctions();
+        int[] operands = new int[netlist.getMaxFanin()];
+        for (int g = 0; g < gateTypes.length; g++) {
+            int count = faninStart[g + 1] - faninStart[g];
+            for (int i = 0; i < count; i++) {
+                int net = faninNets[faninStart[g] + i];
+                operands[i] = net < 0 ? Bdd.FALSE : nodes[net];
+            }
+            switch (gateTypes[g]) {
+                case Netlist.NOT:
+                    nodes[gateOutputs[g]] = bdd.not(operands[0]);
+                    break;
+                case Netlist.AND:
+                    nodes[gateOutputs[g]] = bdd.and(operands[0], operands[1]);
+                    break;
+                case Netlist.OR:
+                    nodes[gateOutputs[g]] = bdd.or(operands[0], operands[1]);
+                    break;
+                default:
+                    for (int o = 0; o < gateFunctions[g].getOutputs(); o++) {
+                        nodes[gateOutputs[g] + o] = BddCompiler.apply(bdd, gateFunctions[g], o, operands);
+                    }
+                    break;
+            }
+        }
+        int[] outputNets = netlist.getOutputNets();
+        int[] roots = new int[outputNets.length];
+        for (int o = 0; o < roots.length; o++) {
+            roots[o] = nodes[outputNets[o]];
+        }
+        return roots;
+    }
+
+    /**
+     * Gets a row on which the sheets differ, found by the last check
+     * @return the state of each input, or null if no difference was found
+     */
+    public boolean[] getCounterexample() {
+        return counterexample;
+    }
+
+    /**
+     * Gets the output which differs on the counterexample
+     * @return the index of the output, -1 if no difference was found
+     */
+    public int getMismatchOutput() {
+        return mismatchOutput;
+    }
+
+    /**
+     * Gets how the last check concluded : "random" when the random screen found a difference, else "exhaustive" or
+     * "bdd" for the exact check
+     */
+    public String getMethod() {
+        return method;
+    }
+}
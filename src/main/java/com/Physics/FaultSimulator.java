@@ -0,0 +1,461 @@
+package com.Physics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Stuck-at fault simulation of a sheet : finds which of the stuck-at-0 and stuck-at-1 faults change an output for at
+ * least one of the simulated rows.
+ * The faults are placed on the stem of each net, and on each branch of a net read more than once (by several gate
+ * inputs, or by a gate input and an output of the sheet) : a branch fault only forces the value read by one gate
+ * input, the other readers of the net seeing the good value.
+ * Each word simulates 64 machines at once, the bit 0 being the good machine and the bits 1..63 a faulty machine each,
+ * so that a fault is detected when its bit of an output differs from the bit 0. The groups of 63 faults are
+ * simulated in parallel on a chunk of rows, a group stopping as soon as all its faults are detected, and the faults
+ * left are grouped again for the next chunk. The faults of a net which reaches no output can't be detected and
+ * aren't simulated.
+ * The fault f is stuck at f & 1 on the site f >> 1, the sites being the nets then the branches.
+ */
+public class FaultSimulator {
+
+    /**
+     * The maximum number of inputs simulated on all their rows by runExhaustive
+     */
+    public static final int EXHAUSTIVE_MAX_INPUTS = 20;
+
+    private static final int FAULTS_PER_WORD = 63;
+    /**
+     * The number of rows simulated before grouping the faults left again
+     */
+    private static final int CHUNK_ROWS = 1 << 10;
+
+    private final Netlist netlist;
+    private final ForkJoinPool pool;
+    private final int scratchSize;
+    /**
+     * The fanin index, in Netlist.getFaninNets, of each branch
+     */
+    private final int[] branchPins;
+    /**
+     * Whether each site, net or branch, reaches an output of the sheet
+     */
+    private final boolean[] observable;
+
+    /**
+     * The first row detecting each fault, -1 for an undetected fault
+     */
+    private final long[] detectingRows;
+    private int detected;
+
+    /**
+     * Prepares the fault simulation of a sheet, through its netlist
+     * @param sheet the sheet to simulate
+     */
+    public FaultSimulator(Sheet sheet) {
+        this(sheet.getNetlist(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Prepares the fault simulation of a netlist
+     * @param netlist the compiled sheet
+     * @param pool the threads simulating the groups of faults
+     */
+    public FaultSimulator(Netlist netlist, ForkJoinPool pool) {
+        if (netlist.getInputNets().length > 64) {
+            throw new IllegalArgumentException("A fault simulation can't have more than 64 inputs");
+        }
+        this.netlist = netlist;
+        this.pool = pool;
+        int size = 0;
+        for (LogicFunction function : netlist.getGateFunctions()) {
+            size = Math.max(size, function.getScratchSize());
+        }
+        scratchSize = size;
+
+        int netCount = netlist.getNetCount();
+        int[] faninStart = netlist.getFaninStart();
+        int[] faninNets = netlist.getFaninNets();
+        int[] gateOutputs = netlist.getGateOutputs();
+        LogicFunction[] gateFunctions = netlist.getGateFunctions();
+        // Un net lu plusieurs fois a une branche par entrée de porte
+        int[] readers = new int[netCount];
+        for (int net : faninNets) {
+            if (net >= 0) {
+                readers[net]++;
+            }
+        }
+        for (int net : netlist.getOutputNets()) {
+            readers[net]++;
+        }
+        int branches = 0;
+        for (int net : faninNets) {
+            if (net >= 0 && readers[net] > 1) {
+                branches++;
+            }
+        }
+        branchPins = new int[branches];
+        branches = 0;
+        for (int i = 0; i < faninNets.length; i++) {
+            if (faninNets[i] >= 0 && readers[faninNets[i]] > 1) {
+                branchPins[branches++] = i;
+            }
+        }
+        detectingRows = new long[(netCount + branchPins.length) << 1];
+        Arrays.fill(detectingRows, -1);
+
+        observable = new boolean[netCount + branchPins.length];
+        for (int net : netlist.getOutputNets()) {
+            observable[net] = true;
+        }
+        boolean[] observableGates = new boolean[netlist.getGateCount()];
+        for (int g = netlist.getGateCount() - 1; g >= 0; g--) {
+            for (int o = 0; o < gateFunctions[g].getOutputs(); o++) {
+                observableGates[g] |= observable[gateOutputs[g] + o];
+            }
+            if (observableGates[g]) {
+                for (int i = faninStart[g]; i < faninStart[g + 1]; i++) {
+                    if (faninNets[i] >= 0) {
+                        observable[faninNets[i]] = true;
+                    }
+                }
+            }
+        }
+        int[] pinGates = pinGates();
+        for (int b = 0; b < branchPins.length; b++) {
+            observable[netCount + b] = observableGates[pinGates[branchPins[b]]];
+        }
+    }
+
+    /**
+     * Gets the gate reading each fanin of the netlist
+     */
+    private int[] pinGates() {
+        int[] faninStart = netlist.getFaninStart();
+        int[] pinGates = new int[netlist.getFaninNets().length];
+        for (int g = 0; g < netlist.getGateCount(); g++) {
+            Arrays.fill(pinGates, faninStart[g], faninStart[g + 1], g);
+        }
+        return pinGates;
+    }
+
+    /**
+     * Simulates every row of the truth table of the sheet
+     * @throws IllegalStateException if the sheet has more than EXHAUSTIVE_MAX_INPUTS inputs
+     */
+    public void runExhaustive() {
+        int inputs = netlist.getInputNets().length;
+        if (inputs > EXHAUSTIVE_MAX_INPUTS) {
+            throw new IllegalStateException("Too many inputs to simulate every row : " + inputs);
+        }
+        long[] rows = new long[1 << inputs];
+        for (int row = 0; row < rows.length; row++) {
+            rows[row] = row;
+        }
+        run(rows);
+    }
+
+    /**
+     * Simulates random rows
+     * @param count the number of rows
+     * @param seed the seed of the rows
+     */
+    public void runRandom(int count, long seed) {
+        int inputs = netlist.getInputNets().length;
+        long mask = inputs == 64 ? -1L : (1L << inputs) - 1;
+        Random random = new Random(seed);
+        long[] rows = new long[count];
+        for (int r = 0; r < count; r++) {
+            rows[r] = random.nextLong() & mask;
+        }
+        run(rows);
+    }
+
+    /**
+     * Simulates the faults not detected yet on some rows. Like in a truth table, the first input of the sheet is
+     * the most significant bit of the row.
+     * @param rows the states of the inputs
+     */
+    public void run(long[] rows) {
+        for (int chunk = 0; chunk < rows.length; chunk += CHUNK_ROWS) {
+            List<int[]> groups = group();
+            if (groups.isEmpty()) {
+                break;
+            }
+            int from = chunk;
+            int to = Math.min(rows.length, from + CHUNK_ROWS);
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    List<RecursiveAction> tasks = new ArrayList<>();
+                    for (int[] faults : groups) {
+                        tasks.add(new Group(faults, rows, from, to));
+                    }
+                    invokeAll(tasks);
+                }
+            });
+        }
+
+        detected = 0;
+        for (long row : detectingRows) {
+            if (row != -1) {
+                detected++;
+            }
+        }
+    }
+
+    /**
+     * Packs the observable faults not detected yet by groups of 63
+     */
+    private List<int[]> group() {
+        List<int[]> groups = new ArrayList<>();
+        int[] group = new int[FAULTS_PER_WORD];
+        int size = 0;
+        for (int f = 0; f < detectingRows.length; f++) {
+            if (detectingRows[f] == -1 && observable[f >> 1]) {
+                group[size++] = f;
+                if (size == FAULTS_PER_WORD) {
+                    groups.add(group);
+                    group = new int[FAULTS_PER_WORD];
+                    size = 0;
+                }
+            }
+        }
+        if (size > 0) {
+            groups.add(Arrays.copyOf(group, size));
+        }
+        return groups;
+    }
+
+    /**
+     * The simulation of up to 63 faults on the rows from..to
+     */
+    private class Group extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] faults;
+        private final long[] rows;
+        private final int from;
+        private final int to;
+
+        Group(int[] faults, long[] rows, int from, int to) {
+            this.faults = faults;
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            int netCount = netlist.getNetCount();
+            long[] values = new long[netCount];
+            long[] operands = new long[netlist.getMaxFanin()];
+            long[] scratch = new long[scratchSize];
+            // Le masque des bits gardés et celui des bits forcés à 1 de chaque net, puis de chaque entrée de porte
+            long[] keep = new long[netCount];
+            long[] force = new long[netCount];
+            long[] pinKeep = new long[netlist.getFaninNets().length];
+            long[] pinForce = new long[pinKeep.length];
+            Arrays.fill(keep, -1L);
+            Arrays.fill(pinKeep, -1L);
+            for (int b = 0; b < faults.length; b++) {
+                long bit = 1L << (b + 1);
+                int site = faults[b] >> 1;
+                long[] siteKeep = site < netCount ? keep : pinKeep;
+                long[] siteForce = site < netCount ? force : pinForce;
+                int index = site < netCount ? site : branchPins[site - netCount];
+                if ((faults[b] & 1) == 0) {
+                    siteKeep[index] &= ~bit;
+                } else {
+                    siteForce[index] |= bit;
+                }
+            }
+
+            int[] inputNets = netlist.getInputNets();
+            int[] outputNets = netlist.getOutputNets();
+            int[] gateTypes = netlist.getGateTypes();
+            int[] faninStart = netlist.getFaninStart();
+            int[] faninNets = netlist.getFaninNets();
+            int[] gateOutputs = netlist.getGateOutputs();
+            LogicFunction[] gateFunctions = netlist.getGateFunctions();
+            long all = faults.length == FAULTS_PER_WORD ? -2L : ((1L << faults.length) - 1) << 1;
+            for (int b = 0; b < faults.length; b++) {
+                // Les nets sans pilote ne sont jamais réécrits, leur faute est posée une fois
+                int net = faults[b] >> 1;
+                if (net < netCount) {
+                    values[net] = values[net] & keep[net] | force[net];
+                }
+            }
+            long found = 0;
+            for (int r = from; r < to && found != all; r++) {
+                long row = rows[r];
+                for (int i = 0; i < inputNets.length; i++) {
+                    int net = inputNets[i];
+                    long state = -(row >>> (inputNets.length - 1 - i) & 1L);
+                    values[net] = state & keep[net] | force[net];
+                }
+                for (int g = 0; g < gateTypes.length; g++) {
+                    int first = faninStart[g];
+                    int out = gateOutputs[g];
+                    switch (gateTypes[g]) {
+                        case Netlist.NOT:
+                            values[out] = ~read(values, faninNets, pinKeep, pinForce, first) & keep[out] | force[out];
+                            break;
+                        case Netlist.AND:
+                            values[out] = read(values, faninNets, pinKeep, pinForce, first)
+                                    & read(values, faninNets, pinKeep, pinForce, first + 1) & keep[out] | force[out];
+                            break;
+                        case Netlist.OR:
+                            values[out] = (read(values, faninNets, pinKeep, pinForce, first)
+                                    | read(values, faninNets, pinKeep, pinForce, first + 1)) & keep[out] | force[out];
+                            break;
+                        default:
+                            for (int i = first; i < faninStart[g + 1]; i++) {
+                                operands[i - first] = read(values, faninNets, pinKeep, pinForce, i);
+                            }
+                            for (int o = 0; o < gateFunctions[g].getOutputs(); o++) {
+                                values[out + o] = gateFunctions[g].evaluate(operands, o, scratch)
+                                        & keep[out + o] | force[out + o];
+                            }
+                            break;
+                    }
+                }
+
+                long diff = 0;
+                for (int net : outputNets) {
+                    diff |= values[net] ^ -(values[net] & 1L);
+                }
+                long fresh = diff & all & ~found;
+                found |= fresh;
+                while (fresh != 0) {
+                    int bit = Long.numberOfTrailingZeros(fresh);
+                    fresh &= fresh - 1;
+                    detectingRows[faults[bit - 1]] = row;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the value seen by a gate input, through the faults of its branch
+     * @param pin the index of the input in the fanins of the netlist
+     */
+    private static long read(long[] values, int[] faninNets, long[] pinKeep, long[] pinForce, int pin) {
+        int net = faninNets[pin];
+        return (net < 0 ? 0 : values[net]) & pinKeep[pin] | pinForce[pin];
+    }
+
+    public Netlist getNetlist() {
+        return netlist;
+    }
+
+    /**
+     * Gets the number of faults, two per net and two per branch
+     */
+    public int getFaultCount() {
+        return detectingRows.length;
+    }
+
+    public int getDetectedCount() {
+        return detected;
+    }
+
+    /**
+     * Gets the ratio of detected faults, between 0 and 1
+     */
+    public double getCoverage() {
+        return detectingRows.length == 0 ? 1 : (double) detected / detectingRows.length;
+    }
+
+    /**
+     * Checks if a fault was detected by the simulated rows
+     * @param net the net of the fault
+     * @param stuckAt the state the net is stuck at
+     */
+    public boolean isDetected(int net, boolean stuckAt) {
+        return getDetectingRow(net, stuckAt) != -1;
+    }
+
+    /**
+     * Gets the first simulated row detecting a fault
+     * @param net the net of the fault
+     * @param stuckAt the state the net is stuck at
+     * @return the row, -1 if the fault wasn't detected
+     */
+    public long getDetectingRow(int net, boolean stuckAt) {
+        return detectingRows[net << 1 | (stuckAt ? 1 : 0)];
+    }
+
+    /**
+     * Gets the number of branches, the gate inputs reading a net which is read more than once
+     */
+    public int getBranchCount() {
+        return branchPins.length;
+    }
+
+    /**
+     * Gets the gate input of a branch
+     * @param branch the index of the branch
+     * @return the index of the input in Netlist.getFaninNets
+     */
+    public int getBranchPin(int branch) {
+        return branchPins[branch];
+    }
+
+    /**
+     * Checks if a fault of a branch was detected by the simulated rows
+     * @param branch the index of the branch
+     * @param stuckAt the state the input is stuck at
+     */
+    public boolean isBranchDetected(int branch, boolean stuckAt) {
+        return getBranchDetectingRow(branch, stuckAt) != -1;
+    }
+
+    /**
+     * Gets the first simulated row detecting a fault of a branch
+     * @param branch the index of the branch
+     * @param stuckAt the state the input is stuck at
+     * @return the row, -1 if the fault wasn't detected
+     */
+    public long getBranchDetectingRow(int branch, boolean stuckAt) {
+        return detectingRows[(netlist.getNetCount() + branch) << 1 | (stuckAt ? 1 : 0)];
+    }
+
+    /**
+     * Writes the coverage of the simulated rows, followed by the undetected faults
+     * @param netNames the name of each net, or null to number them, a net without name being numbered
+     * @return the report, one line per undetected fault, a branch being named after its net and the first output of
+     * the gate reading it
+     */
+    public String getReport(String[] netNames) {
+        int netCount = netlist.getNetCount();
+        int[] pinGates = pinGates();
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%d / %d faults detected (%.1f %%, %d nets and %d branches)%n", detected,
+                detectingRows.length, 100 * getCoverage(), netCount, branchPins.length));
+        for (int f = 0; f < detectingRows.length; f++) {
+            if (detectingRows[f] == -1) {
+                int site = f >> 1;
+                String name;
+                if (site < netCount) {
+                    name = netName(netNames, site);
+                } else {
+                    int pin = branchPins[site - netCount];
+                    int gate = pinGates[pin];
+                    name = String.format("%s -> input %d of the gate of %s",
+                            netName(netNames, netlist.getFaninNets()[pin]), pin - netlist.getFaninStart()[gate],
+                            netName(netNames, netlist.getGateOutputs()[gate]));
+                }
+                report.append(String.format("undetected : %s stuck-at-%d%n", name, f & 1));
+            }
+        }
+        return report.toString();
+    }
+
+    private static String netName(String[] netNames, int net) {
+        return netNames == null || netNames[net] == null ? "net " + net : netNames[net];
+    }
+}
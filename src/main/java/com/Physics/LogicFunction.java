@@ -0,0 +1,41 @@
+package com.Physics;
+
+/**
+ * A boolean function of a component, with several outputs, whatever its representation.
+ * The row of an input combination is built with shifts, the first input being the most significant bit.
+ */
+public interface LogicFunction {
+
+    int getInputs();
+
+    int getOutputs();
+
+    /**
+     * Evaluates an output on one input combination
+     * @param row the input combination, the first input being the most significant bit
+     * @param output the index of the output
+     * @return the state of the output
+     */
+    boolean get(int row, int output);
+
+    /**
+     * Evaluates an output on 64 input combinations at once
+     * @param inputs the states of the inputs, bit k for the combination k
+     * @param output the index of the output
+     * @param scratch working memory of at least getScratchSize() words
+     * @return the states of the output, bit k for the combination k
+     */
+    long evaluate(long[] inputs, int output, long[] scratch);
+
+    /**
+     * Gets the working memory needed by evaluate
+     * @return the number of words
+     */
+    int getScratchSize();
+
+    /**
+     * Expands the function into its exhaustive truth table
+     * @return the truth table, which can be this function itself
+     */
+    TruthTable toTruthTable();
+}
@@ -0,0 +1,265 @@
+package com.Physics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Derives a minimized two-level cover from a truth table, each output being minimized on its own.
+ * Small functions use Quine–McCluskey (every prime implicant, then the essential ones and a greedy cover),
+ * wider ones the irredundant sum of products of Minato–Morreale, computed on the packed columns of the table.
+ */
+public class LogicMinimizer {
+
+    /**
+     * The widest function minimized with Quine–McCluskey, its prime implicants grow like 3^n
+     */
+    public static final int QM_MAX_INPUTS = 10;
+
+    private LogicMinimizer() {}
+
+    /**
+     * Minimizes a table and keeps the cheapest form, the cost being the size of the text saved in the file
+     * @param table the exhaustive truth table
+     * @return the cover if it is smaller than the table, else the table itself
+     */
+    public static LogicFunction simplify(TruthTable table) {
+        if (table.isNot() || table.isAnd() || table.isOr()) {
+            return table;
+        }
+        Cover cover = minimize(table);
+        long cubes = 0;
+        for (int o = 0; o < cover.getOutputs(); o++) {
+            cubes += cover.getCubeCount(o);
+        }
+        long coverCost = cubes * (table.getInputs() + 1) + 3L * table.getOutputs();
+        return coverCost < table.getRows() * table.getOutputs() ? cover : table;
+    }
+
+    /**
+     * Computes a minimized cover of every output of a table
+     * @param table the exhaustive truth table
+     * @return the cover
+     */
+    public static Cover minimize(TruthTable table) {
+        Cover cover = new Cover(table.getInputs(), table.getOutputs());
+        for (int o = 0; o < table.getOutputs(); o++) {
+            if (table.getInputs() <= QM_MAX_INPUTS) {
+                quineMcCluskey(table, o, cover);
+            } else {
+                long[] column = table.getColumn(o);
+                isop(column, column, table.getInputs(), 0, 0, cover, o);
+            }
+        }
+        return cover;
+    }
+
+    /**
+     * Finds the prime implicants by merging the cubes differing on a single input, then picks the essential primes
+     * and covers the remaining rows greedily
+     */
+    private static void quineMcCluskey(TruthTable table, int output, Cover cover) {
+        int inputs = table.getInputs();
+        int all = (int) (table.getRows() - 1);
+        List<Integer> minterms = new ArrayList<>();
+        // Un cube est codé care << 32 | value
+        Set<Long> cubes = new HashSet<>();
+        for (int row = 0; row <= all; row++) {
+            if (table.get(row, output)) {
+                minterms.add(row);
+                cubes.add((long) all << 32 | row);
+            }
+        }
+
+        List<Long> primes = new ArrayList<>();
+        while (!cubes.isEmpty()) {
+            Set<Long> merged = new HashSet<>();
+            Set<Long> next = new HashSet<>();
+            for (long cube : cubes) {
+                int care = (int) (cube >>> 32);
+                int value = (int) cube;
+                for (int bits = care & ~value; bits != 0; bits &= bits - 1) {
+                    int bit = bits & -bits;
+                    long other = (long) care << 32 | (value | bit);
+                    if (cubes.contains(other)) {
+                        next.add((long) (care & ~bit) << 32 | value);
+                        merged.add(cube);
+                        merged.add(other);
+                    }
+                }
+            }
+            for (long cube : cubes) {
+                if (!merged.contains(cube)) {
+                    primes.add(cube);
+                }
+            }
+            cubes = next;
+        }
+
+        // Les implicants premiers essentiels, puis le plus couvrant à chaque étape
+        boolean[] covered = new boolean[minterms.size()];
+        boolean[] chosen = new boolean[primes.size()];
+        int remaining = minterms.size();
+        for (int m = 0; m < minterms.size(); m++) {
+            int only = -1;
+            for (int p = 0; p < primes.size(); p++) {
+                if (covers(primes.get(p), minterms.get(m))) {
+                    only = only == -1 ? p : -2;
+                }
+            }
+            if (only >= 0 && !chosen[only]) {
+                chosen[only] = true;
+                remaining -= cover(primes.get(only), minterms, covered);
+            }
+        }
+        while (remaining > 0) {
+            int best = -1;
+            int bestCount = 0;
+            for (int p = 0; p < primes.size(); p++) {
+                if (chosen[p]) {
+                    continue;
+                }
+                int count = 0;
+                for (int m = 0; m < minterms.size(); m++) {
+                    if (!covered[m] && covers(primes.get(p), minterms.get(m))) {
+                        count++;
+                    }
+                }
+                if (count > bestCount || (count == bestCount && count > 0
+                        && Long.bitCount(primes.get(p) >>> 32) < Long.bitCount(primes.get(best) >>> 32))) {
+                    best = p;
+                    bestCount = count;
+                }
+            }
+            chosen[best] = true;
+            remaining -= cover(primes.get(best), minterms, covered);
+        }
+        for (int p = 0; p < primes.size(); p++) {
+            if (chosen[p]) {
+                cover.addCube(output, (int) (primes.get(p) >>> 32), primes.get(p).intValue());
+            }
+        }
+    }
+
+    private static boolean covers(long cube, int row) {
+        return (row & (int) (cube >>> 32)) == (int) cube;
+    }
+
+    /**
+     * Marks the rows covered by a cube
+     * @return the number of rows which were not covered yet
+     */
+    private static int cover(long cube, List<Integer> minterms, boolean[] covered) {
+        int count = 0;
+        for (int m = 0; m < minterms.size(); m++) {
+            if (!covered[m] && covers(cube, minterms.get(m))) {
+                covered[m] = true;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Computes an irredundant sum of products of a function lying between lower and upper, by splitting on the
+     * most significant input : the cubes needing the input at 0, those needing it at 1, then those not reading it.
+     * A function of n inputs is a bitmask of 2^n rows, in a single word below 6 inputs.
+     * @param care the inputs fixed by the enclosing calls
+     * @param value the state of these inputs
+     * @return the bitmask of the rows covered by the added cubes
+     */
+    private static long[] isop(long[] lower, long[] upper, int vars, int care, int value, Cover cover, int output) {
+        if (isZero(lower)) {
+            return new long[lower.length];
+        }
+        if (isFull(upper, vars)) {
+            cover.addCube(output, care, value);
+            long[] full = new long[upper.length];
+            Arrays.fill(full, mask(vars));
+            return full;
+        }
+        int bit = 1 << (vars - 1);
+        long[] lower0 = cofactor(lower, vars, false);
+        long[] lower1 = cofactor(lower, vars, true);
+        long[] upper0 = cofactor(upper, vars, false);
+        long[] upper1 = cofactor(upper, vars, true);
+
+        long[] covered0 = isop(andNot(lower0, upper1), upper0, vars - 1, care | bit, value, cover, output);
+        long[] covered1 = isop(andNot(lower1, upper0), upper1, vars - 1, care | bit, value | bit, cover, output);
+        long[] rest = andNot(lower0, covered0);
+        long[] rest1 = andNot(lower1, covered1);
+        long[] both = upper0.clone();
+        for (int w = 0; w < rest.length; w++) {
+            rest[w] |= rest1[w];
+            both[w] &= upper1[w];
+        }
+        long[] coveredBoth = isop(rest, both, vars - 1, care, value, cover, output);
+        for (int w = 0; w < coveredBoth.length; w++) {
+            covered0[w] |= coveredBoth[w];
+            covered1[w] |= coveredBoth[w];
+        }
+        return join(covered0, covered1, vars);
+    }
+
+    /**
+     * Gets the mask of the used bits of a word, for a function of vars inputs
+     */
+    private static long mask(int vars) {
+        return vars >= 6 ? -1L : (1L << (1 << vars)) - 1;
+    }
+
+    private static boolean isZero(long[] function) {
+        for (long word : function) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isFull(long[] function, int vars) {
+        long mask = mask(vars);
+        for (long word : function) {
+            if ((word & mask) != mask) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Fixes the most significant input of a function
+     * @param high the state of the input
+     * @return the function of the other inputs
+     */
+    private static long[] cofactor(long[] function, int vars, boolean high) {
+        if (vars > 6) {
+            int half = function.length >>> 1;
+            return high ? Arrays.copyOfRange(function, half, function.length) : Arrays.copyOf(function, half);
+        }
+        int shift = 1 << (vars - 1);
+        return new long[] {(high ? function[0] >>> shift : function[0]) & mask(vars - 1)};
+    }
+
+    /**
+     * Rebuilds a function from its two cofactors on its most significant input
+     */
+    private static long[] join(long[] low, long[] high, int vars) {
+        if (vars > 6) {
+            long[] function = Arrays.copyOf(low, low.length << 1);
+            System.arraycopy(high, 0, function, low.length, high.length);
+            return function;
+        }
+        return new long[] {low[0] | high[0] << (1 << (vars - 1))};
+    }
+
+    private static long[] andNot(long[] a, long[] b) {
+        long[] result = new long[a.length];
+        for (int w = 0; w < a.length; w++) {
+            result[w] = a[w] & ~b[w];
+        }
+        return result;
+    }
+}
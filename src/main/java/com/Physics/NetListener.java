@@ -0,0 +1,14 @@
+package com.Physics;
+
+/**
+ * Listener of the changes of the nets during a simulation
+ */
+public interface NetListener {
+    /**
+     * Called when a net changes
+     * @param time the simulation time of the change
+     * @param net the net, as numbered by the netlist
+     * @param state the new state of the net
+     */
+    void netChanged(long time, int net, boolean state);
+}
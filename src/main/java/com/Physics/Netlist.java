@@ -0,0 +1,562 @@
+package com.Physics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The compiled, immutable form of a sheet, shared by every simulation engine.
+ * Gates are stored in level order as primitive arrays (struct of arrays), and every wire is mapped to a net :
+ * the wires leaving the same output of a component share a net, the wires without driver are the input nets.
+ * The state of the nets is not stored here, each engine keeps its own primitive array indexed by net.
+ * The registers are not gates : the nets of their outputs have no driver, like the inputs of the sheet, and the nets
+ * of their inputs are only read on a clock edge, so the gates stay sorted when a loop goes through a register.
+ */
+public final class Netlist {
+
+    public static final int NOT = 0;
+    public static final int AND = 1;
+    public static final int OR = 2;
+    public static final int TABLE = 3;
+    /**
+     * A gate whose function is a decision diagram, walked on the nets instead of building a row
+     */
+    public static final int BDD = 4;
+
+    /**
+     * The type of each gate, gates being sorted by level
+     */
+    private final int[] gateTypes;
+    /**
+     * The fan-in of gate g is faninNets[faninStart[g]] .. faninNets[faninStart[g + 1] - 1]
+     */
+    private final int[] faninStart;
+    /**
+     * The nets read by the gates, -1 for an unconnected input
+     */
+    private final int[] faninNets;
+    /**
+     * The outputs of gate g are the nets gateOutputs[g] .. gateOutputs[g + 1] - 1
+     */
+    private final int[] gateOutputs;
+    private final int[] gateLevels;
+    /**
+     * The propagation delay of each gate, in ticks
+     */
+    private final int[] gateDelays;
+    /**
+     * The gates of level l are levelStart[l] .. levelStart[l + 1] - 1
+     */
+    private final int[] levelStart;
+    /**
+     * The function of each gate, only used by the TABLE and BDD gates
+     */
+    private final LogicFunction[] gateFunctions;
+    /**
+     * The component of each gate
+     */
+    private final Component[] components;
+
+    /**
+     * The gates reading net n are fanoutGates[fanoutStart[n]] .. fanoutGates[fanoutStart[n + 1] - 1]
+     */
+    private final int[] fanoutStart;
+    private final int[] fanoutGates;
+    /**
+     * The gate driving each net, -1 for an input net
+     */
+    private final int[] netDrivers;
+    /**
+     * The wires of net n are netWires[netWireStart[n]] .. netWires[netWireStart[n + 1] - 1]
+     */
+    private final int[] netWireStart;
+    private final Wire[] netWires;
+    private final Map<Wire, Integer> wireNets;
+
+    /**
+     * The nets of the inputs and of the outputs of the sheet, in the order of the sheet
+     */
+    private final int[] inputNets;
+    private final int[] outputNets;
+
+    /**
+     * The registers of the sheet, whose flip-flops are numbered in a row : the flip-flops of register r are
+     * registerStart[r] .. registerStart[r + 1] - 1
+     */
+    private final Component[] registers;
+    private final int[] registerStart;
+    /**
+     * The net read and the net written by each flip-flop on a clock edge, -1 for an unconnected input or output
+     */
+    private final int[] registerInputNets;
+    private final int[] registerOutputNets;
+
+    private final int netCount;
+    private final int maxFanin;
+    private final int maxDelay;
+
+    /**
+     * Compiles a sheet : sorts its components by logic level (Kahn's algorithm) and numbers its nets.
+     * Runs in O(components + wires).
+     * @param sheet the sheet to compile
+     * @throws IllegalStateException if the sheet contains a combinational loop
+     */
+    public Netlist(Sheet sheet) {
+        List<Component> sheetComponents = new ArrayList<>();
+        List<Component> sheetRegisters = new ArrayList<>();
+        for (Component component : sheet.getComponents()) {
+            (component.getFunction() instanceof Register ? sheetRegisters : sheetComponents).add(component);
+        }
+        int count = sheetComponents.size();
+        Map<Component, Integer> componentIndex = new IdentityHashMap<>();
+        for (int c = 0; c < count; c++) {
+            componentIndex.put(sheetComponents.get(c), c);
+        }
+
+        // On recense tous les fils, et le composant qui pilote chacun d'eux
+        List<Wire> allWires = new ArrayList<>();
+        Map<Wire, Integer> wireIndex = new IdentityHashMap<>();
+        List<Wire> candidates = new ArrayList<>(sheet.getWires());
+        candidates.addAll(sheet.getWireInputs());
+        candidates.addAll(sheet.getOutputs());
+        for (Component component : sheet.getComponents()) {
+            candidates.addAll(Arrays.asList(component.getWiresInput()));
+        }
+        for (Wire wire : candidates) {
+            if (wire != null && !wireIndex.containsKey(wire)) {
+                wireIndex.put(wire, allWires.size());
+                allWires.add(wire);
+            }
+        }
+        int[] wireDrivers = new int[allWires.size()];
+        for (int w = 0; w < allWires.size(); w++) {
+            Integer driver = componentIndex.get(allWires.get(w).getDriver());
+            wireDrivers[w] = driver == null ? -1 : driver;
+        }
+
+        // Tri topologique des composants
+        int[] pending = new int[count];
+        int[] successorCount = new int[count + 1];
+        for (int c = 0; c < count; c++) {
+            for (Wire wire : sheetComponents.get(c).getWiresInput()) {
+                if (wire != null && wireDrivers[wireIndex.get(wire)] != -1) {
+                    pending[c]++;
+                    successorCount[wireDrivers[wireIndex.get(wire)] + 1]++;
+                }
+            }
+        }
+        for (int c = 0; c < count; c++) {
+            successorCount[c + 1] += successorCount[c];
+        }
+        int[] successors = new int[successorCount[count]];
+        int[] fill = Arrays.copyOf(successorCount, count);
+        for (int c = 0; c < count; c++) {
+            for (Wire wire : sheetComponents.get(c).getWiresInput()) {
+                if (wire != null && wireDrivers[wireIndex.get(wire)] != -1) {
+                    successors[fill[wireDrivers[wireIndex.get(wire)]]++] = c;
+                }
+            }
+        }
+        int[] order = new int[count];
+        int[] componentLevels = new int[count];
+        int sorted = 0;
+        for (int c = 0; c < count; c++) {
+            if (pending[c] == 0) {
+                order[sorted++] = c;
+            }
+        }
+        int levels = count == 0 ? 0 : 1;
+        for (int k = 0; k < sorted; k++) {
+            int c = order[k];
+            for (int s = successorCount[c]; s < successorCount[c + 1]; s++) {
+                int next = successors[s];
+                componentLevels[next] = Math.max(componentLevels[next], componentLevels[c] + 1);
+                levels = Math.max(levels, componentLevels[next] + 1);
+                if (--pending[next] == 0) {
+                    order[sorted++] = next;
+                }
+            }
+        }
+        if (sorted != count) {
+            throw new IllegalStateException("The sheet contains a combinational loop");
+        }
+
+        // Les portes sont rangées par niveau (tri par comptage)
+        levelStart = new int[levels + 1];
+        for (int c = 0; c < count; c++) {
+            levelStart[componentLevels[c] + 1]++;
+        }
+        for (int l = 0; l < levels; l++) {
+            levelStart[l + 1] += levelStart[l];
+        }
+        int[] gateOf = new int[count];
+        fill = Arrays.copyOf(levelStart, levels);
+        for (int k = 0; k < count; k++) {
+            int c = order[k];
+            gateOf[c] = fill[componentLevels[c]]++;
+        }
+
+        components = new Component[count];
+        gateTypes = new int[count];
+        gateLevels = new int[count];
+        gateDelays = new int[count];
+        gateFunctions = new LogicFunction[count];
+        gateOutputs = new int[count + 1];
+        faninStart = new int[count + 1];
+        for (int c = 0; c < count; c++) {
+            Component component = sheetComponents.get(c);
+            int g = gateOf[c];
+            components[g] = component;
+            gateLevels[g] = componentLevels[c];
+            gateDelays[g] = component.getDelay();
+            gateFunctions[g] = component.getFunction();
+            gateTypes[g] = typeOf(component.getFunction());
+            gateOutputs[g + 1] = component.getOutputs();
+            faninStart[g + 1] = component.getWiresInput().length;
+        }
+        int maxFanin = 0;
+        int maxDelay = 0;
+        for (int g = 0; g < count; g++) {
+            maxFanin = Math.max(maxFanin, faninStart[g + 1]);
+            maxDelay = Math.max(maxDelay, gateDelays[g]);
+            gateOutputs[g + 1] += gateOutputs[g];
+            faninStart[g + 1] += faninStart[g];
+        }
+        this.maxFanin = maxFanin;
+        this.maxDelay = maxDelay;
+
+        registers = sheetRegisters.toArray(new Component[0]);
+        registerStart = new int[registers.length + 1];
+        Map<Component, Integer> registerIndex = new IdentityHashMap<>();
+        for (int r = 0; r < registers.length; r++) {
+            registerIndex.put(registers[r], r);
+            registerStart[r + 1] = registerStart[r] + registers[r].getOutputs();
+        }
+        registerOutputNets = new int[registerStart[registers.length]];
+        Arrays.fill(registerOutputNets, -1);
+
+        // Numérotation des nets : d'abord les sorties des portes, puis les fils sans pilote
+        // Les fils d'une même sortie de registre partagent un net, créé au premier d'entre eux
+        int nets = gateOutputs[count];
+        int[] wireNet = new int[allWires.size()];
+        for (int w = 0; w < allWires.size(); w++) {
+            Wire wire = allWires.get(w);
+            if (wireDrivers[w] != -1) {
+                wireNet[w] = gateOutputs[gateOf[wireDrivers[w]]] + wire.getId(0);
+                continue;
+            }
+            Integer register = registerIndex.get(wire.getDriver());
+            if (register == null) {
+                wireNet[w] = nets++;
+                continue;
+            }
+            int flipFlop = registerStart[register] + wire.getId(0);
+            if (registerOutputNets[flipFlop] == -1) {
+                registerOutputNets[flipFlop] = nets++;
+            }
+            wireNet[w] = registerOutputNets[flipFlop];
+        }
+        netCount = nets;
+        netDrivers = new int[netCount];
+        Arrays.fill(netDrivers, -1);
+        for (int g = 0; g < count; g++) {
+            for (int n = gateOutputs[g]; n < gateOutputs[g + 1]; n++) {
+                netDrivers[n] = g;
+            }
+        }
+
+        wireNets = new IdentityHashMap<>();
+        netWireStart = new int[netCount + 1];
+        for (int w = 0; w < allWires.size(); w++) {
+            wireNets.put(allWires.get(w), wireNet[w]);
+            netWireStart[wireNet[w] + 1]++;
+        }
+        for (int n = 0; n < netCount; n++) {
+            netWireStart[n + 1] += netWireStart[n];
+        }
+        netWires = new Wire[allWires.size()];
+        fill = Arrays.copyOf(netWireStart, netCount);
+        for (int w = 0; w < allWires.size(); w++) {
+            netWires[fill[wireNet[w]]++] = allWires.get(w);
+        }
+
+        faninNets = new int[faninStart[count]];
+        fanoutStart = new int[netCount + 1];
+        for (int g = 0; g < count; g++) {
+            Wire[] inputs = components[g].getWiresInput();
+            for (int i = 0; i < inputs.length; i++) {
+                int net = inputs[i] == null ? -1 : wireNet[wireIndex.get(inputs[i])];
+                faninNets[faninStart[g] + i] = net;
+                if (net != -1) {
+                    fanoutStart[net + 1]++;
+                }
+            }
+        }
+        for (int n = 0; n < netCount; n++) {
+            fanoutStart[n + 1] += fanoutStart[n];
+        }
+        fanoutGates = new int[fanoutStart[netCount]];
+        fill = Arrays.copyOf(fanoutStart, netCount);
+        for (int g = 0; g < count; g++) {
+            for (int f = faninStart[g]; f < faninStart[g + 1]; f++) {
+                if (faninNets[f] != -1) {
+                    fanoutGates[fill[faninNets[f]]++] = g;
+                }
+            }
+        }
+
+        inputNets = new int[sheet.getWireInputs().size()];
+        for (int i = 0; i < inputNets.length; i++) {
+            inputNets[i] = wireNets.get(sheet.getWireInputs().get(i));
+        }
+        outputNets = new int[sheet.getOutputs().size()];
+        for (int i = 0; i < outputNets.length; i++) {
+            outputNets[i] = wireNets.get(sheet.getOutputs().get(i));
+        }
+
+        registerInputNets = new int[registerOutputNets.length];
+        for (int r = 0; r < registers.length; r++) {
+            Wire[] inputs = registers[r].getWiresInput();
+            for (int i = 0; i < inputs.length; i++) {
+                registerInputNets[registerStart[r] + i] = inputs[i] == null ? -1 : wireNet[wireIndex.get(inputs[i])];
+            }
+        }
+    }
+
+    /**
+     * Gets the type of gate matching a function
+     * @param function the function of the component
+     * @return NOT, AND or OR for the built-in gates, BDD for a decision diagram, TABLE otherwise
+     */
+    static int typeOf(LogicFunction function) {
+        if (function instanceof BddFunction) {
+            return BDD;
+        }
+        if (!(function instanceof TruthTable)) {
+            return TABLE;
+        }
+        TruthTable table = (TruthTable) function;
+        if (table.isNot()) {
+            return NOT;
+        } else if (table.isAnd()) {
+            return AND;
+        } else if (table.isOr()) {
+            return OR;
+        }
+        return TABLE;
+    }
+
+    /**
+     * Evaluates every gate once, in level order
+     * @param values the state of each net, the input nets must be set
+     */
+    public void evaluate(boolean[] values) {
+        for (int g = 0; g < gateTypes.length; g++) {
+            evaluateGate(g, values);
+        }
+    }
+
+    /**
+     * Evaluates a gate and writes its outputs
+     * @param g the gate
+     * @param values the state of each net
+     * @return true if one of the outputs of the gate changed
+     */
+    public boolean evaluateGate(int g, boolean[] values) {
+        int first = faninStart[g];
+        int out = gateOutputs[g];
+        boolean old = values[out];
+        switch (gateTypes[g]) {
+            case NOT:
+                values[out] = !read(first, values);
+                return values[out] != old;
+            case AND:
+                values[out] = read(first, values) && read(first + 1, values);
+                return values[out] != old;
+            case OR:
+                values[out] = read(first, values) || read(first + 1, values);
+                return values[out] != old;
+            case BDD:
+                boolean bddChanged = false;
+                BddFunction bdd = (BddFunction) gateFunctions[g];
+                for (int o = 0; o < gateOutputs[g + 1] - out; o++) {
+                    boolean value = bdd.get(o, values, faninNets, first);
+                    bddChanged |= values[out + o] != value;
+                    values[out + o] = value;
+                }
+                return bddChanged;
+            default:
+                int row = 0;
+                for (int f = first; f < faninStart[g + 1]; f++) {
+                    row = row << 1 | (read(f, values) ? 1 : 0);
+                }
+                boolean changed = false;
+                LogicFunction function = gateFunctions[g];
+                for (int o = 0; o < gateOutputs[g + 1] - out; o++) {
+                    boolean value = function.get(row, o);
+                    changed |= values[out + o] != value;
+                    values[out + o] = value;
+                }
+                return changed;
+        }
+    }
+
+    /**
+     * Computes an output of a gate without writing it
+     * @param g the gate
+     * @param output the index of the output of the gate
+     * @param values the state of each net
+     * @return the state of the output
+     */
+    public boolean evaluateOutput(int g, int output, boolean[] values) {
+        int first = faninStart[g];
+        switch (gateTypes[g]) {
+            case NOT:
+                return !read(first, values);
+            case AND:
+                return read(first, values) && read(first + 1, values);
+            case OR:
+                return read(first, values) || read(first + 1, values);
+            case BDD:
+                return ((BddFunction) gateFunctions[g]).get(output, values, faninNets, first);
+            default:
+                int row = 0;
+                for (int f = first; f < faninStart[g + 1]; f++) {
+                    row = row << 1 | (read(f, values) ? 1 : 0);
+                }
+                return gateFunctions[g].get(row, output);
+        }
+    }
+
+    private boolean read(int fanin, boolean[] values) {
+        int net = faninNets[fanin];
+        return net >= 0 && values[net];
+    }
+
+    /**
+     * Gets the net of a wire
+     * @param wire the wire
+     * @return the net of the wire, or -1 if the wire isn't part of the sheet
+     */
+    public int getNet(Wire wire) {
+        Integer net = wireNets.get(wire);
+        return net == null ? -1 : net;
+    }
+
+    public int getNetCount() {
+        return netCount;
+    }
+
+    public int getGateCount() {
+        return gateTypes.length;
+    }
+
+    public int getLevelCount() {
+        return levelStart.length - 1;
+    }
+
+    /**
+     * Gets the greatest number of inputs of a gate
+     */
+    public int getMaxFanin() {
+        return maxFanin;
+    }
+
+    // Les accesseurs suivants renvoient les tableaux eux-mêmes pour les boucles des moteurs, ils ne doivent pas être modifiés
+
+    public int[] getGateTypes() {
+        return gateTypes;
+    }
+
+    public int[] getFaninStart() {
+        return faninStart;
+    }
+
+    public int[] getFaninNets() {
+        return faninNets;
+    }
+
+    public int[] getGateOutputs() {
+        return gateOutputs;
+    }
+
+    public int[] getGateLevels() {
+        return gateLevels;
+    }
+
+    public int[] getGateDelays() {
+        return gateDelays;
+    }
+
+    /**
+     * Gets the greatest propagation delay of a gate
+     */
+    public int getMaxDelay() {
+        return maxDelay;
+    }
+
+    public int[] getLevelStart() {
+        return levelStart;
+    }
+
+    public LogicFunction[] getGateFunctions() {
+        return gateFunctions;
+    }
+
+    public Component[] getComponents() {
+        return components;
+    }
+
+    public int[] getFanoutStart() {
+        return fanoutStart;
+    }
+
+    public int[] getFanoutGates() {
+        return fanoutGates;
+    }
+
+    public int[] getNetDrivers() {
+        return netDrivers;
+    }
+
+    public int[] getNetWireStart() {
+        return netWireStart;
+    }
+
+    public Wire[] getNetWires() {
+        return netWires;
+    }
+
+    public int[] getInputNets() {
+        return inputNets;
+    }
+
+    public int[] getOutputNets() {
+        return outputNets;
+    }
+
+    /**
+     * Gets the number of flip-flops of all the registers
+     */
+    public int getFlipFlopCount() {
+        return registerOutputNets.length;
+    }
+
+    public Component[] getRegisters() {
+        return registers;
+    }
+
+    public int[] getRegisterStart() {
+        return registerStart;
+    }
+
+    public int[] getRegisterInputNets() {
+        return registerInputNets;
+    }
+
+    public int[] getRegisterOutputNets() {
+        return registerOutputNets;
+    }
+}
@@ -0,0 +1,412 @@
+package com.Physics;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Simplifies the netlist of a sheet before its simulation, and builds the simplified sheet.
+ * Each net is first reduced to a literal : a constant, or a net of the simplified sheet possibly inverted.
+ * The constants are folded through the functions of the gates, whose tables are restricted to their remaining
+ * inputs; a gate whose outputs become constants or copies of an input disappears. The inverters become inverted
+ * literals, which collapses the double inversions, and are only rebuilt where a gate or an output needs them, once
+ * per net. Then the gates which can't reach an output of the sheet are removed.
+ * The literal of every net is kept, so that the state of the original wires can be computed back from the
+ * simplified sheet, the wires of the removed logic becoming unknown.
+ */
+public class NetlistOptimizer {
+
+    /**
+     * The widest function whose table is restricted to its remaining inputs, wider ones are only folded when all
+     * their inputs are constant
+     */
+    public static final int FOLD_MAX_INPUTS = 16;
+
+    private static final int FALSE = -1;
+    private static final int TRUE = -2;
+    /**
+     * Marks an output of a gate which can't be reduced to a literal
+     */
+    private static final int GATE = -3;
+
+    private final Sheet sheet;
+    private final Netlist netlist;
+    private final Map<Wire, Boolean> constants;
+
+    /**
+     * The literal of each net : net << 1 | inverted, or FALSE / TRUE
+     */
+    private int[] literals;
+    /**
+     * The function and the literal of each input of the gates which remain, null for the others
+     */
+    private LogicFunction[] functions;
+    private int[][] operands;
+
+    private Sheet optimized;
+    /**
+     * The wire of the simplified sheet holding each net, and the wire holding its inverse if one was needed
+     */
+    private Wire[] netWires;
+    private Wire[] invertedWires;
+    private final Wire[] constantWires = new Wire[2];
+
+    /**
+     * Prepares the simplification of a sheet whose inputs are all free
+     * @param sheet the sheet to simplify
+     */
+    public NetlistOptimizer(Sheet sheet) {
+        this(sheet, Collections.emptyMap());
+    }
+
+    /**
+     * Prepares the simplification of a sheet
+     * @param sheet the sheet to simplify
+     * @param constants the inputs of the sheet tied to a constant state
+     */
+    public NetlistOptimizer(Sheet sheet, Map<Wire, Boolean> constants) {
+        this.sheet = sheet;
+        netlist = sheet.getNetlist();
+        this.constants = constants;
+    }
+
+    /**
+     * Simplifies the netlist and builds the simplified sheet, whose inputs and outputs are in the order of the sheet
+     * @return the simplified sheet
+     * @throws IllegalStateException if the sheet has registers, which the simplified sheet wouldn't keep
+     */
+    public Sheet optimize() {
+        if (netlist.getRegisters().length > 0) {
+            throw new IllegalStateException("A sheet with registers can't be simplified");
+        }
+        int netCount = netlist.getNetCount();
+        literals = new int[netCount];
+        for (int n = 0; n < netCount; n++) {
+            literals[n] = n << 1;
+        }
+        for (Map.Entry<Wire, Boolean> constant : constants.entrySet()) {
+            int net = netlist.getNet(constant.getKey());
+            if (net != -1 && netlist.getNetDrivers()[net] == -1) {
+                literals[net] = constant.getValue() ? TRUE : FALSE;
+            }
+        }
+
+        int gates = netlist.getGateCount();
+        functions = new LogicFunction[gates];
+        operands = new int[gates][];
+        for (int g = 0; g < gates; g++) {
+            fold(g);
+        }
+        build(live());
+        return optimized;
+    }
+
+    /**
+     * Reduces the outputs of a gate to literals when its inputs allow it
+     */
+    private void fold(int g) {
+        int first = netlist.getFaninStart()[g];
+        int count = netlist.getFaninStart()[g + 1] - first;
+        int out = netlist.getGateOutputs()[g];
+        int outputs = netlist.getGateOutputs()[g + 1] - out;
+        LogicFunction function = netlist.getGateFunctions()[g];
+        boolean builtIn = netlist.getGateTypes()[g] <= Netlist.OR;
+
+        int[] inputs = new int[count];
+        boolean allConstant = true;
+        for (int i = 0; i < count; i++) {
+            int net = netlist.getFaninNets()[first + i];
+            inputs[i] = net < 0 ? FALSE : literals[net];
+            allConstant &= inputs[i] < 0;
+        }
+
+        if (count <= FOLD_MAX_INPUTS) {
+            // Les entrées libres sont les nets distincts, sans constante ni inversion
+            int[] free = new int[count];
+            int[] freeIndex = new int[count];
+            int freeCount = 0;
+            boolean changed = false;
+            for (int i = 0; i < count; i++) {
+                if (inputs[i] < 0) {
+                    changed = true;
+                    continue;
+                }
+                changed |= (inputs[i] & 1) != 0;
+                int source = inputs[i] >> 1;
+                int j = 0;
+                while (j < freeCount && free[j] != source) {
+                    j++;
+                }
+                if (j == freeCount) {
+                    free[freeCount++] = source;
+                } else {
+                    changed = true;
+                }
+                freeIndex[i] = j;
+            }
+            // Même sans constante, une porte peut se réduire à une entrée, comme un inverseur
+            TruthTable reduced = changed ? restrict(function, inputs, freeIndex, freeCount) : function.toTruthTable();
+            int[] outputLiterals = new int[outputs];
+            boolean folded = true;
+            for (int o = 0; o < outputs; o++) {
+                outputLiterals[o] = classify(reduced, o, free);
+                folded &= outputLiterals[o] != GATE;
+            }
+            if (!folded) {
+                if (builtIn || !changed) {
+                    keep(g, function, inputs);
+                } else {
+                    int[] freeLiterals = new int[freeCount];
+                    for (int j = 0; j < freeCount; j++) {
+                        freeLiterals[j] = free[j] << 1;
+                    }
+                    keep(g, reduced, freeLiterals);
+                }
+            }
+            for (int o = 0; o < outputs; o++) {
+                literals[out + o] = outputLiterals[o] == GATE ? (out + o) << 1 : outputLiterals[o];
+            }
+            return;
+        } else if (allConstant && count < Integer.SIZE) {
+            int row = 0;
+            for (int input : inputs) {
+                row = row << 1 | (input == TRUE ? 1 : 0);
+            }
+            for (int o = 0; o < outputs; o++) {
+                literals[out + o] = function.get(row, o) ? TRUE : FALSE;
+            }
+            return;
+        }
+        keep(g, function, inputs);
+    }
+
+    private void keep(int g, LogicFunction function, int[] inputs) {
+        functions[g] = function;
+        operands[g] = inputs;
+    }
+
+    /**
+     * Restricts a function to its free inputs, the constants and inversions of its inputs being applied
+     * @param inputs the literal of each input
+     * @param freeIndex the free input read by each input which isn't constant
+     * @param freeCount the number of free inputs
+     * @return the table of the function of the free inputs
+     */
+    private static TruthTable restrict(LogicFunction function, int[] inputs, int[] freeIndex, int freeCount) {
+        TruthTable reduced = new TruthTable(freeCount, function.getOutputs());
+        for (int row = 0; row < reduced.getRows(); row++) {
+            int original = 0;
+            for (int i = 0; i < inputs.length; i++) {
+                int bit;
+                if (inputs[i] < 0) {
+                    bit = inputs[i] == TRUE ? 1 : 0;
+                } else {
+                    bit = (row >>> (freeCount - 1 - freeIndex[i]) & 1) ^ (inputs[i] & 1);
+                }
+                original = original << 1 | bit;
+            }
+            for (int o = 0; o < function.getOutputs(); o++) {
+                reduced.set(row, o, function.get(original, o));
+            }
+        }
+        return reduced;
+    }
+
+    /**
+     * Checks if an output of a restricted table is a constant, a free input or its inverse
+     * @return the literal of the output, or GATE if the output is another function
+     */
+    private static int classify(TruthTable table, int output, int[] free) {
+        int inputs = table.getInputs();
+        int rows = (int) table.getRows();
+        boolean zero = true;
+        boolean one = true;
+        for (int row = 0; row < rows; row++) {
+            boolean value = table.get(row, output);
+            zero &= !value;
+            one &= value;
+        }
+        if (zero) {
+            return FALSE;
+        }
+        if (one) {
+            return TRUE;
+        }
+        for (int j = 0; j < inputs; j++) {
+            boolean same = true;
+            boolean inverse = true;
+            for (int row = 0; row < rows && (same || inverse); row++) {
+                boolean input = (row >>> (inputs - 1 - j) & 1) != 0;
+                boolean value = table.get(row, output);
+                same &= value == input;
+                inverse &= value != input;
+            }
+            if (same) {
+                return free[j] << 1;
+            }
+            if (inverse) {
+                return free[j] << 1 | 1;
+            }
+        }
+        return GATE;
+    }
+
+    /**
+     * Finds the gates which remain and whose outputs can reach an output of the sheet, from the outputs backwards
+     * @return whether each gate is kept in the simplified sheet
+     */
+    private boolean[] live() {
+        boolean[] needed = new boolean[netlist.getNetCount()];
+        for (int net : netlist.getOutputNets()) {
+            if (literals[net] >= 0) {
+                needed[literals[net] >> 1] = true;
+            }
+        }
+        int[] gateOutputs = netlist.getGateOutputs();
+        boolean[] live = new boolean[netlist.getGateCount()];
+        for (int g = live.length - 1; g >= 0; g--) {
+            if (functions[g] == null) {
+                continue;
+            }
+            for (int n = gateOutputs[g]; n < gateOutputs[g + 1]; n++) {
+                live[g] |= needed[n];
+            }
+            if (live[g]) {
+                for (int literal : operands[g]) {
+                    if (literal >= 0) {
+                        needed[literal >> 1] = true;
+                    }
+                }
+            }
+        }
+        return live;
+    }
+
+    /**
+     * Builds the simplified sheet from the remaining gates
+     */
+    private void build(boolean[] live) {
+        optimized = new Sheet();
+        optimized.setParallel(sheet.isParallel());
+        netWires = new Wire[netlist.getNetCount()];
+        invertedWires = new Wire[netlist.getNetCount()];
+        for (int i = 0; i < netlist.getInputNets().length; i++) {
+            Wire input = new Wire();
+            input.setState(sheet.getWireInputs().get(i).getState());
+            optimized.addWireInput(input);
+            netWires[netlist.getInputNets()[i]] = input;
+        }
+
+        Component[] components = netlist.getComponents();
+        int[] gateOutputs = netlist.getGateOutputs();
+        for (int g = 0; g < live.length; g++) {
+            if (!live[g]) {
+                continue;
+            }
+            Component component = new Component(components[g].getName(), operands[g].length, functions[g].getOutputs(), functions[g]);
+            component.setDelay(components[g].getDelay());
+            optimized.addComponent(component);
+            for (int i = 0; i < operands[g].length; i++) {
+                // Une entrée à 0 reste non connectée, elle est lue comme fausse
+                if (operands[g][i] != FALSE) {
+                    component.addWireInput(wire(operands[g][i]), i);
+                }
+            }
+            for (int o = 0; o < functions[g].getOutputs(); o++) {
+                netWires[gateOutputs[g] + o] = output(component, o);
+            }
+        }
+
+        for (int net : netlist.getOutputNets()) {
+            optimized.addOutput(wire(literals[net]));
+        }
+    }
+
+    /**
+     * Gets the wire holding a literal in the simplified sheet, adding an inverter or a constant if needed
+     */
+    private Wire wire(int literal) {
+        if (literal < 0) {
+            int value = literal == TRUE ? 1 : 0;
+            if (constantWires[value] == null) {
+                Component constant = new Component(value == 1 ? "true" : "false", 0, 1,
+                        TruthTable.parse(String.valueOf(value), 0, 1));
+                optimized.addComponent(constant);
+                constantWires[value] = output(constant, 0);
+            }
+            return constantWires[value];
+        }
+        int net = literal >> 1;
+        if ((literal & 1) == 0) {
+            return netWires[net];
+        }
+        if (invertedWires[net] == null) {
+            Component not = new Component("not", 1, 1, TruthTable.not());
+            optimized.addComponent(not);
+            not.addWireInput(netWires[net], 0);
+            invertedWires[net] = output(not, 0);
+        }
+        return invertedWires[net];
+    }
+
+    private Wire output(Component component, int o) {
+        Wire wire = new Wire();
+        wire.addConnection(component, 0);
+        wire.setId(o, 0);
+        component.addWireOutput(wire, o);
+        optimized.addWire(wire);
+        return wire;
+    }
+
+    /**
+     * Gets the simplified sheet built by the last optimization
+     */
+    public Sheet getOptimizedSheet() {
+        return optimized;
+    }
+
+    /**
+     * Computes the state of a wire of the original sheet from the state of the simplified sheet
+     * @param wire a wire of the original sheet
+     * @return its state, or null if it was removed with dead logic or isn't part of the sheet
+     */
+    public Boolean getState(Wire wire) {
+        int net = netlist.getNet(wire);
+        if (net == -1) {
+            return null;
+        }
+        int literal = literals[net];
+        if (literal < 0) {
+            return literal == TRUE;
+        }
+        Wire source = netWires[literal >> 1];
+        Boolean state = source == null ? null : source.getState();
+        if (state == null || (literal & 1) == 0) {
+            return state;
+        }
+        return !state;
+    }
+
+    /**
+     * Copies the state of the simplified sheet into every wire of the original sheet, after its simulation
+     */
+    public void copyStates() {
+        for (Wire wire : netlist.getNetWires()) {
+            wire.setState(getState(wire));
+        }
+    }
+
+    /**
+     * Gets the number of gates of the simplified sheet, inverters and constants included
+     */
+    public int getGateCount() {
+        return optimized.getComponents().size();
+    }
+
+    /**
+     * Gets the ratio of the gates of the original sheet which were removed
+     */
+    public double getRemovedRatio() {
+        int gates = netlist.getGateCount();
+        return gates == 0 ? 0 : 1 - (double) getGateCount() / gates;
+    }
+}
@@ -0,0 +1,271 @@
+package com.Physics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Evaluates the gates of a netlist on several cores.
+ * The gates are first split into weakly connected regions, which share no driven net and run as independent tasks
+ * without any synchronization. The small regions are bundled together, and the regions too big for a single task
+ * are evaluated level by level : each wide level is split into chunks run by the pool, the join of the chunks being
+ * the barrier before the next level. Below MIN_GATES gates, or on a single core, the evaluation stays sequential.
+ */
+public class ParallelEvaluator {
+
+    /**
+     * The number of gates below which the synchronization would cost more than it saves
+     */
+    public static final int MIN_GATES = 1 << 14;
+    /**
+     * The smallest number of gates evaluated by a task
+     */
+    public static final int CHUNK_GATES = 1 << 11;
+
+    private final Netlist netlist;
+    private final ForkJoinPool pool;
+    private final boolean active;
+
+    /**
+     * The gates of the bundles of small regions : bundle b is bundleGates[bundleStart[b]] .. bundleGates[bundleStart[b + 1] - 1],
+     * each region being in level order
+     */
+    private int[] bundleStart;
+    private int[] bundleGates;
+    /**
+     * The gates of each big region in level order, with the bounds of its levels
+     */
+    private int[][] regionGates;
+    private int[][] regionLevels;
+
+    /**
+     * Prepares the evaluation of a netlist on the common pool
+     * @param netlist the compiled sheet
+     */
+    public ParallelEvaluator(Netlist netlist) {
+        this(netlist, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Prepares the evaluation of a netlist, partitioning it if it is big enough
+     * @param netlist the compiled sheet
+     * @param pool the pool running the tasks
+     */
+    public ParallelEvaluator(Netlist netlist, ForkJoinPool pool) {
+        this.netlist = netlist;
+        this.pool = pool;
+        active = netlist.getGateCount() >= MIN_GATES && pool.getParallelism() > 1;
+        if (active) {
+            partition();
+        }
+    }
+
+    /**
+     * Whether the evaluation is parallel, false when the netlist is too small
+     */
+    public boolean isActive() {
+        return active;
+    }
+
+    public int getBundleCount() {
+        return active ? bundleStart.length - 1 : 0;
+    }
+
+    public int getRegionCount() {
+        return active ? regionGates.length : 0;
+    }
+
+    /**
+     * Splits the gates into weakly connected regions, then groups the small regions into bundles
+     */
+    private void partition() {
+        int gates = netlist.getGateCount();
+        int[] faninStart = netlist.getFaninStart();
+        int[] faninNets = netlist.getFaninNets();
+        int[] netDrivers = netlist.getNetDrivers();
+
+        // Union-find : une porte est reliée aux portes qui pilotent ses entrées
+        int[] parent = new int[gates];
+        for (int g = 0; g < gates; g++) {
+            parent[g] = g;
+        }
+        for (int g = 0; g < gates; g++) {
+            for (int f = faninStart[g]; f < faninStart[g + 1]; f++) {
+                int net = faninNets[f];
+                if (net >= 0 && netDrivers[net] != -1) {
+                    int a = find(parent, g);
+                    int b = find(parent, netDrivers[net]);
+                    if (a != b) {
+                        parent[Math.max(a, b)] = Math.min(a, b);
+                    }
+                }
+            }
+        }
+
+        // Les régions sont numérotées dans l'ordre de leur première porte, et leurs portes restent dans l'ordre des niveaux
+        int[] region = new int[gates];
+        int[] regionSize = new int[gates + 1];
+        int regions = 0;
+        for (int g = 0; g < gates; g++) {
+            int root = find(parent, g);
+            region[g] = root == g ? regions++ : region[root];
+            regionSize[region[g] + 1]++;
+        }
+        for (int r = 0; r < regions; r++) {
+            regionSize[r + 1] += regionSize[r];
+        }
+        int[] ordered = new int[gates];
+        int[] fill = new int[regions];
+        System.arraycopy(regionSize, 0, fill, 0, regions);
+        for (int g = 0; g < gates; g++) {
+            ordered[fill[region[g]]++] = g;
+        }
+
+        int target = Math.max(CHUNK_GATES, gates / (pool.getParallelism() * 4));
+        List<int[]> big = new ArrayList<>();
+        int[] bundles = new int[regions + 1];
+        int bundleCount = 0;
+        int[] small = new int[gates];
+        int smallCount = 0;
+        int pending = 0;
+        for (int r = 0; r < regions; r++) {
+            int size = regionSize[r + 1] - regionSize[r];
+            if (size > 2 * target) {
+                int[] regionGates = new int[size];
+                System.arraycopy(ordered, regionSize[r], regionGates, 0, size);
+                big.add(regionGates);
+                continue;
+            }
+            System.arraycopy(ordered, regionSize[r], small, smallCount, size);
+            smallCount += size;
+            pending += size;
+            if (pending >= target) {
+                bundles[++bundleCount] = smallCount;
+                pending = 0;
+            }
+        }
+        if (pending > 0) {
+            bundles[++bundleCount] = smallCount;
+        }
+        bundleStart = new int[bundleCount + 1];
+        System.arraycopy(bundles, 0, bundleStart, 0, bundleCount + 1);
+        bundleGates = new int[smallCount];
+        System.arraycopy(small, 0, bundleGates, 0, smallCount);
+
+        int[] gateLevels = netlist.getGateLevels();
+        regionGates = big.toArray(new int[0][]);
+        regionLevels = new int[regionGates.length][];
+        for (int r = 0; r < regionGates.length; r++) {
+            int[] members = regionGates[r];
+            int[] bounds = new int[netlist.getLevelCount() + 1];
+            int count = 0;
+            for (int k = 0; k < members.length; k++) {
+                if (k == 0 || gateLevels[members[k]] != gateLevels[members[k - 1]]) {
+                    bounds[count++] = k;
+                }
+            }
+            bounds[count++] = members.length;
+            int[] levels = new int[count];
+            System.arraycopy(bounds, 0, levels, 0, count);
+            regionLevels[r] = levels;
+        }
+    }
+
+    private static int find(int[] parent, int g) {
+        while (parent[g] != g) {
+            parent[g] = parent[parent[g]];
+            g = parent[g];
+        }
+        return g;
+    }
+
+    /**
+     * Evaluates every gate once, like Netlist.evaluate
+     * @param values the state of each net, the input nets must be set
+     */
+    public void evaluate(boolean[] values) {
+        if (!active) {
+            netlist.evaluate(values);
+            return;
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                List<RecursiveAction> tasks = new ArrayList<>();
+                for (int b = 0; b + 1 < bundleStart.length; b++) {
+                    tasks.add(new Range(values, bundleGates, bundleStart[b], bundleStart[b + 1]));
+                }
+                for (int r = 0; r < regionGates.length; r++) {
+                    tasks.add(new Region(values, r));
+                }
+                invokeAll(tasks);
+            }
+        });
+    }
+
+    /**
+     * Evaluates the gates gates[from] .. gates[to - 1] in order
+     */
+    private class Range extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final boolean[] values;
+        private final int[] gates;
+        private final int from;
+        private final int to;
+
+        Range(boolean[] values, int[] gates, int from, int to) {
+            this.values = values;
+            this.gates = gates;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            for (int k = from; k < to; k++) {
+                netlist.evaluateGate(gates[k], values);
+            }
+        }
+    }
+
+    /**
+     * Evaluates a big region level by level, the wide levels being split into chunks
+     */
+    private class Region extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final boolean[] values;
+        private final int region;
+
+        Region(boolean[] values, int region) {
+            this.values = values;
+            this.region = region;
+        }
+
+        @Override
+        protected void compute() {
+            int[] gates = regionGates[region];
+            int[] levels = regionLevels[region];
+            for (int l = 0; l + 1 < levels.length; l++) {
+                int from = levels[l];
+                int to = levels[l + 1];
+                if (to - from < 2 * CHUNK_GATES) {
+                    for (int k = from; k < to; k++) {
+                        netlist.evaluateGate(gates[k], values);
+                    }
+                    continue;
+                }
+                int chunks = Math.min(pool.getParallelism() * 2, (to - from) / CHUNK_GATES);
+                RecursiveAction[] tasks = new RecursiveAction[chunks];
+                for (int c = 0; c < chunks; c++) {
+                    tasks[c] = new Range(values, gates, from + (int) ((long) (to - from) * c / chunks),
+                            from + (int) ((long) (to - from) * (c + 1) / chunks));
+                }
+                // La jointure des morceaux sert de barrière avant le niveau suivant
+                invokeAll(tasks);
+            }
+        }
+    }
+}
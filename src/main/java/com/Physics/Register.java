@@ -0,0 +1,71 @@
+package com.Physics;
+
+/**
+ * The function of a register : a row of D flip-flops sharing the clock of the sheet, the output i holding the state
+ * its input i had on the last clock edge.
+ * A register isn't a gate of the netlist : its outputs are read by the gates like the inputs of the sheet, so that
+ * a feedback loop going through a register is not a combinational loop. As a combinational function, it gives the
+ * state each output will take on the next edge, which is its input.
+ */
+public class Register implements LogicFunction {
+
+    private final int width;
+
+    /**
+     * Creates a register
+     * @param width the number of flip-flops
+     */
+    public Register(int width) {
+        if (width < 1) {
+            throw new IllegalArgumentException("A register must have at least one flip-flop");
+        }
+        this.width = width;
+    }
+
+    /**
+     * Creates a single D flip-flop
+     */
+    public static Register flipFlop() {
+        return new Register(1);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getInputs() {
+        return width;
+    }
+
+    @Override
+    public int getOutputs() {
+        return width;
+    }
+
+    @Override
+    public boolean get(int row, int output) {
+        return (row >>> (width - 1 - output) & 1) != 0;
+    }
+
+    @Override
+    public long evaluate(long[] inputs, int output, long[] scratch) {
+        return inputs[output];
+    }
+
+    @Override
+    public int getScratchSize() {
+        return 0;
+    }
+
+    @Override
+    public TruthTable toTruthTable() {
+        Boolean[][] rows = new Boolean[1 << width][width];
+        for (int row = 0; row < rows.length; row++) {
+            for (int o = 0; o < width; o++) {
+                rows[row][o] = get(row, o);
+            }
+        }
+        return TruthTable.fromRows(rows, width);
+    }
+}
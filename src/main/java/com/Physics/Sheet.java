@@ -9,11 +9,57 @@ public class Sheet {
     private List<Wire> inputs;
     private List<Wire> outputs;
 
+    /**
+     * The state of every wire of the sheet, the wire i being stateWires[i] (null once removed)
+     */
+    private final StatePlanes states;
+    private final List<Wire> stateWires;
+
+    /**
+     * The compiled form of the sheet, null when the topology changed since the last compilation
+     */
+    private Netlist netlist;
+    /**
+     * The state of each net of the netlist, as computed by the last refresh
+     */
+    private boolean[] values;
+    /**
+     * Whether every wire holds the result of the last refresh, which allows incremental propagation
+     */
+    private boolean settled;
+    /**
+     * Whether values must be read again from the wires, after a restore
+     */
+    private boolean stale;
+    /**
+     * The number of topology changes, a snapshot remembers it to know if it can still be propagated from
+     */
+    private long version;
+    /**
+     * Whether the refresh may use several cores, the evaluator stays sequential on small netlists anyway
+     */
+    private boolean parallel = true;
+    private ParallelEvaluator evaluator;
+    /**
+     * Whether the transitions of the nets are counted, and their counters for the current netlist
+     */
+    private boolean toggleCounting;
+    private ToggleCounter toggles;
+    /**
+     * The event queue of propagate, a linked list of gates per level, sized with the netlist and left empty between
+     * two propagations
+     */
+    private int[] levelHeads;
+    private int[] nextScheduled;
+    private boolean[] scheduled;
+
     public Sheet() {
         wires = new ArrayList<>();
         components = new ArrayList<>();
         inputs = new ArrayList<>();
         outputs = new ArrayList<>();
+        states = new StatePlanes();
+        stateWires = new ArrayList<>();
     }
 
     public List<Component> getComponents() {
@@ -21,7 +67,15 @@ public class Sheet {
     }
 
     public void addComponent(Component component) {
+        component.sheet = this;
         components.add(component);
+        invalidate();
+    }
+
+    public void removeComponent(Component component) {
+        components.remove(component);
+        component.sheet = null;
+        invalidate();
     }
 
     public List<Wire> getWires() {
@@ -30,10 +84,25 @@ public class Sheet {
 
     public void addWire(Wire wire) {
         wires.add(wire);
+        attach(wire);
+        invalidate();
+    }
+
+    public void removeWire(Wire wire) {
+        wires.remove(wire);
+        inputs.remove(wire);
+        outputs.remove(wire);
+        if (wire.getPlanes() == states) {
+            stateWires.set(wire.getIndex(), null);
+            wire.detach();
+        }
+        invalidate();
     }
 
     public void addWireInput(Wire wire) {
         inputs.add(wire);
+        attach(wire);
+        invalidate();
     }
 
     public List<Wire> getWireInputs() {
@@ -42,25 +111,393 @@ public class Sheet {
 
     public void addOutput(Wire wire) {
         outputs.add(wire);
+        attach(wire);
+        invalidate();
+    }
+
+    /**
+     * Moves the state of a wire into the planes of the sheet, if it isn't already there
+     */
+    private void attach(Wire wire) {
+        if (wire.getPlanes() != states) {
+            stateWires.add(wire);
+            wire.attach(states, states.allocate());
+        }
+    }
+
+    /**
+     * Gets the planes holding the state of every wire of the sheet, indexed by Wire.getIndex
+     */
+    public StatePlanes getStates() {
+        return states;
+    }
+
+    /**
+     * Forgets the state of every wire but the sheet inputs, which keep the state set by the user
+     */
+    public void reset() {
+        Boolean[] inputStates = new Boolean[inputs.size()];
+        for (int i = 0; i < inputStates.length; i++) {
+            inputStates[i] = inputs.get(i).getState();
+        }
+        states.reset();
+        for (int i = 0; i < inputStates.length; i++) {
+            inputs.get(i).setState(inputStates[i]);
+        }
+        settled = false;
+    }
+
+    /**
+     * Copies the state of every wire in O(1), the planes being copied on write
+     * @return the copy, which can be restored or compared later
+     */
+    public StatePlanes snapshot() {
+        StatePlanes snapshot = states.copy();
+        snapshot.owner = this;
+        snapshot.stamp = settled ? version : -1;
+        return snapshot;
+    }
+
+    /**
+     * Gives back to every wire its state at the time of a snapshot, the wires added since then becoming unknown.
+     * Nothing is simulated : if the sheet was settled when the snapshot was taken and its topology didn't change,
+     * the next propagate starts from the restored states.
+     * @param snapshot a snapshot of this sheet
+     * @return the wires whose state changed, to repaint
+     * @throws IllegalArgumentException if the snapshot was taken on another sheet
+     */
+    public List<Wire> restore(StatePlanes snapshot) {
+        if (snapshot.owner != this) {
+            throw new IllegalArgumentException("The snapshot was taken on another sheet");
+        }
+        List<Wire> changed = getChangedWires(snapshot);
+        states.restore(snapshot);
+        settled = netlist != null && snapshot.stamp == version;
+        stale = true;
+        return changed;
+    }
+
+    /**
+     * Writes the states computed on the netlist of this sheet by another engine, like a simulation running on
+     * another thread. The inputs of the sheet keep the state set by the user, and nothing is simulated.
+     * @param netlist the netlist the states were computed on
+     * @param values the state of each net, in the bit 0 of its word
+     * @return the wires whose state changed, to repaint, none if the topology changed since the netlist was compiled
+     */
+    public List<Wire> load(Netlist netlist, long[] values) {
+        List<Wire> changed = new ArrayList<>();
+        if (netlist != this.netlist) {
+            return changed;
+        }
+        boolean[] inputNets = new boolean[values.length];
+        for (int net : netlist.getInputNets()) {
+            inputNets[net] = true;
+        }
+        int[] netWireStart = netlist.getNetWireStart();
+        Wire[] netWires = netlist.getNetWires();
+        for (int n = 0; n < values.length; n++) {
+            if (inputNets[n]) {
+                this.values[n] = netWires[netWireStart[n]].getState() == Boolean.TRUE;
+                continue;
+            }
+            Boolean state = (values[n] & 1L) != 0;
+            this.values[n] = state;
+            for (int w = netWireStart[n]; w < netWireStart[n + 1]; w++) {
+                if (!state.equals(netWires[w].getState())) {
+                    netWires[w].setState(state);
+                    changed.add(netWires[w]);
+                }
+            }
+        }
+        if (toggles != null) {
+            // Seuls les états publiés sont comptés, les transitions entre deux images sont perdues
+            toggles.sample(this.values);
+        }
+        settled = false;
+        return changed;
+    }
+
+    /**
+     * Gets the wires whose state differs from a snapshot
+     * @param snapshot a snapshot of this sheet
+     * @return the wires of the sheet whose state changed since the snapshot
+     */
+    public List<Wire> getChangedWires(StatePlanes snapshot) {
+        long[] diff = states.diff(snapshot);
+        List<Wire> changed = new ArrayList<>();
+        for (int w = 0; w < diff.length; w++) {
+            for (long bits = diff[w]; bits != 0; bits &= bits - 1) {
+                int index = w << 6 | Long.numberOfTrailingZeros(bits);
+                if (index < stateWires.size() && stateWires.get(index) != null) {
+                    changed.add(stateWires.get(index));
+                }
+            }
+        }
+        return changed;
+    }
+
+    public List<Wire> getOutputs() {
+        return outputs;
+    }
+
+    /**
+     * Marks the topology of the sheet as changed, the netlist will be rebuilt on the next refresh
+     */
+    public void invalidate() {
+        version++;
+        netlist = null;
+        values = null;
+        evaluator = null;
+        toggles = null;
+        levelHeads = null;
+        nextScheduled = null;
+        scheduled = null;
+        settled = false;
+    }
+
+    /**
+     * Gets the number of topology changes, which only grows
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the compiled form of the sheet, compiling it if the topology changed. Every wire of the netlist joins the
+     * planes of the sheet, even if it was only connected to a component, so that a snapshot holds all of them.
+     * @return the netlist of the sheet
+     */
+    public Netlist getNetlist() {
+        if (netlist == null) {
+            netlist = new Netlist(this);
+            // Un fil lu par un composant sans avoir été ajouté à la feuille doit aussi être dans les plans
+            for (Wire wire : netlist.getNetWires()) {
+                attach(wire);
+            }
+            values = new boolean[netlist.getNetCount()];
+            levelHeads = new int[netlist.getLevelCount()];
+            Arrays.fill(levelHeads, -1);
+            nextScheduled = new int[netlist.getGateCount()];
+            scheduled = new boolean[netlist.getGateCount()];
+            if (toggleCounting) {
+                toggles = new ToggleCounter(netlist);
+            }
+        }
+        return netlist;
     }
 
+    /**
+     * Enables the counting of the transitions of every net by refresh and propagate. The counters start again from 0
+     * whenever the topology of the sheet changes.
+     * @param counting false to stop counting and forget the counters
+     */
+    public void setToggleCounting(boolean counting) {
+        toggleCounting = counting;
+        toggles = null;
+        if (counting && netlist != null) {
+            toggles = new ToggleCounter(netlist);
+            if (settled && !stale) {
+                toggles.sample(values);
+            }
+        }
+    }
+
+    public boolean isToggleCounting() {
+        return toggleCounting;
+    }
+
+    /**
+     * Gets the transitions counted on the current netlist
+     * @return the counters, null if the counting is disabled or the sheet wasn't simulated since its last change
+     */
+    public ToggleCounter getToggleCounter() {
+        return toggles;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * Enables the parallel refresh, which only splits the netlist when it has at least ParallelEvaluator.MIN_GATES gates
+     * @param parallel false to always refresh on the calling thread
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Gets the components sorted by logic level, every component comes after the components driving its inputs
+     * @return the levelized order of the components
+     */
+    public List<Component> getOrder() {
+        return Arrays.asList(getNetlist().getComponents());
+    }
+
+    /**
+     * Computes the state of every wire from the state of the sheet inputs.
+     * Each gate of the netlist is evaluated once, in level order, so a refresh costs O(components + wires).
+     * Large netlists are evaluated on several cores when the parallel mode is enabled.
+     */
     public void refresh() {
-        boolean finish = true;
-
-        do {
-            System.out.println("hey");
-            List<Wire> nullWires = new ArrayList<>();
-            finish = false;
-            for (Wire wire : wires) {
-                if (wire.isNull()) {
-                    finish = true;
-                    nullWires.add(wire);
-                    System.out.println("addwire");
+        Netlist netlist = getNetlist();
+        int[] netDrivers = netlist.getNetDrivers();
+        int[] netWireStart = netlist.getNetWireStart();
+        Wire[] netWires = netlist.getNetWires();
+        for (int n = 0; n < values.length; n++) {
+            if (netDrivers[n] == -1) {
+                values[n] = netWires[netWireStart[n]].getState() == Boolean.TRUE;
+            }
+        }
+        if (parallel) {
+            if (evaluator == null) {
+                evaluator = new ParallelEvaluator(netlist);
+            }
+            evaluator.evaluate(values);
+        } else {
+            netlist.evaluate(values);
+        }
+        if (toggles != null) {
+            toggles.sample(values);
+        }
+        for (int n = 0; n < values.length; n++) {
+            if (netDrivers[n] != -1) {
+                for (int w = netWireStart[n]; w < netWireStart[n + 1]; w++) {
+                    netWires[w].setState(values[n]);
                 }
             }
-            for (Wire wire : nullWires) {
-                wire.refresh();
+        }
+        settled = true;
+        stale = false;
+    }
+
+    /**
+     * Propagates the new state of some wires, usually the wires of a sheet input the user toggled.
+     * Only the gates in the fan-out of a changed net are evaluated, level by level, and the propagation
+     * stops wherever an output keeps its state. Falls back to a full refresh if the sheet was never settled.
+     * @param changedWires the wires whose state was just set
+     * @return the wires whose state changed because of the propagation
+     */
+    public List<Wire> propagate(Collection<Wire> changedWires) {
+        Netlist netlist = getNetlist();
+        if (!settled) {
+            refresh();
+            return new ArrayList<>(wires);
+        }
+
+        int[] gateOutputs = netlist.getGateOutputs();
+        int[] netWireStart = netlist.getNetWireStart();
+        Wire[] netWires = netlist.getNetWires();
+        if (stale) {
+            // Après une restauration, l'état des nets est relu sur les fils sans rien simuler
+            for (int n = 0; n < values.length; n++) {
+                if (netWireStart[n] < netWireStart[n + 1]) {
+                    values[n] = netWires[netWireStart[n]].getState() == Boolean.TRUE;
+                }
+            }
+            if (toggles != null) {
+                // Une restauration n'est pas une transition
+                toggles.restart();
+                toggles.sample(values);
+            }
+            stale = false;
+        }
+
+        // File d'événements : une liste chaînée de portes par niveau, vidée au fur et à mesure
+        int[] levelHeads = this.levelHeads;
+        int[] next = nextScheduled;
+        boolean[] scheduled = this.scheduled;
+        for (Wire wire : changedWires) {
+            int net = netlist.getNet(wire);
+            if (net != -1) {
+                values[net] = wire.getState() == Boolean.TRUE;
+                if (toggles != null) {
+                    toggles.record(net, values[net]);
+                }
+                schedule(netlist, net, levelHeads, next, scheduled);
+            }
+        }
+
+        List<Wire> changed = new ArrayList<>();
+        for (int level = 0; level < levelHeads.length; level++) {
+            for (int g = levelHeads[level]; g != -1; g = next[g]) {
+                scheduled[g] = false;
+                if (!netlist.evaluateGate(g, values)) {
+                    continue;
+                }
+                for (int net = gateOutputs[g]; net < gateOutputs[g + 1]; net++) {
+                    if (netWireStart[net] == netWireStart[net + 1]) {
+                        // Une sortie sans fil n'est lue par aucune porte, record ne compte que si elle a changé
+                        if (toggles != null) {
+                            toggles.record(net, values[net]);
+                        }
+                        continue;
+                    }
+                    if (Boolean.valueOf(values[net]).equals(netWires[netWireStart[net]].getState())) {
+                        continue;
+                    }
+                    if (toggles != null) {
+                        toggles.record(net, values[net]);
+                    }
+                    for (int w = netWireStart[net]; w < netWireStart[net + 1]; w++) {
+                        netWires[w].setState(values[net]);
+                        changed.add(netWires[w]);
+                    }
+                    schedule(netlist, net, levelHeads, next, scheduled);
+                }
+            }
+            levelHeads[level] = -1;
+        }
+        return changed;
+    }
+
+    /**
+     * Simulates a clock edge : every flip-flop of the sheet takes at once the state its input has, then the new
+     * state of the registers is propagated
+     * @return the wires whose state changed, to repaint
+     */
+    public List<Wire> clock() {
+        List<Wire> changed = new ArrayList<>(propagate(Collections.emptyList()));
+        int[] inputNets = netlist.getRegisterInputNets();
+        int[] outputNets = netlist.getRegisterOutputNets();
+        int[] netWireStart = netlist.getNetWireStart();
+        Wire[] netWires = netlist.getNetWires();
+        // Tous les états suivants sont lus avant d'écrire la première bascule
+        boolean[] next = new boolean[inputNets.length];
+        for (int b = 0; b < next.length; b++) {
+            next[b] = inputNets[b] >= 0 && values[inputNets[b]];
+        }
+        List<Wire> edge = new ArrayList<>();
+        for (int b = 0; b < next.length; b++) {
+            if (outputNets[b] < 0) {
+                continue;
+            }
+            for (int w = netWireStart[outputNets[b]]; w < netWireStart[outputNets[b] + 1]; w++) {
+                if (!Boolean.valueOf(next[b]).equals(netWires[w].getState())) {
+                    netWires[w].setState(next[b]);
+                    edge.add(netWires[w]);
+                }
+            }
+        }
+        changed.addAll(edge);
+        changed.addAll(propagate(edge));
+        return changed;
+    }
+
+    /**
+     * Adds the gates reading the given net to the event queue, if they are not already in it
+     */
+    private static void schedule(Netlist netlist, int net, int[] levelHeads, int[] next, boolean[] scheduled) {
+        int[] fanoutStart = netlist.getFanoutStart();
+        int[] fanoutGates = netlist.getFanoutGates();
+        int[] gateLevels = netlist.getGateLevels();
+        for (int f = fanoutStart[net]; f < fanoutStart[net + 1]; f++) {
+            int gate = fanoutGates[f];
+            if (!scheduled[gate]) {
+                scheduled[gate] = true;
+                next[gate] = levelHeads[gateLevels[gate]];
+                levelHeads[gateLevels[gate]] = gate;
             }
-        } while(finish); //On actualise tant qu'il reste des wires sans état (cad null)
+        }
     }
 }
@@ -0,0 +1,334 @@
+package com.Physics;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs the simulation of a sheet on its own thread, clocked as fast as possible or at a given speed, so that the user
+ * interface is never blocked by the simulation and the simulation is never limited by the frame rate.
+ * The thread owns a CycleSimulator of the netlist : the other threads never touch its states, they queue the changes
+ * of the inputs and take the last published state. A state is only copied once the previous one was taken or has
+ * become a few milliseconds old, which costs about one copy per frame of the interface whatever the speed, and every
+ * published state was evaluated after the last clock edge, so that all its nets are consistent with each other.
+ * A sheet without register is never clocked : the thread only wakes up to evaluate the changes of its inputs.
+ */
+public class SimulationService {
+
+    /**
+     * The states of the nets at a given cycle, never modified once published
+     */
+    public static final class State {
+        private final Netlist netlist;
+        private final long cycle;
+        private final long[] values;
+        private final double cyclesPerSecond;
+
+        State(Netlist netlist, long cycle, long[] values, double cyclesPerSecond) {
+            this.netlist = netlist;
+            this.cycle = cycle;
+            this.values = values;
+            this.cyclesPerSecond = cyclesPerSecond;
+        }
+
+        /**
+         * Gets the netlist the states were computed on, which may be older than the netlist of the sheet
+         */
+        public Netlist getNetlist() {
+            return netlist;
+        }
+
+        public long getCycle() {
+            return cycle;
+        }
+
+        /**
+         * Gets the state of every net, indexed like the netlist, in the bit 0 of each word
+         * @return the array of the states, which must not be modified
+         */
+        public long[] getValues() {
+            return values;
+        }
+
+        /**
+         * Gets the speed of the simulation since the previous published state
+         */
+        public double getCyclesPerSecond() {
+            return cyclesPerSecond;
+        }
+    }
+
+    /**
+     * A netlist to simulate, with the state of its nets without driver read on the wires
+     */
+    private static final class Load {
+        final Netlist netlist;
+        final boolean[] sources;
+
+        Load(Netlist netlist, boolean[] sources) {
+            this.netlist = netlist;
+            this.sources = sources;
+        }
+    }
+
+    /**
+     * The new state of an input net, ignored if the netlist was replaced since
+     */
+    private static final class Change {
+        final Netlist netlist;
+        final int net;
+        final boolean state;
+
+        Change(Netlist netlist, int net, boolean state) {
+            this.netlist = netlist;
+            this.net = net;
+            this.state = state;
+        }
+    }
+
+    /**
+     * Above this delay behind the requested speed, the paced simulation gives up catching up
+     */
+    private static final long MAX_LATE_NANOS = 100_000_000L;
+    /**
+     * The age of the published state above which it is replaced even though it wasn't taken, checked every
+     * AGE_CHECK_CYCLES cycles when running as fast as possible
+     */
+    private static final long MAX_STATE_AGE_NANOS = 5_000_000L;
+    private static final int AGE_CHECK_CYCLES = 1 << 10;
+
+    private final Thread thread;
+    private final AtomicReference<Load> pendingLoad = new AtomicReference<>();
+    private final ConcurrentLinkedQueue<Change> changes = new ConcurrentLinkedQueue<>();
+    private final AtomicReference<State> latest = new AtomicReference<>();
+    private final AtomicLong steps = new AtomicLong();
+
+    /**
+     * The last netlist given to load, used to find the net of a wire
+     */
+    private volatile Netlist netlist;
+    private volatile boolean running;
+    private volatile boolean stopped;
+    /**
+     * The requested number of cycles per second, 0 for as fast as possible
+     */
+    private volatile double speed;
+
+    /**
+     * Starts the thread of the simulation of a sheet, paused
+     * @param sheet the sheet to simulate
+     * @throws IllegalStateException if the sheet contains a combinational loop which doesn't go through a register
+     */
+    public SimulationService(Sheet sheet) {
+        load(sheet);
+        thread = new Thread(this::loop, "simulation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Simulates the current topology of the sheet, to call after it was edited. The inputs and the registers start
+     * from the state of their wires, the cycle count starts again from 0.
+     * Must be called on the thread which edits the sheet.
+     * @param sheet the sheet to simulate
+     * @throws IllegalStateException if the sheet contains a combinational loop which doesn't go through a register
+     */
+    public void load(Sheet sheet) {
+        Netlist netlist = sheet.getNetlist();
+        int[] netDrivers = netlist.getNetDrivers();
+        int[] netWireStart = netlist.getNetWireStart();
+        Wire[] netWires = netlist.getNetWires();
+        boolean[] sources = new boolean[netlist.getNetCount()];
+        for (int n = 0; n < sources.length; n++) {
+            if (netDrivers[n] == -1 && netWireStart[n] < netWireStart[n + 1]) {
+                sources[n] = netWires[netWireStart[n]].getState() == Boolean.TRUE;
+            }
+        }
+        this.netlist = netlist;
+        pendingLoad.set(new Load(netlist, sources));
+        wake();
+    }
+
+    /**
+     * Gets the netlist of the last load
+     */
+    public Netlist getNetlist() {
+        return netlist;
+    }
+
+    /**
+     * Queues the new state of an input wire, applied before the next cycle
+     * @param wire a wire of an input of the sheet, or of a net without driver
+     * @param state the new state of the wire
+     */
+    public void setInput(Wire wire, boolean state) {
+        Netlist netlist = this.netlist;
+        int net = netlist.getNet(wire);
+        if (net != -1 && netlist.getNetDrivers()[net] == -1) {
+            changes.add(new Change(netlist, net, state));
+            wake();
+        }
+    }
+
+    /**
+     * Clocks the sheet continuously
+     */
+    public void run() {
+        running = true;
+        wake();
+    }
+
+    public void pause() {
+        running = false;
+        wake();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Simulates a single clock edge, when paused
+     */
+    public void step() {
+        steps.incrementAndGet();
+        wake();
+    }
+
+    /**
+     * Sets the speed of the continuous simulation
+     * @param cyclesPerSecond the number of clock edges per second, 0 for as fast as possible
+     */
+    public void setSpeed(double cyclesPerSecond) {
+        if (cyclesPerSecond < 0) {
+            throw new IllegalArgumentException("The speed of a simulation can't be negative");
+        }
+        speed = cyclesPerSecond;
+        wake();
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Takes the last published state, without waiting
+     * @return the state, or null if none was published since the last call
+     */
+    public State poll() {
+        return latest.getAndSet(null);
+    }
+
+    /**
+     * Stops the thread, the service can't be used afterwards
+     */
+    public void shutdown() {
+        stopped = true;
+        wake();
+    }
+
+    private void wake() {
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * The loop of the simulation thread
+     */
+    private void loop() {
+        CycleSimulator simulator = null;
+        // Sans bascule, un front d'horloge ne change rien
+        boolean clocked = false;
+        // Un état doit être publié même si le précédent n'a pas été pris
+        boolean dirty = false;
+        double pacedSpeed = 0;
+        long paceStart = 0;
+        long pacedCycles = 0;
+        long publishedCycle = 0;
+        long publishedTime = System.nanoTime();
+
+        while (!stopped) {
+            Load load = pendingLoad.getAndSet(null);
+            if (load != null) {
+                simulator = new CycleSimulator(load.netlist);
+                simulator.compile();
+                long[] values = simulator.getValues();
+                for (int n = 0; n < values.length; n++) {
+                    values[n] = load.sources[n] ? -1L : 0;
+                }
+                simulator.settle();
+                clocked = load.netlist.getFlipFlopCount() > 0;
+                publishedCycle = 0;
+                pacedSpeed = 0;
+                dirty = true;
+            }
+            if (simulator == null) {
+                LockSupport.park(this);
+                continue;
+            }
+            for (Change change = changes.poll(); change != null; change = changes.poll()) {
+                if (change.netlist == simulator.getNetlist()) {
+                    simulator.getValues()[change.net] = change.state ? -1L : 0;
+                    dirty = true;
+                }
+            }
+
+            boolean edge = false;
+            boolean step = false;
+            long wait = -1;
+            double speed = this.speed;
+            if (running && clocked) {
+                if (speed == 0) {
+                    edge = true;
+                } else {
+                    long now = System.nanoTime();
+                    if (speed != pacedSpeed || now - (paceStart + (long) (pacedCycles * 1e9 / speed)) > MAX_LATE_NANOS) {
+                        pacedSpeed = speed;
+                        paceStart = now;
+                        pacedCycles = 0;
+                    }
+                    long next = paceStart + (long) (pacedCycles * 1e9 / speed);
+                    if (now >= next) {
+                        edge = true;
+                        pacedCycles++;
+                    } else {
+                        wait = next - now;
+                    }
+                }
+            } else if (steps.get() > 0) {
+                steps.decrementAndGet();
+                edge = clocked;
+                step = true;
+            }
+
+            if (edge) {
+                simulator.cycle();
+            }
+            boolean publish = dirty || step;
+            if (edge && !publish) {
+                // L'état publié est remplacé dès qu'il a été pris, ou quand il devient trop vieux
+                publish = latest.get() == null
+                        || (speed != 0 || simulator.getCycles() % AGE_CHECK_CYCLES == 0)
+                        && System.nanoTime() - publishedTime > MAX_STATE_AGE_NANOS;
+            }
+            if (publish) {
+                simulator.settle();
+                long now = System.nanoTime();
+                long cycle = simulator.getCycles();
+                double cyclesPerSecond = now == publishedTime ? 0 : (cycle - publishedCycle) * 1e9 / (now - publishedTime);
+                latest.set(new State(simulator.getNetlist(), cycle, simulator.getValues().clone(), cyclesPerSecond));
+                publishedCycle = cycle;
+                publishedTime = now;
+                dirty = false;
+            } else if (!edge) {
+                if (wait > 0) {
+                    LockSupport.parkNanos(this, wait);
+                } else {
+                    LockSupport.park(this);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.Physics;
+
+import java.util.Arrays;
+
+/**
+ * The state of many wires packed in two bit planes : bit i of known tells whether the wire i has a state, and bit i
+ * of value holds that state. Resetting the states is an Arrays.fill, and the difference between two snapshots is a XOR.
+ * A copy shares the arrays of the planes it was made from (copy on write) : taking or restoring a snapshot is O(1),
+ * and the arrays are only duplicated by the first write to one of the planes sharing them.
+ */
+public class StatePlanes {
+
+    private long[] value;
+    private long[] known;
+    private int size;
+    /**
+     * Whether the arrays may be shared with other planes, which must then be copied before being written
+     */
+    private boolean shared;
+    /**
+     * Tag given by the owner of the planes to a snapshot, for example to remember in which state it was taken
+     */
+    long stamp = -1;
+    /**
+     * The owner of the planes a snapshot was copied from
+     */
+    Object owner;
+
+    public StatePlanes() {
+        this(64);
+    }
+
+    /**
+     * @param capacity the number of wires to reserve room for
+     */
+    public StatePlanes(int capacity) {
+        int words = Math.max(1, (capacity + 63) >>> 6);
+        value = new long[words];
+        known = new long[words];
+    }
+
+    /**
+     * Gets the number of allocated indexes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Reserves the index of a new wire, whose state is unknown
+     * @return the index
+     */
+    public int allocate() {
+        if (size == value.length << 6) {
+            // La copie agrandie n'est plus partagée
+            value = Arrays.copyOf(value, value.length << 1);
+            known = Arrays.copyOf(known, known.length << 1);
+            shared = false;
+        }
+        return size++;
+    }
+
+    /**
+     * Takes back the ownership of the arrays before a write, copying them if they are shared
+     */
+    private void own() {
+        if (shared) {
+            value = value.clone();
+            known = known.clone();
+            shared = false;
+        }
+    }
+
+    /**
+     * Gets the state of a wire
+     * @param index the index of the wire
+     * @return its state, or null if it is unknown
+     */
+    public Boolean get(int index) {
+        long bit = 1L << index;
+        if ((known[index >>> 6] & bit) == 0) {
+            return null;
+        }
+        return (value[index >>> 6] & bit) != 0;
+    }
+
+    /**
+     * Gets the state of a wire, an unknown state reading as false
+     */
+    public boolean getValue(int index) {
+        return (value[index >>> 6] & known[index >>> 6] & 1L << index) != 0;
+    }
+
+    public boolean isKnown(int index) {
+        return (known[index >>> 6] & 1L << index) != 0;
+    }
+
+    /**
+     * Sets the state of a wire
+     * @param index the index of the wire
+     * @param state its new state, null for unknown
+     */
+    public void set(int index, Boolean state) {
+        long bit = 1L << index;
+        if (state == null) {
+            own();
+            known[index >>> 6] &= ~bit;
+            value[index >>> 6] &= ~bit;
+        } else {
+            set(index, state.booleanValue());
+        }
+    }
+
+    /**
+     * Sets a known state
+     */
+    public void set(int index, boolean state) {
+        long bit = 1L << index;
+        own();
+        known[index >>> 6] |= bit;
+        if (state) {
+            value[index >>> 6] |= bit;
+        } else {
+            value[index >>> 6] &= ~bit;
+        }
+    }
+
+    /**
+     * Forgets the state of every wire
+     */
+    public void reset() {
+        if (shared) {
+            value = new long[value.length];
+            known = new long[known.length];
+            shared = false;
+        } else {
+            Arrays.fill(value, 0);
+            Arrays.fill(known, 0);
+        }
+    }
+
+    /**
+     * Copies the planes in O(1), both planes sharing their arrays until one of them is written
+     * @return an independent copy, of the same size
+     */
+    public StatePlanes copy() {
+        StatePlanes copy = new StatePlanes(0);
+        copy.value = value;
+        copy.known = known;
+        copy.size = size;
+        copy.shared = true;
+        shared = true;
+        return copy;
+    }
+
+    /**
+     * Overwrites the states with the ones of a copy, the indexes allocated since the copy becoming unknown : their
+     * bits were still cleared when the arrays of the copy stopped being written.
+     * The arrays of the copy are shared, unless the planes grew since the copy.
+     * @param snapshot a copy of these planes
+     */
+    public void restore(StatePlanes snapshot) {
+        if (snapshot.value.length >= value.length) {
+            value = snapshot.value;
+            known = snapshot.known;
+            shared = true;
+            snapshot.shared = true;
+        } else {
+            value = Arrays.copyOf(snapshot.value, value.length);
+            known = Arrays.copyOf(snapshot.known, known.length);
+            shared = false;
+        }
+    }
+
+    /**
+     * Compares the states with the ones of other planes
+     * @param other the other planes, for example an older copy
+     * @return a mask whose bit i is set when the state of the wire i differs, known against unknown included
+     */
+    public long[] diff(StatePlanes other) {
+        long[] diff = new long[Math.max(value.length, other.value.length)];
+        for (int w = 0; w < diff.length; w++) {
+            long value1 = w < value.length ? value[w] : 0;
+            long known1 = w < known.length ? known[w] : 0;
+            long value2 = w < other.value.length ? other.value[w] : 0;
+            long known2 = w < other.known.length ? other.known[w] : 0;
+            diff[w] = (known1 ^ known2) | ((value1 ^ value2) & known1 & known2);
+        }
+        return diff;
+    }
+
+    /**
+     * Gets the plane of the values, an unknown wire having its bit cleared
+     * @return the array itself, not copied, which may be shared with copies and must only be read
+     */
+    public long[] getValuePlane() {
+        return value;
+    }
+
+    /**
+     * Gets the plane telling which wires have a state
+     * @return the array itself, not copied, which may be shared with copies and must only be read
+     */
+    public long[] getKnownPlane() {
+        return known;
+    }
+}
@@ -0,0 +1,231 @@
+package com.Physics;
+
+import java.util.Arrays;
+
+/**
+ * Event-driven simulation of a sheet where each component takes its delay to propagate a change.
+ * The pending changes are kept in a timing wheel : a ring of buckets indexed by time modulo its size,
+ * larger than the greatest delay so that a change is never scheduled past the end of the ring.
+ * The buckets are primitive arrays growing by doubling, so that scheduling a change doesn't allocate anything.
+ * A pulse shorter than the delay of a gate goes through it (transport delay), which shows the glitches of the sheet.
+ */
+public class TimingSimulator {
+
+    private final Netlist netlist;
+
+    /**
+     * The current state of each net
+     */
+    private final boolean[] values;
+    /**
+     * The state of each net once all its pending changes are applied
+     */
+    private final boolean[] projected;
+
+    /**
+     * The pending changes of each bucket, a change being written net << 1 | state
+     */
+    private final int[][] buckets;
+    private final int[] bucketSizes;
+    private final int mask;
+    private int pending;
+
+    /**
+     * The gates to evaluate at the current time, each one being added once
+     */
+    private final int[] evaluations;
+    private final long[] evaluatedAt;
+
+    private long time;
+    private long lastChange;
+    private NetListener listener;
+
+    /**
+     * Prepares the timing simulation of a sheet, through its netlist
+     * @param sheet the sheet to simulate
+     */
+    public TimingSimulator(Sheet sheet) {
+        this(sheet.getNetlist());
+    }
+
+    /**
+     * Prepares the timing simulation of a netlist
+     * @param netlist the compiled sheet
+     */
+    public TimingSimulator(Netlist netlist) {
+        this.netlist = netlist;
+        values = new boolean[netlist.getNetCount()];
+        projected = new boolean[netlist.getNetCount()];
+        int size = Integer.highestOneBit(Math.max(1, netlist.getMaxDelay())) << 1;
+        mask = size - 1;
+        buckets = new int[size][16];
+        bucketSizes = new int[size];
+        evaluations = new int[netlist.getGateCount()];
+        evaluatedAt = new long[netlist.getGateCount()];
+        Arrays.fill(evaluatedAt, -1);
+        settle();
+    }
+
+    /**
+     * Sets the listener called for every change of a net
+     * @param listener the listener, null to remove it
+     */
+    public void setListener(NetListener listener) {
+        this.listener = listener;
+    }
+
+    public Netlist getNetlist() {
+        return netlist;
+    }
+
+    /**
+     * Gets the current simulation time
+     * @return the number of ticks since the start of the simulation
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Gets the time of the last change of a net
+     */
+    public long getLastChange() {
+        return lastChange;
+    }
+
+    /**
+     * Checks if some changes are still to be applied
+     */
+    public boolean isStable() {
+        return pending == 0;
+    }
+
+    /**
+     * Gets the current state of every net, indexed like the netlist
+     * @return the array of the states, not copied
+     */
+    public boolean[] getValues() {
+        return values;
+    }
+
+    /**
+     * Gets the current state of a wire
+     * @param wire the wire
+     * @return the state of its net
+     */
+    public boolean getValue(Wire wire) {
+        return values[netlist.getNet(wire)];
+    }
+
+    /**
+     * Drops the pending changes and puts every net in the state computed without delays from the current inputs
+     */
+    public void settle() {
+        Arrays.fill(bucketSizes, 0);
+        pending = 0;
+        netlist.evaluate(values);
+        System.arraycopy(values, 0, projected, 0, values.length);
+    }
+
+    /**
+     * Changes an input wire at the current time, a wire which isn't part of the sheet is ignored
+     * @param wire the input wire
+     * @param state the new state
+     */
+    public void setInput(Wire wire, boolean state) {
+        int net = netlist.getNet(wire);
+        if (net != -1) {
+            setInput(net, state);
+        }
+    }
+
+    /**
+     * Changes an input net at the current time
+     * @param net the net, as numbered by the netlist
+     * @param state the new state
+     */
+    public void setInput(int net, boolean state) {
+        if (projected[net] != state) {
+            projected[net] = state;
+            schedule(time, net, state);
+        }
+    }
+
+    /**
+     * Applies the changes of the current time, evaluates the gates reading the changed nets, then moves to the next tick
+     * @return the number of nets which changed
+     */
+    public int step() {
+        int bucket = (int) (time & mask);
+        int[] changes = buckets[bucket];
+        int size = bucketSizes[bucket];
+        bucketSizes[bucket] = 0;
+        pending -= size;
+
+        int[] fanoutStart = netlist.getFanoutStart();
+        int[] fanoutGates = netlist.getFanoutGates();
+        int changed = 0;
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            int net = changes[i] >>> 1;
+            boolean state = (changes[i] & 1) != 0;
+            if (values[net] == state) {
+                continue;
+            }
+            values[net] = state;
+            changed++;
+            if (listener != null) {
+                listener.netChanged(time, net, state);
+            }
+            for (int f = fanoutStart[net]; f < fanoutStart[net + 1]; f++) {
+                int g = fanoutGates[f];
+                if (evaluatedAt[g] != time) {
+                    evaluatedAt[g] = time;
+                    evaluations[count++] = g;
+                }
+            }
+        }
+        if (changed > 0) {
+            lastChange = time;
+        }
+
+        // Les sorties changent après le délai de la porte, à partir de l'état courant des entrées
+        int[] gateOutputs = netlist.getGateOutputs();
+        int[] gateDelays = netlist.getGateDelays();
+        for (int k = 0; k < count; k++) {
+            int g = evaluations[k];
+            for (int out = gateOutputs[g]; out < gateOutputs[g + 1]; out++) {
+                boolean state = netlist.evaluateOutput(g, out - gateOutputs[g], values);
+                if (projected[out] != state) {
+                    projected[out] = state;
+                    schedule(time + gateDelays[g], out, state);
+                }
+            }
+        }
+        time++;
+        return changed;
+    }
+
+    /**
+     * Steps until no change is pending or the time limit is reached
+     * @param maxTime the time at which the simulation stops even if the sheet is still changing, to stop oscillations
+     * @return the time of the last change
+     */
+    public long run(long maxTime) {
+        while (pending > 0 && time < maxTime) {
+            step();
+        }
+        return lastChange;
+    }
+
+    private void schedule(long at, int net, boolean state) {
+        int bucket = (int) (at & mask);
+        int size = bucketSizes[bucket];
+        if (size == buckets[bucket].length) {
+            buckets[bucket] = Arrays.copyOf(buckets[bucket], size << 1);
+        }
+        buckets[bucket][size] = net << 1 | (state ? 1 : 0);
+        bucketSizes[bucket] = size + 1;
+        pending++;
+    }
+}
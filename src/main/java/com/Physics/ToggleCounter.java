@@ -0,0 +1,195 @@
+package com.Physics;
+
+import java.util.Arrays;
+
+/**
+ * Counts the 0 to 1 and 1 to 0 transitions of every net of a netlist during a simulation, to find the logic which
+ * never toggles and is probably dead or redundant.
+ * The counters are primitive arrays indexed by net, updated without branch from the states of the nets : a single
+ * machine is sampled one state per net, 64 independent machines one word per net, and a sequence of 64 vectors one
+ * word per net, the bit k following the bit k - 1. An engine only samples when a counter was given to it, so that
+ * counting costs nothing when disabled. A counter is not thread safe : the parallel engines count on their own
+ * counters, merged at the end.
+ */
+public class ToggleCounter {
+
+    private final Netlist netlist;
+    private final long[] rises;
+    private final long[] falls;
+    /**
+     * The last sampled state of each net, the bit 63 being the last vector of a sequence
+     */
+    private final long[] last;
+    /**
+     * Whether a state was sampled since the creation or the last restart, the first sample having nothing to be
+     * compared with
+     */
+    private boolean started;
+
+    /**
+     * Creates the counters of a netlist, all at 0
+     * @param netlist the compiled sheet
+     */
+    public ToggleCounter(Netlist netlist) {
+        this.netlist = netlist;
+        rises = new long[netlist.getNetCount()];
+        falls = new long[netlist.getNetCount()];
+        last = new long[netlist.getNetCount()];
+    }
+
+    public Netlist getNetlist() {
+        return netlist;
+    }
+
+    /**
+     * Samples the state of every net of a single machine
+     * @param values the state of each net
+     */
+    public void sample(boolean[] values) {
+        long[] rises = this.rises;
+        long[] falls = this.falls;
+        long[] last = this.last;
+        long counted = started ? 1 : 0;
+        for (int n = 0; n < last.length; n++) {
+            long state = values[n] ? -1L : 0;
+            rises[n] += state & ~last[n] & counted;
+            falls[n] += ~state & last[n] & counted;
+            last[n] = state;
+        }
+        started = true;
+    }
+
+    /**
+     * Samples the new state of a single net of a single machine, the other nets keeping theirs. Nothing is counted
+     * before a first sample of all the nets.
+     * @param net the net
+     * @param value the state of the net
+     */
+    public void record(int net, boolean value) {
+        long state = value ? -1L : 0;
+        long counted = started ? 1 : 0;
+        rises[net] += state & ~last[net] & counted;
+        falls[net] += ~state & last[net] & counted;
+        last[net] = state;
+    }
+
+    /**
+     * Samples the state of every net of 64 independent machines, each one compared with its previous state
+     * @param values the states of each net, bit k for the machine k
+     * @param lanes the machines to count, bit k for the machine k
+     */
+    public void sampleLanes(long[] values, long lanes) {
+        long[] rises = this.rises;
+        long[] falls = this.falls;
+        long[] last = this.last;
+        long counted = started ? lanes : 0;
+        for (int n = 0; n < last.length; n++) {
+            long state = values[n];
+            rises[n] += Long.bitCount(state & ~last[n] & counted);
+            falls[n] += Long.bitCount(~state & last[n] & counted);
+            last[n] = state;
+        }
+        started = true;
+    }
+
+    /**
+     * Samples a sequence of vectors of a single machine, the bit k of each net following its bit k - 1, and its bit 0
+     * the last vector of the previous sequence
+     * @param values the states of each net, bit k for the vector k
+     * @param count the number of vectors, between 1 and 64
+     */
+    public void sampleSequence(long[] values, int count) {
+        long[] rises = this.rises;
+        long[] falls = this.falls;
+        long[] last = this.last;
+        long lanes = count == 64 ? -1L : (1L << count) - 1;
+        long counted = started ? lanes : lanes & ~1L;
+        int shift = 64 - count;
+        for (int n = 0; n < last.length; n++) {
+            long state = values[n];
+            long previous = state << 1 | last[n] >>> 63;
+            rises[n] += Long.bitCount(state & ~previous & counted);
+            falls[n] += Long.bitCount(~state & previous & counted);
+            last[n] = state << shift;
+        }
+        started = true;
+    }
+
+    /**
+     * Forgets the last sampled states, so that the next sample isn't compared with them, for example before a chunk of
+     * vectors which doesn't follow the previous one
+     */
+    public void restart() {
+        started = false;
+    }
+
+    /**
+     * Sets every counter back to 0
+     */
+    public void reset() {
+        Arrays.fill(rises, 0);
+        Arrays.fill(falls, 0);
+        started = false;
+    }
+
+    /**
+     * Adds the counters of another counter of the same netlist
+     * @param other the counter to add
+     * @throws IllegalArgumentException if the counters don't belong to the same netlist
+     */
+    public void merge(ToggleCounter other) {
+        if (other.netlist != netlist) {
+            throw new IllegalArgumentException("The counters don't belong to the same netlist");
+        }
+        for (int n = 0; n < rises.length; n++) {
+            rises[n] += other.rises[n];
+            falls[n] += other.falls[n];
+        }
+    }
+
+    public long getRises(int net) {
+        return rises[net];
+    }
+
+    public long getFalls(int net) {
+        return falls[net];
+    }
+
+    /**
+     * Gets the number of transitions of a net, in both directions
+     */
+    public long getToggles(int net) {
+        return rises[net] + falls[net];
+    }
+
+    /**
+     * Checks if a net went both from 0 to 1 and from 1 to 0
+     */
+    public boolean isToggled(int net) {
+        return rises[net] > 0 && falls[net] > 0;
+    }
+
+    /**
+     * Gets the greatest number of transitions of a net
+     */
+    public long getMaxToggles() {
+        long max = 0;
+        for (int n = 0; n < rises.length; n++) {
+            max = Math.max(max, rises[n] + falls[n]);
+        }
+        return max;
+    }
+
+    /**
+     * Gets the ratio of toggled nets, between 0 and 1
+     */
+    public double getCoverage() {
+        int toggled = 0;
+        for (int n = 0; n < rises.length; n++) {
+            if (isToggled(n)) {
+                toggled++;
+            }
+        }
+        return rises.length == 0 ? 1 : (double) toggled / rises.length;
+    }
+}
@@ -0,0 +1,225 @@
+package com.Physics;
+
+import java.util.Arrays;
+
+/**
+ * A bit-packed truth table : each output column is a bitmask over the rows, stored in a long[].
+ * The row of an input combination is built with shifts, the first input being the most significant bit.
+ */
+public class TruthTable implements LogicFunction {
+
+    /**
+     * The maximum number of inputs of a table, its rows are indexed by an int
+     */
+    public static final int MAX_INPUTS = 30;
+
+    private final int inputs;
+    private final int outputs;
+
+    /**
+     * The columns of the table, the value of row r for output o is the bit r & 63 of columns[o][r >>> 6]
+     */
+    private final long[][] columns;
+
+    private static final TruthTable NOT = parse("10", 1, 1);
+    private static final TruthTable AND = parse("0001", 2, 1);
+    private static final TruthTable OR = parse("0111", 2, 1);
+
+    /**
+     * Creates a table where every output is false
+     * @param inputs the number of inputs
+     * @param outputs the number of outputs
+     */
+    public TruthTable(int inputs, int outputs) {
+        if (inputs < 0 || inputs > MAX_INPUTS) {
+            throw new IllegalArgumentException("A truth table can't have " + inputs + " inputs");
+        }
+        this.inputs = inputs;
+        this.outputs = outputs;
+        columns = new long[outputs][(int) ((getRows() + 63) >>> 6)];
+    }
+
+    @Override
+    public int getInputs() {
+        return inputs;
+    }
+
+    @Override
+    public int getOutputs() {
+        return outputs;
+    }
+
+    /**
+     * Gets the number of rows of the table, 2^inputs
+     * @return the number of rows
+     */
+    public long getRows() {
+        return 1L << inputs;
+    }
+
+    @Override
+    public boolean get(int row, int output) {
+        return (columns[output][row >>> 6] >>> row & 1L) != 0;
+    }
+
+    public void set(int row, int output, boolean value) {
+        if (value) {
+            columns[output][row >>> 6] |= 1L << row;
+        } else {
+            columns[output][row >>> 6] &= ~(1L << row);
+        }
+    }
+
+    /**
+     * Gets the bitmask of an output column, the array is not copied
+     * @param output the index of the output
+     * @return the words of the column, row r being the bit r & 63 of the word r >>> 6
+     */
+    public long[] getColumn(int output) {
+        return columns[output];
+    }
+
+    /**
+     * Evaluates a column on 64 vectors at once with a tree of multiplexers :
+     * the rows are merged two by two on the last input, then on the input before, up to the first one.
+     */
+    @Override
+    public long evaluate(long[] inputs, int output, long[] scratch) {
+        long[] column = columns[output];
+        int count = this.inputs;
+        if (count == 0) {
+            return -(column[0] & 1L);
+        }
+        int half = 1 << (count - 1);
+        long select = inputs[count - 1];
+        for (int j = 0; j < half; j++) {
+            int row = j << 1;
+            long low = -(column[row >>> 6] >>> row & 1L);
+            long high = -(column[row >>> 6] >>> (row + 1) & 1L);
+            scratch[j] = (select & high) | (~select & low);
+        }
+        for (int i = count - 2; i >= 0; i--) {
+            half >>= 1;
+            select = inputs[i];
+            for (int j = 0; j < half; j++) {
+                scratch[j] = (select & scratch[(j << 1) + 1]) | (~select & scratch[j << 1]);
+            }
+        }
+        return scratch[0];
+    }
+
+    @Override
+    public int getScratchSize() {
+        return inputs == 0 ? 0 : 1 << (inputs - 1);
+    }
+
+    @Override
+    public TruthTable toTruthTable() {
+        return this;
+    }
+
+    /**
+     * Checks if this table is the one of the built-in not gate
+     */
+    public boolean isNot() {
+        return equals(NOT);
+    }
+
+    /**
+     * Checks if this table is the one of the built-in and gate
+     */
+    public boolean isAnd() {
+        return equals(AND);
+    }
+
+    /**
+     * Checks if this table is the one of the built-in or gate
+     */
+    public boolean isOr() {
+        return equals(OR);
+    }
+
+    public static TruthTable not() {
+        return parse("10", 1, 1);
+    }
+
+    public static TruthTable and() {
+        return parse("0001", 2, 1);
+    }
+
+    public static TruthTable or() {
+        return parse("0111", 2, 1);
+    }
+
+    /**
+     * Converts a table stored with one Boolean per cell
+     * @param table the rows of the table, each row holding one value per output
+     * @param inputs the number of inputs of the table
+     * @return the packed table
+     */
+    public static TruthTable fromRows(Boolean[][] table, int inputs) {
+        int outputs = table.length == 0 ? 0 : table[0].length;
+        TruthTable truthTable = new TruthTable(inputs, outputs);
+        for (int row = 0; row < table.length; row++) {
+            for (int output = 0; output < outputs; output++) {
+                truthTable.set(row, output, table[row][output]);
+            }
+        }
+        return truthTable;
+    }
+
+    /**
+     * Parses a table written row by row, with a '0' or a '1' for each output of each row
+     * @param table the text of the table
+     * @param inputs the number of inputs
+     * @param outputs the number of outputs
+     * @return the parsed table
+     * @throws NumberFormatException if the text doesn't match the size of the table
+     */
+    public static TruthTable parse(String table, int inputs, int outputs) {
+        TruthTable truthTable = new TruthTable(inputs, outputs);
+        if (table.length() != truthTable.getRows() * outputs) {
+            throw new NumberFormatException("Expected " + truthTable.getRows() * outputs + " cells, found " + table.length());
+        }
+        int i = 0;
+        for (int row = 0; row < truthTable.getRows(); row++) {
+            for (int output = 0; output < outputs; output++) {
+                char c = table.charAt(i++);
+                if (c == '1') {
+                    truthTable.set(row, output, true);
+                } else if (c != '0') {
+                    throw new NumberFormatException("Unexpected character in truth table : " + c);
+                }
+            }
+        }
+        return truthTable;
+    }
+
+    /**
+     * Writes the table row by row, with a '0' or a '1' for each output of each row
+     * @return the text of the table
+     */
+    @Override
+    public String toString() {
+        StringBuilder table = new StringBuilder((int) (getRows() * outputs));
+        for (int row = 0; row < getRows(); row++) {
+            for (int output = 0; output < outputs; output++) {
+                table.append(get(row, output) ? '1' : '0');
+            }
+        }
+        return table.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TruthTable)) return false;
+        TruthTable that = (TruthTable) o;
+        return inputs == that.inputs && outputs == that.outputs && Arrays.deepEquals(columns, that.columns);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * inputs + outputs) + Arrays.deepHashCode(columns);
+    }
+}
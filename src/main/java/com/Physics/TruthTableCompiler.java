@@ -0,0 +1,212 @@
+package com.Physics;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Compiles the truth table of a sheet by simulating every input combination.
+ * The rows are simulated 64 at a time with a {@link BitParallelSimulator}, and the chunks of rows are spread
+ * over the cores with fork/join.
+ */
+public class TruthTableCompiler {
+
+    /**
+     * The number of 64 rows words simulated by a single task
+     */
+    private static final int CHUNK_WORDS = 64;
+
+    /**
+     * The state of the 6 lowest bits of the row index for the 64 rows of a word
+     */
+    private static final long[] LOW_BITS = {
+            0xAAAAAAAAAAAAAAAAL, 0xCCCCCCCCCCCCCCCCL, 0xF0F0F0F0F0F0F0F0L,
+            0xFF00FF00FF00FF00L, 0xFFFF0000FFFF0000L, 0xFFFFFFFF00000000L
+    };
+
+    private final BitParallelSimulator simulator;
+    /**
+     * The wires of each sheet input, an input node can feed several wires
+     */
+    private final Wire[][] inputs;
+    private final Wire[] outputs;
+    /**
+     * The index of the input driving each input wire, for outputs wired directly to an input
+     */
+    private final Map<Wire, Integer> inputIndex;
+
+    private volatile boolean cancelled;
+    private final AtomicLong doneWords = new AtomicLong();
+    private final AtomicInteger reportedPercent = new AtomicInteger();
+    private DoubleConsumer progressListener;
+    private long totalWords;
+    /**
+     * The counters of the transitions between consecutive rows, null when they aren't counted
+     */
+    private ToggleCounter toggles;
+
+    /**
+     * Prepares the compilation of a sheet
+     * @param sheet the sheet to compile
+     * @param inputs the wires of each sheet input, in the order of the inputs
+     * @param outputs the wire of each sheet output, in the order of the outputs
+     */
+    public TruthTableCompiler(Sheet sheet, List<List<Wire>> inputs, List<Wire> outputs) {
+        simulator = new BitParallelSimulator(sheet);
+        this.inputs = new Wire[inputs.size()][];
+        inputIndex = new IdentityHashMap<>();
+        for (int i = 0; i < inputs.size(); i++) {
+            this.inputs[i] = inputs.get(i).toArray(new Wire[0]);
+            for (Wire wire : this.inputs[i]) {
+                inputIndex.put(wire, i);
+            }
+        }
+        this.outputs = outputs.toArray(new Wire[0]);
+    }
+
+    /**
+     * Gets the number of inputs of the compiled sheet
+     */
+    public int getInputs() {
+        return inputs.length;
+    }
+
+    /**
+     * Tests if the sheet has flip-flops : its outputs then depend on its state, and it has no truth table
+     */
+    public boolean isSequential() {
+        return simulator.getNetlist().getFlipFlopCount() > 0;
+    }
+
+    /**
+     * Sets the listener called with the progress of the compilation, between 0 and 1.
+     * It is called from the worker threads, at most once per percent.
+     * @param progressListener the listener
+     */
+    public void setProgressListener(DoubleConsumer progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Counts the transitions of the nets from each row of the table to the next one
+     * @param toggles the counters of the netlist of the sheet, or null to stop counting
+     */
+    public void setToggleCounter(ToggleCounter toggles) {
+        this.toggles = toggles;
+    }
+
+    /**
+     * Asks the compilation to stop, compile will throw a CancellationException
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Gets the progress of the compilation
+     * @return the ratio of rows already simulated, between 0 and 1
+     */
+    public double getProgress() {
+        return totalWords == 0 ? 0 : (double) doneWords.get() / totalWords;
+    }
+
+    /**
+     * Simulates every input combination, blocking until the table is complete
+     * @return the truth table of the sheet
+     * @throws CancellationException if the compilation was cancelled
+     */
+    public TruthTable compile() {
+        TruthTable table = new TruthTable(inputs.length, outputs.length);
+        totalWords = (table.getRows() + 63) >>> 6;
+        doneWords.set(0);
+        reportedPercent.set(0);
+        ForkJoinPool.commonPool().invoke(new Chunk(table, 0, totalWords));
+        if (cancelled) {
+            throw new CancellationException("Truth table compilation cancelled");
+        }
+        return table;
+    }
+
+    /**
+     * Simulates the rows of the words from..to of the table, splitting itself until the range is small enough
+     */
+    private class Chunk extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final TruthTable table;
+        private final long from;
+        private final long to;
+
+        Chunk(TruthTable table, long from, long to) {
+            this.table = table;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (cancelled) {
+                return;
+            }
+            if (to - from > CHUNK_WORDS) {
+                long middle = (from + to) >>> 1;
+                invokeAll(new Chunk(table, from, middle), new Chunk(table, middle, to));
+                return;
+            }
+
+            BitParallelSimulator simulator = TruthTableCompiler.this.simulator.copy();
+            // Chaque tâche compte sur ses propres compteurs, ajoutés à la fin
+            ToggleCounter counter = toggles == null ? null : new ToggleCounter(simulator.getNetlist());
+            int rowsPerWord = (int) Math.min(64, table.getRows());
+            long[] inputValues = new long[inputs.length];
+            long rowMask = table.getRows() >= 64 ? -1L : (1L << table.getRows()) - 1;
+            for (long word = from; word < to && !cancelled; word++) {
+                long firstRow = word << 6;
+                // L'entrée i est le bit (n - 1 - i) de l'index de la ligne
+                for (int i = 0; i < inputs.length; i++) {
+                    int bit = inputs.length - 1 - i;
+                    inputValues[i] = bit < 6 ? LOW_BITS[bit] : -(firstRow >>> bit & 1L);
+                    for (Wire wire : inputs[i]) {
+                        simulator.setInput(wire, inputValues[i]);
+                    }
+                }
+                simulator.run();
+                if (counter != null) {
+                    counter.sampleSequence(simulator.getValues(), rowsPerWord);
+                }
+                for (int o = 0; o < outputs.length; o++) {
+                    Integer input = inputIndex.get(outputs[o]);
+                    long value = input != null ? inputValues[input] : simulator.getValue(outputs[o]);
+                    table.getColumn(o)[(int) word] = value & rowMask;
+                }
+            }
+            if (counter != null) {
+                synchronized (toggles) {
+                    toggles.merge(counter);
+                }
+            }
+            reportProgress(doneWords.addAndGet(to - from));
+        }
+    }
+
+    private void reportProgress(long done) {
+        if (progressListener == null) {
+            return;
+        }
+        int percent = (int) (100 * done / totalWords);
+        int reported = reportedPercent.get();
+        if (percent > reported && reportedPercent.compareAndSet(reported, percent)) {
+            progressListener.accept(percent / 100d);
+        }
+    }
+}
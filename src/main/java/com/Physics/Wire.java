@@ -3,42 +3,103 @@
 //Gros changement : je vais surement passer de boolean a Boolean ce qui permetterait d'avoir des Boolean == null !
 package com.Physics;
 
-import java.lang.Math;
 import java.util.ArrayList;
 import java.util.List;
 
 public class Wire {
 
-    private Boolean state;
+    /**
+     * The planes holding the state of the wire once it belongs to a sheet, and its index in them
+     */
+    private StatePlanes planes;
+    private int index;
+    /**
+     * The state of the wire while it belongs to no sheet : 0, 1, or -1 for unknown
+     */
+    private byte detachedState = -1;
     private Component[] componentsAttached;
     private int[] id;
 
     public Wire() {
         componentsAttached = new Component[2];
-        state = null;
         id = new int[2];
     }
 
     public void setState(Boolean state) {
-        this.state = state;
+        if (planes != null) {
+            planes.set(index, state);
+        } else {
+            detachedState = (byte) (state == null ? -1 : state ? 1 : 0);
+        }
     }
 
     public Boolean getState() {
-        return state;
+        if (planes != null) {
+            return planes.get(index);
+        }
+        return detachedState == -1 ? null : detachedState == 1;
+    }
+
+    /**
+     * Moves the state of the wire into the planes of a sheet
+     * @param planes the planes of the sheet
+     * @param index the index of the wire in them
+     */
+    void attach(StatePlanes planes, int index) {
+        Boolean state = getState();
+        this.planes = planes;
+        this.index = index;
+        planes.set(index, state);
+    }
+
+    /**
+     * Takes the state of the wire out of the planes of its sheet, when the wire leaves it
+     */
+    void detach() {
+        Boolean state = getState();
+        planes = null;
+        setState(state);
+    }
+
+    /**
+     * Gets the planes holding the state of the wire
+     * @return the planes of its sheet, or null if the wire belongs to no sheet
+     */
+    public StatePlanes getPlanes() {
+        return planes;
+    }
+
+    /**
+     * Gets the index of the wire in the planes of its sheet
+     */
+    public int getIndex() {
+        return index;
     }
 
     public void addConnection(Component component, int i) {
         componentsAttached[i] = component;
+        if (component != null && component.sheet != null) {
+            component.sheet.invalidate();
+        }
     }
 
-    public Boolean isNull() {
-        if (state==null) {
-            return true;
-        } else {
-            return false;
+    /**
+     * Replaces a component attached to this wire by another one, keeping its place
+     * @param component the attached component
+     * @param replacement the component taking its place
+     */
+    public void replaceConnection(Component component, Component replacement) {
+        for (int i = 0; i < componentsAttached.length; i++) {
+            if (componentsAttached[i] == component) {
+                addConnection(replacement, i);
+            }
         }
     }
 
+    public Boolean isNull() {
+        return getState() == null;
+    }
+
     public int getId(int i) {
         return id[i];
     }
@@ -47,7 +108,11 @@ public class Wire {
         this.id[i] = id;
     }
 
-    public void refresh() {
+    /**
+     * Gets the component driving this wire, which is the attached component that does not read the wire
+     * @return the driving component, or null if the wire is driven by a sheet input
+     */
+    public Component getDriver() {
         Component startComponent = null;
         for (Component component : componentsAttached) {
             if(component != null) {
@@ -55,26 +120,24 @@ public class Wire {
                 for (Wire wire : component.getWiresInput()) {
                     if (wire == this) {
                         s ++;
-                        System.out.println("Coucou");
                     }
                 }
                 if (s==0) {
-                    System.out.println("Test");
                     startComponent = component;
                 }
             }
         }
+        return startComponent;
+    }
+
+    public void refresh() {
+        Component startComponent = getDriver();
         if (startComponent.canBeRefresh()) {
             int s = 0;
             for (int i=0;i<startComponent.getInputs();i++) {
-                if (startComponent.getWiresInput()[i].getState()) {
-                    System.out.println(i);
-                    System.out.println(s);
-                    s += Math.pow(2, startComponent.getInputs() - i - 1);
-                }
-
+                s = s << 1 | (startComponent.getWiresInput()[i].getState() ? 1 : 0);
             }
-            this.setState(startComponent.getTruthTable()[s][this.getId(0)]);
+            this.setState(startComponent.getFunction().get(s, this.getId(0)));
         }
 
 
@@ -0,0 +1,64 @@
+package com.Physics;
+
+import com.Application.FileManger.CircuitGenerator;
+import com.Application.FileManger.ComponentData;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that the And-Inverter Graph of a netlist, and the sheet built back from it, compute the outputs of the
+ * netlist
+ */
+class AigTest {
+
+    private static final int VECTORS = 32;
+
+    @Test
+    void generatedFamiliesKeepTheirOutputs() {
+        CircuitGenerator generator = new CircuitGenerator(5);
+        ComponentData[] families = {
+                generator.adder(8), generator.multiplexer(4), generator.decoder(5), generator.parity(16),
+                generator.comparator(8), generator.randomDag(12, 500, 10, 3, 4), generator.hierarchy(2, 3)
+        };
+        for (ComponentData data : families) {
+            for (boolean flatten : new boolean[] {true, false}) {
+                String name = data.name + (flatten ? " flattened" : "");
+                Netlist netlist = generator.build(data, flatten).getNetlist();
+                Aig aig = Aig.fromNetlist(netlist);
+                assertSameOutputs(name, netlist, aig);
+            }
+        }
+    }
+
+    private static void assertSameOutputs(String name, Netlist netlist, Aig aig) {
+        BitParallelSimulator original = new BitParallelSimulator(netlist);
+        BitParallelSimulator rebuilt = new BitParallelSimulator(aig.toSheet());
+        int[] inputs = netlist.getInputNets();
+        int[] rebuiltInputs = rebuilt.getNetlist().getInputNets();
+        int[] outputs = netlist.getOutputNets();
+        int[] rebuiltOutputs = rebuilt.getNetlist().getOutputNets();
+        assertEquals(outputs.length, aig.getOutputs().length, name);
+        long[] inputValues = new long[inputs.length];
+        long[] nodeValues = new long[aig.getNodeCount()];
+
+        Random random = new Random(name.hashCode());
+        for (int v = 0; v < VECTORS; v++) {
+            for (int i = 0; i < inputs.length; i++) {
+                inputValues[i] = random.nextLong();
+                original.getValues()[inputs[i]] = inputValues[i];
+                rebuilt.getValues()[rebuiltInputs[i]] = inputValues[i];
+            }
+            original.run();
+            rebuilt.run();
+            long[] aigOutputs = aig.simulate(inputValues, nodeValues);
+            for (int o = 0; o < outputs.length; o++) {
+                long expected = original.getValues()[outputs[o]];
+                assertEquals(expected, aigOutputs[o], name + ", output " + o + ", vector " + v);
+                assertEquals(expected, rebuilt.getValues()[rebuiltOutputs[o]], name + " rebuilt, output " + o);
+            }
+        }
+    }
+}
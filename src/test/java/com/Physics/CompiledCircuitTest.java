@@ -0,0 +1,58 @@
+package com.Physics;
+
+import com.Application.FileManger.CircuitGenerator;
+import com.Application.FileManger.ComponentData;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the generated code of a netlist computes the same states as the interpreted loop
+ */
+class CompiledCircuitTest {
+
+    private static final int VECTORS = 32;
+
+    @Test
+    void generatedFamiliesMatchTheInterpreter() {
+        CircuitGenerator generator = new CircuitGenerator(1);
+        ComponentData[] families = {
+                generator.adder(8), generator.multiplexer(4), generator.decoder(5), generator.parity(16),
+                generator.comparator(8), generator.randomDag(12, 500, 10, 3, 4), generator.hierarchy(2, 3)
+        };
+        for (ComponentData data : families) {
+            assertSameStates(data.name + " flattened", generator.build(data, true).getNetlist());
+            assertSameStates(data.name, generator.build(data, false).getNetlist());
+        }
+    }
+
+    @Test
+    void splitMethodsMatchTheInterpreter() {
+        // Assez de portes pour que le code soit réparti sur plusieurs méthodes
+        CircuitGenerator generator = new CircuitGenerator(2);
+        ComponentData data = generator.randomDag(32, 5000, 40, 2, 4);
+        assertSameStates(data.name, generator.build(data, true).getNetlist());
+    }
+
+    private static void assertSameStates(String name, Netlist netlist) {
+        BitParallelSimulator interpreted = new BitParallelSimulator(netlist);
+        BitParallelSimulator compiled = interpreted.copy();
+        assertTrue(compiled.compile(), name + " should be compiled");
+
+        Random random = new Random(name.hashCode());
+        int[] inputNets = netlist.getInputNets();
+        for (int v = 0; v < VECTORS; v++) {
+            for (int net : inputNets) {
+                long value = random.nextLong();
+                interpreted.getValues()[net] = value;
+                compiled.getValues()[net] = value;
+            }
+            interpreted.run();
+            compiled.run();
+            assertArrayEquals(interpreted.getValues(), compiled.getValues(), name + ", vector " + v);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.Physics;
+
+import com.Application.FileManger.CircuitGenerator;
+import com.Application.FileManger.ComponentData;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that the simplified sheet computes the same outputs as the original one
+ */
+class NetlistOptimizerTest {
+
+    private static final int VECTORS = 32;
+
+    @Test
+    void generatedFamiliesKeepTheirOutputs() {
+        CircuitGenerator generator = new CircuitGenerator(3);
+        ComponentData[] families = {
+                generator.adder(8), generator.multiplexer(4), generator.decoder(5), generator.parity(16),
+                generator.comparator(8), generator.randomDag(12, 500, 10, 3, 4), generator.hierarchy(2, 3)
+        };
+        for (ComponentData data : families) {
+            for (boolean flatten : new boolean[] {true, false}) {
+                Sheet sheet = generator.build(data, flatten);
+                Sheet optimized = new NetlistOptimizer(sheet).optimize();
+                assertSameOutputs(data.name, sheet, optimized, -1, false);
+            }
+        }
+    }
+
+    @Test
+    void constantInputsKeepTheirOutputs() {
+        CircuitGenerator generator = new CircuitGenerator(4);
+        ComponentData[] families = {
+                generator.adder(8), generator.multiplexer(4), generator.randomDag(12, 500, 10, 3, 4)
+        };
+        for (ComponentData data : families) {
+            Sheet sheet = generator.build(data, true);
+            for (boolean state : new boolean[] {false, true}) {
+                Sheet optimized = new NetlistOptimizer(sheet, Map.of(sheet.getWireInputs().get(0), state)).optimize();
+                assertSameOutputs(data.name + " with input 0 at " + state, sheet, optimized, 0, state);
+            }
+        }
+    }
+
+    /**
+     * Simulates both sheets on random vectors, their inputs and outputs being in the same order
+     * @param constantInput the input tied to a constant, -1 if there is none
+     */
+    private static void assertSameOutputs(String name, Sheet sheet, Sheet optimized, int constantInput,
+                                          boolean constant) {
+        BitParallelSimulator original = new BitParallelSimulator(sheet);
+        BitParallelSimulator simplified = new BitParallelSimulator(optimized);
+        int[] inputs = original.getNetlist().getInputNets();
+        int[] simplifiedInputs = simplified.getNetlist().getInputNets();
+        int[] outputs = original.getNetlist().getOutputNets();
+        int[] simplifiedOutputs = simplified.getNetlist().getOutputNets();
+        assertEquals(inputs.length, simplifiedInputs.length, name);
+        assertEquals(outputs.length, simplifiedOutputs.length, name);
+
+        Random random = new Random(name.hashCode());
+        for (int v = 0; v < VECTORS; v++) {
+            for (int i = 0; i < inputs.length; i++) {
+                long value = i == constantInput ? (constant ? -1L : 0) : random.nextLong();
+                original.getValues()[inputs[i]] = value;
+                simplified.getValues()[simplifiedInputs[i]] = value;
+            }
+            original.run();
+            simplified.run();
+            for (int o = 0; o < outputs.length; o++) {
+                assertEquals(original.getValues()[outputs[o]], simplified.getValues()[simplifiedOutputs[o]],
+                        name + ", output " + o + ", vector " + v);
+            }
+        }
+    }
+}